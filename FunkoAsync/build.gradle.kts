@@ -1,5 +1,7 @@
 plugins {
     id("java")
+    // JMH para los microbenchmarks de src/jmh
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.example"
@@ -27,11 +29,22 @@ dependencies {
     implementation("org.mybatis:mybatis:3.5.13")
     // Gson
     implementation ("com.google.code.gson:gson:2.8.8")
+    // LZ4 para la compresion rapida de las copias de seguridad
+    implementation("org.lz4:lz4-java:1.8.0")
     // Mockito
     testImplementation("org.mockito:mockito-junit-jupiter:5.5.0")
     testImplementation("org.mockito:mockito-core:5.5.0")
+    // JMH
+    jmh("org.openjdk.jmh:jmh-core:1.37")
+    jmh("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 tasks.test {
     useJUnitPlatform()
+}
+
+jmh {
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
 }
\ No newline at end of file
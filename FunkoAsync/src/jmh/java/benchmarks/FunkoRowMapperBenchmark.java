@@ -0,0 +1,106 @@
+package benchmarks;
+
+import develop.models.Funko;
+import develop.models.Model;
+import develop.repositories.funkos.FunkoRowMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el coste por fila de convertir un recorrido completo de la tabla funkos buscando cada columna por su nombre
+ * y con Model.valueOf, como hacía el repositorio, frente a FunkoRowMapper, que resuelve las posiciones una vez por ResultSet.
+ * Los resultados se expresan en nanosegundos por fila.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FunkoRowMapperBenchmark {
+    private static final int ROWS = 100_000;
+    private static final String QUERY = "SELECT * FROM funkos";
+    private Connection connection;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1", "sa", "");
+        try (var stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS funkos");
+            stmt.execute("CREATE TABLE funkos (ID BIGINT PRIMARY KEY AUTO_INCREMENT, cod UUID NOT NULL, MyId BIGINT NOT NULL, " +
+                    "nombre VARCHAR(255) NOT NULL, modelo VARCHAR(50), precio DOUBLE NOT NULL, fecha_lanzamiento DATE NOT NULL, " +
+                    "created_at TIMESTAMP NOT NULL, updated_at TIMESTAMP NOT NULL, version BIGINT NOT NULL DEFAULT 0)");
+        }
+        Model[] modelos = Model.values();
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        try (var stmt = connection.prepareStatement("INSERT INTO funkos (cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                stmt.setObject(1, UUID.randomUUID());
+                stmt.setLong(2, i);
+                stmt.setString(3, "Funko " + i);
+                stmt.setString(4, modelos[i % modelos.length].toString());
+                stmt.setDouble(5, i % 100 + 0.99);
+                stmt.setObject(6, LocalDate.of(2020 + i % 5, 1 + i % 12, 1));
+                stmt.setTimestamp(7, ahora);
+                stmt.setTimestamp(8, ahora);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void porNombre(Blackhole blackhole) throws SQLException {
+        try (var stmt = connection.prepareStatement(QUERY);
+             var rs = stmt.executeQuery()
+        ) {
+            while (rs.next()) {
+                blackhole.consume(porNombre(rs));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void funkoRowMapper(Blackhole blackhole) throws SQLException {
+        try (var stmt = connection.prepareStatement(QUERY);
+             var rs = stmt.executeQuery()
+        ) {
+            var mapper = new FunkoRowMapper();
+            while (rs.next()) {
+                blackhole.consume(mapper.mapRow(rs));
+            }
+        }
+    }
+
+    /**
+     * La conversión que se repetía en findAll, findByNombre y findById antes de FunkoRowMapper.
+     */
+    private static Funko porNombre(ResultSet rs) throws SQLException {
+        return Funko.builder()
+                .id(rs.getLong("ID"))
+                .COD(rs.getObject("cod", UUID.class))
+                .myId(rs.getLong("MyId"))
+                .name(rs.getString("nombre"))
+                .model(Model.valueOf(rs.getString("modelo")))
+                .price(rs.getDouble("precio"))
+                .releaseData(rs.getObject("fecha_lanzamiento", LocalDate.class))
+                .createdAt(rs.getObject("created_at", LocalDateTime.class))
+                .updatedAt(rs.getObject("updated_at", LocalDateTime.class))
+                .version(rs.getLong("version"))
+                .build();
+    }
+}
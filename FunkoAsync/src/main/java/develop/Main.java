@@ -5,6 +5,7 @@ import develop.exceptions.funkos.FunkoNoEncotradoException;
 import develop.exceptions.storage.RutaInvalidaException;
 import develop.locale.MyLocale;
 import develop.models.Funko;
+import develop.models.FunkoStatisticsReport;
 import develop.models.IdGenerator;
 import develop.models.Model;
 import develop.repositories.funkos.FunkosRepositoryImpl;
@@ -22,7 +23,6 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
 
 /**
  * Metodo principal del programa
@@ -30,7 +30,6 @@ import java.util.stream.Collectors;
 public class Main {
 
     public static void main(String[] args) throws ExecutionException, InterruptedException, SQLException, IOException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
-        MyLocale myLocale = new MyLocale();
         DatabaseManager databaseManager = DatabaseManager.getInstance();
         IdGenerator idGenerator = IdGenerator.getInstance();
         FunkosRepositoryImpl funkosRepository = FunkosRepositoryImpl.getInstance(databaseManager, idGenerator);
@@ -54,38 +53,36 @@ public class Main {
         // Cogemos los funkos de la base de datos para hacer las consultas
         List<Funko> funkos = funkosService.findAll().get();
 
+        // Calculamos todas las estadísticas en una sola pasada sobre los funkos
+        FunkoStatisticsReport estadisticas = FunkoStatistics.compute(funkos, "Stitch");
+
         // FUNKO MAS CARO
-        double maxPrecio = funkos.stream().mapToDouble(Funko::getPrice).max().getAsDouble(); // Sacamos el precio máximo de todos los funkos
-        Optional<Funko> funkoMasCaro = funkos.stream().filter(f -> f.getPrice() == maxPrecio).findFirst(); // Sacamos el funko mas caro segun el precio maximo
-        System.out.println("FUNKO MAS CARO: " + funkoMasCaro);
+        System.out.println("FUNKO MAS CARO: " + estadisticas.mostExpensive());
 
         // MEDIA DE PRECIO DE LOS FUNKOS
-        double mediaPrecio = funkos.stream().mapToDouble(Funko::getPrice).average().orElse(0.0); // Sacamos el precio medio de todos los funkos
-        System.out.println("PRECIO MEDIO: " + myLocale.toLocalMoney(mediaPrecio));  // Imprimimos el precio medio codificado a la moneda Local
+        System.out.println("PRECIO MEDIO: " + MyLocale.toLocalMoney(estadisticas.averagePrice()));  // Imprimimos el precio medio codificado a la moneda Local
 
         // FUNKOS AGRUPADOS POR MODELO
-        Map<Model, List<Funko>> funkosPorModelo = funkos.stream()    // Creamos un map donde agrupamos los funkos segun modelo
-                .collect(Collectors.groupingBy(Funko::getModel));
         System.out.println("FUNKOS AGRUPADOS POR MODELO: ");
-        funkosPorModelo.forEach((a, b) -> System.out.println(a.toString() + " -> " + b));
+        estadisticas.byModel().forEach((a, b) -> System.out.println(a.toString() + " -> " + b));
 
         // NÚMERO DE FUNKOS POR MODELO
-        Map<Model, Long> numeroPorModelo = funkos.stream().collect(Collectors.groupingBy( // Creamos un map donde agrupamos los funkos segun modelo y contamos el número de funkos de cada modelo
-                Funko::getModel,
-                Collectors.counting()));
         System.out.println("NUMERO DE FUNKOS POR MODELO: ");
-        numeroPorModelo.forEach((a, b) -> System.out.println(a.toString() + "->" + b));
+        estadisticas.countByModel().forEach((a, b) -> System.out.println(a.toString() + "->" + b));
 
         // FUNKOS QUE HAN SIDO LANZADO EN EL 2023
-        List<Funko> funkos2023  = funkos.stream().filter(f -> f.getReleaseData().getYear() == 2023).toList();   // Filtramos por funkos que el año de lanzamiento sea igual a 2023
+        List<Funko> funkos2023 = funkosService.findByReleaseDateBetween(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31)).get(); // Consultamos solo los funkos de 2023 usando el indice de fecha de lanzamiento
         System.out.println("FUNKOS LANZADOS EN EL 2023: ");
         funkos2023.forEach(System.out::println);
 
+        // NÚMERO DE FUNKOS LANZADOS CADA AÑO
+        System.out.println("NUMERO DE FUNKOS POR AÑO DE LANZAMIENTO: ");
+        funkosService.countByReleaseYear().get().forEach((a, b) -> System.out.println(a + "->" + b));
+
         // NUMERO DE FUNKO DE STITCH Y LISTADO DE ELLOS
-        List<Funko> funkosStitch = funkos.stream().filter(f -> f.getName().contains("Stitch")).toList(); // Filtramos por funkos que contengan Stitch en su nombre
-        System.out.println("NUMERO DE FUNKOS DE STITCH: " + funkosStitch.size());      // Imprimimos el tamaño de la lista de Stitch
+        System.out.println("NUMERO DE FUNKOS DE STITCH: " + estadisticas.nameMatches().size());      // Imprimimos el tamaño de la lista de Stitch
         System.out.println("LISTADO DE FUNKOS DE STITCH:");
-        funkosStitch.forEach(System.out::println);
+        estadisticas.nameMatches().forEach(System.out::println);
 
         // EXPORTAMOS LOS DATOS DE LA BASE DE DATOS A UN JSON LLAMADO "funkos.json"
         try {
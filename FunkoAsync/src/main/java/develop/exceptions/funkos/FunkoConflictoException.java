@@ -0,0 +1,17 @@
+package develop.exceptions.funkos;
+
+/**
+ * La clase FunkoConflictoException es una clase que extiende FunkoException
+ * y se utiliza para representar una actualización rechazada porque otro proceso ha modificado el Funko antes (su versión ya no coincide).
+ */
+public class FunkoConflictoException extends FunkoException {
+
+    /**
+     * Construye una instancia de FunkoConflictoException con un mensaje descriptivo.
+     *
+     * @param message El mensaje descriptivo de la excepción.
+     */
+    public FunkoConflictoException(String message) {
+        super(message);
+    }
+}
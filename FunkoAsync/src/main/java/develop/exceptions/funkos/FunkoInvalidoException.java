@@ -0,0 +1,17 @@
+package develop.exceptions.funkos;
+
+/**
+ * La clase FunkoInvalidoException es una clase que extiende FunkoException
+ * y se utiliza para representar excepciones relacionadas con datos de un Funko que no superan la validación.
+ */
+public class FunkoInvalidoException extends FunkoException {
+
+    /**
+     * Construye una instancia de FunkoInvalidoException con un mensaje descriptivo.
+     *
+     * @param message El mensaje descriptivo de la excepción.
+     */
+    public FunkoInvalidoException(String message) {
+        super(message);
+    }
+}
@@ -4,14 +4,23 @@ import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * La clase MyLocale proporciona métodos estáticos para formatear fechas y valores monetarios
- * en el formato localizado de España (español - España).
+ * en el formato localizado de España (español - España) o de cualquier otro Locale.
+ * Los formateadores se crean una sola vez: DateTimeFormatter es inmutable y se comparte entre hilos,
+ * mientras que NumberFormat no es seguro entre hilos y cada hilo guarda su propia copia.
  */
 public class MyLocale {
     private static final Locale locale = new Locale("es","ES");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(locale);
+    private static final ThreadLocal<NumberFormat> MONEY_FORMAT = ThreadLocal.withInitial(() -> NumberFormat.getCurrencyInstance(locale));
+    private static final Map<Locale, DateTimeFormatter> DATE_FORMATTERS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Map<Locale, NumberFormat>> MONEY_FORMATS = ThreadLocal.withInitial(HashMap::new);
 
     /**
      * Convierte una fecha LocalDate en una representación de cadena en formato localizado de España.
@@ -20,10 +29,19 @@ public class MyLocale {
      * @return Una cadena que representa la fecha en el formato localizado de España.
      */
     public static String toLocalDate(LocalDate date) {
-        return date.format(
-                DateTimeFormatter
-                        .ofLocalizedDate(FormatStyle.MEDIUM).withLocale(locale)
-        );
+        return date.format(DATE_FORMATTER);
+    }
+
+    /**
+     * Convierte una fecha LocalDate en una representación de cadena en el formato del Locale indicado.
+     *
+     * @param date   La fecha LocalDate que se va a formatear.
+     * @param locale El Locale del formato.
+     * @return Una cadena que representa la fecha en el formato del Locale.
+     */
+    public static String toLocalDate(LocalDate date, Locale locale) {
+        return date.format(DATE_FORMATTERS.computeIfAbsent(locale,
+                l -> DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(l)));
     }
 
     /**
@@ -33,7 +51,18 @@ public class MyLocale {
      * @return Una cadena que representa el valor monetario en el formato de moneda localizado de España.
      */
     public static String toLocalMoney(double money) {
-        return NumberFormat.getCurrencyInstance(locale).format(money);
+        return MONEY_FORMAT.get().format(money);
+    }
+
+    /**
+     * Convierte un valor double en una representación de cadena con el formato de moneda del Locale indicado.
+     *
+     * @param money  El valor monetario que se va a formatear.
+     * @param locale El Locale del formato.
+     * @return Una cadena que representa el valor monetario en el formato de moneda del Locale.
+     */
+    public static String toLocalMoney(double money, Locale locale) {
+        return MONEY_FORMATS.get().computeIfAbsent(locale, NumberFormat::getCurrencyInstance).format(money);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+package develop.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * La clase ExportMark representa la marca de agua de una exportación incremental: la secuencia del último cambio de la
+ * tabla funkos_cambios que ya se ha exportado. La secuencia la asigna la base de datos al registrar cada cambio, así que
+ * no depende del reloj de la aplicación ni del orden en que confirman las transacciones.
+ */
+@Data
+@Builder
+public class ExportMark {
+    private long changeSeq; // Secuencia del ultimo cambio exportado
+
+    /**
+     * Crea la marca inicial, anterior a cualquier cambio.
+     *
+     * @return La marca inicial.
+     */
+    public static ExportMark inicial() {
+        return ExportMark.builder()
+                .changeSeq(0L)
+                .build();
+    }
+}
@@ -18,6 +18,7 @@ import java.util.UUID;
 @Data
 @Builder
 public class Funko {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private long id; // Identificador unico del funko, este lo asigna la base de datos
     private UUID COD; // Codigo unico del funko
     private long myId; // Otro identificador que se le asigna con el IdGenerator
@@ -29,6 +30,7 @@ public class Funko {
     private LocalDateTime createdAt = LocalDateTime.now(); // Fecha de creacion del funko en la base de datos
     @Builder.Default
     private LocalDateTime updatedAt = LocalDateTime.now(); // Fecha de ultima actualizacion del funko
+    private long version; // Version del funko en la base de datos, aumenta con cada actualizacion
 
     /**
      *
@@ -38,21 +40,40 @@ public class Funko {
      */
     @Override
     public String toString() {
-        MyLocale myLocal = new MyLocale();
         return "Funko{" +
                 "id=" + id +
                 ", COD=" + COD +
                 ", myId=" + myId +
                 ", name='" + name + '\'' +
                 ", model=" + model +
-                ", price=" + myLocal.toLocalMoney(price) +    // Imprimimos el precio codificado a la moneda Local
-                ", releaseData=" + myLocal.toLocalDate(releaseData) + // Imprimimos el año de lanzamiento codificado a la fecha local
+                ", price=" + MyLocale.toLocalMoney(price) +    // Imprimimos el precio codificado a la moneda Local
+                ", releaseData=" + (releaseData == null ? null : MyLocale.toLocalDate(releaseData)) + // Imprimimos el año de lanzamiento codificado a la fecha local
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
                 '}';
     }
 
 
+    /**
+     * Crea una copia de este Funko con los mismos valores, para guardarla o modificarla sin afectar a este.
+     *
+     * @return La copia del Funko.
+     */
+    public Funko copy() {
+        return Funko.builder()
+                .id(id)
+                .COD(COD)
+                .myId(myId)
+                .name(name)
+                .model(model)
+                .price(price)
+                .releaseData(releaseData)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .version(version)
+                .build();
+    }
+
     /**
      * Convierte una representacion de una cadena string de un UUID a un objeto UUID.
      *
@@ -70,8 +91,7 @@ public class Funko {
      * @return Un objeto LocalDate convertido.
      */
     public static LocalDate getDate(String date) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        return LocalDate.parse(date,formatter);
+        return LocalDate.parse(date, DATE_FORMATTER);
     }
 
     /**
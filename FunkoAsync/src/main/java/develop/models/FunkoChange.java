@@ -0,0 +1,23 @@
+package develop.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * El record FunkoChange es un cambio de la tabla funkos registrado por el trigger trg_funkos_cambios, sea quien sea quien
+ * lo haya hecho: este servicio, SQL directo u otro proceso sobre la misma base de datos.
+ *
+ * @param seq       La secuencia del cambio; los cambios se leen en orden creciente de secuencia.
+ * @param funkoId   El ID del Funko cambiado.
+ * @param operation La operación que cambió el Funko.
+ * @param version   La versión del Funko tras el cambio, o null si se ha borrado.
+ * @param changedAt El instante del cambio.
+ */
+public record FunkoChange(long seq, long funkoId, Operation operation, Long version, LocalDateTime changedAt) {
+
+    /**
+     * Las operaciones que registra el trigger.
+     */
+    public enum Operation {
+        INSERT, UPDATE, DELETE
+    }
+}
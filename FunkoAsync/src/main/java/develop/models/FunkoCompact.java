@@ -0,0 +1,127 @@
+package develop.models;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * El record FunkoCompact es una representación inmutable y compacta de un Funko para mantener muchos en memoria.
+ * Solo guarda primitivos y el nombre: el código como dos long, la fecha de lanzamiento como día desde la época,
+ * las marcas de tiempo como nanosegundos desde la época (sin perder precisión, para fechas entre 1677 y 2262)
+ * y el modelo como su ordinal. Los valores nulos se guardan con un valor centinela.
+ *
+ * @param id               Identificador unico del funko en la base de datos.
+ * @param codMsb           Los 64 bits altos del código.
+ * @param codLsb           Los 64 bits bajos del código.
+ * @param myId             Identificador asignado con el IdGenerator.
+ * @param name             Nombre del funko.
+ * @param model            Ordinal del modelo del funko, o -1 si no tiene.
+ * @param price            Precio del funko.
+ * @param releaseEpochDay  Fecha de lanzamiento en días desde 1970-01-01.
+ * @param createdAtNanos   Fecha de creación en nanosegundos desde 1970-01-01T00:00.
+ * @param updatedAtNanos   Fecha de última actualización en nanosegundos desde 1970-01-01T00:00.
+ * @param version          Versión del funko en la base de datos.
+ */
+public record FunkoCompact(long id, long codMsb, long codLsb, long myId, String name, byte model, double price,
+                           int releaseEpochDay, long createdAtNanos, long updatedAtNanos, long version) {
+    public static final int NO_DATE = Integer.MIN_VALUE;
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final Model[] MODELS = Model.values();
+
+    /**
+     * Crea la representación compacta de un Funko.
+     *
+     * @param funko El Funko a convertir.
+     * @return El FunkoCompact equivalente.
+     */
+    public static FunkoCompact of(Funko funko) {
+        UUID cod = funko.getCOD();
+        return new FunkoCompact(
+                funko.getId(),
+                cod == null ? 0 : cod.getMostSignificantBits(),
+                cod == null ? 0 : cod.getLeastSignificantBits(),
+                funko.getMyId(),
+                funko.getName(),
+                funko.getModel() == null ? -1 : (byte) funko.getModel().ordinal(),
+                funko.getPrice(),
+                funko.getReleaseData() == null ? NO_DATE : (int) funko.getReleaseData().toEpochDay(),
+                toNanos(funko.getCreatedAt()),
+                toNanos(funko.getUpdatedAt()),
+                funko.getVersion());
+    }
+
+    /**
+     * Convierte de nuevo a un Funko. Cada llamada crea un Funko nuevo, por lo que modificarlo no afecta a este record.
+     *
+     * @return El Funko equivalente.
+     */
+    public Funko toFunko() {
+        return Funko.builder()
+                .id(id)
+                .COD(getCOD())
+                .myId(myId)
+                .name(name)
+                .model(getModel())
+                .price(price)
+                .releaseData(getReleaseData())
+                .createdAt(fromNanos(createdAtNanos))
+                .updatedAt(fromNanos(updatedAtNanos))
+                .version(version)
+                .build();
+    }
+
+    /**
+     * Obtiene el código del Funko.
+     *
+     * @return El código, o null si no tiene (el UUID nulo 00000000-0000-0000-0000-000000000000 se considera sin código).
+     */
+    public UUID getCOD() {
+        return codMsb == 0 && codLsb == 0 ? null : new UUID(codMsb, codLsb);
+    }
+
+    /**
+     * Obtiene el modelo del Funko.
+     *
+     * @return El modelo, o null si no tiene.
+     */
+    public Model getModel() {
+        return model < 0 ? null : MODELS[model];
+    }
+
+    /**
+     * Obtiene la fecha de lanzamiento del Funko.
+     *
+     * @return La fecha de lanzamiento, o null si no tiene.
+     */
+    public LocalDate getReleaseData() {
+        return releaseEpochDay == NO_DATE ? null : LocalDate.ofEpochDay(releaseEpochDay);
+    }
+
+    /**
+     * Convierte una fecha y hora a nanosegundos desde la época, interpretándola en UTC.
+     *
+     * @param dateTime La fecha y hora, o null.
+     * @return Los nanosegundos desde la época, o NO_TIMESTAMP si es null.
+     * @throws ArithmeticException Si la fecha está fuera del rango representable (años 1677 a 2262).
+     */
+    public static long toNanos(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return NO_TIMESTAMP;
+        }
+        return Math.addExact(Math.multiplyExact(dateTime.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L), dateTime.getNano());
+    }
+
+    /**
+     * Convierte nanosegundos desde la época a una fecha y hora, interpretándolos en UTC.
+     *
+     * @param nanos Los nanosegundos desde la época, o NO_TIMESTAMP.
+     * @return La fecha y hora, o null si es NO_TIMESTAMP.
+     */
+    public static LocalDateTime fromNanos(long nanos) {
+        if (nanos == NO_TIMESTAMP) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,19 @@
+package develop.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * La clase FunkoDelta representa los cambios de la base de datos entre dos marcas de exportación.
+ * Aplicando en orden los deltas sobre una copia completa (primero los Funkos modificados y despues los borrados) se obtiene el estado actual.
+ */
+@Data
+@Builder
+public class FunkoDelta {
+    private ExportMark from; // Marca desde la que se han exportado los cambios
+    private ExportMark to; // Marca hasta la que se han exportado los cambios
+    private List<Funko> upserts; // Funkos creados o modificados desde la marca inicial
+    private List<Long> deletes; // IDs de los funkos borrados desde la marca inicial
+}
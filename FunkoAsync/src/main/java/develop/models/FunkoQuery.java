@@ -0,0 +1,148 @@
+package develop.models;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * La clase FunkoQuery representa una consulta de Funkos con varios criterios opcionales que el repositorio traduce
+ * a una única sentencia SQL parametrizada. Los criterios que no se indican no filtran.
+ * Para paginar se usa un cursor (keyset): la siguiente página se pide con {@link #after(Funko)} pasando el último Funko
+ * de la anterior, lo que evita OFFSET y mantiene el coste de cada página proporcional a su tamaño.
+ */
+@Value
+@Builder(toBuilder = true)
+public class FunkoQuery {
+    Model model; // Modelo de los funkos
+    Double minPrice; // Precio minimo, incluido
+    Double maxPrice; // Precio maximo, incluido
+    LocalDate releasedFrom; // Primera fecha de lanzamiento, incluida
+    LocalDate releasedTo; // Ultima fecha de lanzamiento, incluida
+    String nameContains; // Texto que debe contener el nombre
+    String namePrefix; // Texto por el que debe empezar el nombre
+    @Builder.Default
+    Sort sort = Sort.ID; // Orden de los resultados; a igual valor se ordena por ID
+    Integer limit; // Numero maximo de funkos a devolver
+    Cursor cursor; // Posicion del ultimo funko de la pagina anterior
+
+    /**
+     * Los órdenes posibles de los resultados. Todos desempatan por ID ascendente para que el cursor sea único.
+     */
+    public enum Sort {
+        ID(null, false),
+        PRICE_ASC("precio", false),
+        PRICE_DESC("precio", true),
+        RELEASE_DATE_ASC("fecha_lanzamiento", false),
+        RELEASE_DATE_DESC("fecha_lanzamiento", true),
+        NAME_ASC("nombre", false);
+
+        private final String column;
+        private final boolean descending;
+
+        Sort(String column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+
+        /**
+         * Obtiene la columna por la que se ordena.
+         *
+         * @return La columna, o null si se ordena solo por ID.
+         */
+        public String getColumn() {
+            return column;
+        }
+
+        /**
+         * Indica si la columna se ordena de mayor a menor.
+         *
+         * @return true si el orden es descendente.
+         */
+        public boolean isDescending() {
+            return descending;
+        }
+
+        /**
+         * Obtiene el valor de la columna de orden de un Funko.
+         *
+         * @param funko El Funko.
+         * @return El valor de la columna, o null si se ordena solo por ID.
+         */
+        public Object keyOf(Funko funko) {
+            return switch (this) {
+                case ID -> null;
+                case PRICE_ASC, PRICE_DESC -> funko.getPrice();
+                case RELEASE_DATE_ASC, RELEASE_DATE_DESC -> funko.getReleaseData();
+                case NAME_ASC -> funko.getName();
+            };
+        }
+    }
+
+    /**
+     * Posición de un Funko en el orden de la consulta: el valor de la columna de orden y su ID.
+     *
+     * @param key El valor de la columna de orden, o null si se ordena solo por ID.
+     * @param id  El ID del Funko.
+     */
+    public record Cursor(Object key, long id) {
+    }
+
+    /**
+     * Crea la consulta de la página siguiente a la que terminó en un Funko.
+     *
+     * @param last El último Funko de la página anterior.
+     * @return Una consulta con los mismos criterios que empieza después de ese Funko.
+     */
+    public FunkoQuery after(Funko last) {
+        return toBuilder().cursor(new Cursor(sort.keyOf(last), last.getId())).build();
+    }
+
+    /**
+     * Calcula la forma de la consulta: qué criterios tiene, el orden, y si tiene límite y cursor, pero no sus valores.
+     * Dos consultas con la misma forma se traducen a la misma sentencia SQL.
+     *
+     * @return Un entero que identifica la forma de la consulta.
+     */
+    public int shape() {
+        int forma = 0;
+        forma |= model != null ? 1 : 0;
+        forma |= minPrice != null ? 1 << 1 : 0;
+        forma |= maxPrice != null ? 1 << 2 : 0;
+        forma |= releasedFrom != null ? 1 << 3 : 0;
+        forma |= releasedTo != null ? 1 << 4 : 0;
+        forma |= nameContains != null ? 1 << 5 : 0;
+        forma |= namePrefix != null ? 1 << 6 : 0;
+        forma |= limit != null ? 1 << 7 : 0;
+        forma |= cursor != null ? 1 << 8 : 0;
+        return forma | sort.ordinal() << 9;
+    }
+
+    /**
+     * Métodos adicionales del builder generado por Lombok.
+     */
+    public static class FunkoQueryBuilder {
+
+        /**
+         * Filtra por un rango de precio.
+         *
+         * @param min El precio mínimo, incluido.
+         * @param max El precio máximo, incluido.
+         * @return El builder.
+         */
+        public FunkoQueryBuilder priceBetween(double min, double max) {
+            return minPrice(min).maxPrice(max);
+        }
+
+        /**
+         * Filtra por un rango de fechas de lanzamiento.
+         *
+         * @param from La primera fecha, incluida.
+         * @param to   La última fecha, incluida.
+         * @return El builder.
+         */
+        public FunkoQueryBuilder releasedBetween(LocalDate from, LocalDate to) {
+            return releasedFrom(from).releasedTo(to);
+        }
+    }
+}
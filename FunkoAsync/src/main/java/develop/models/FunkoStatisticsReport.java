@@ -0,0 +1,23 @@
+package develop.models;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * El record FunkoStatisticsReport es el resultado inmutable de calcular las estadísticas de una colección de Funkos.
+ * Las listas y mapas que contiene no se pueden modificar.
+ *
+ * @param count          Número de Funkos analizados.
+ * @param maxPrice       Precio máximo, o 0 si no hay Funkos.
+ * @param mostExpensive  El primer Funko con el precio máximo.
+ * @param averagePrice   Precio medio, o 0 si no hay Funkos.
+ * @param byModel        Funkos agrupados por modelo.
+ * @param countByModel   Número de Funkos de cada modelo.
+ * @param nameFragment   Texto buscado en los nombres.
+ * @param nameMatches    Funkos cuyo nombre contiene el texto buscado.
+ */
+public record FunkoStatisticsReport(long count, double maxPrice, Optional<Funko> mostExpensive, double averagePrice,
+                                    Map<Model, List<Funko>> byModel, Map<Model, Long> countByModel,
+                                    String nameFragment, List<Funko> nameMatches) {
+}
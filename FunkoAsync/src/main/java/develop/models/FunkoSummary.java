@@ -0,0 +1,13 @@
+package develop.models;
+
+/**
+ * El record FunkoSummary es una proyección ligera de un Funko con solo los datos que necesita un listado.
+ * Se lee de la base de datos seleccionando únicamente sus columnas.
+ *
+ * @param id    Identificador unico del funko en la base de datos.
+ * @param name  Nombre del funko.
+ * @param price Precio del funko.
+ * @param model Modelo del funko.
+ */
+public record FunkoSummary(long id, String name, double price, Model model) {
+}
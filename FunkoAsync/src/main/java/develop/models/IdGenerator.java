@@ -1,16 +1,20 @@
 package develop.models;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * La clase IdGenerator proporciona una forma de generar y administrar identificadores unicos.
  * Se utiliza un patrón Singleton para garantizar una unica instancia de generador de identificadores.
+ * El contador global es un AtomicLong y cada hilo toma de él bloques de identificadores que reparte sin sincronizarse,
+ * por lo que los identificadores son únicos pero no siguen el orden de llamada entre hilos distintos, y los que quedan
+ * sin usar en un bloque se pierden. Al arrancar se debe avanzar el contador hasta el mayor identificador ya guardado.
  */
 public class IdGenerator {
+    private static final int BLOCK_SIZE = 64;
     private static IdGenerator instance;
-    private static long id = 0;
-    private final Lock locker = new ReentrantLock(true);
+    private final AtomicLong ultimo = new AtomicLong(0); // Ultimo identificador repartido a un bloque o reserva
+    private final AtomicLong epoca = new AtomicLong(0); // Impar mientras se reinicia o avanza el contador; al cambiar invalida los bloques de los hilos
+    private final ThreadLocal<long[]> bloque = ThreadLocal.withInitial(() -> new long[]{0, 0, -1}); // {siguiente, fin, epoca}
 
     /**
      * Metodo estatico para obtener la instancia unica del generador de identificadores.
@@ -25,23 +29,62 @@ public class IdGenerator {
     }
 
     /**
-     * Genera un identificador unico y lo incrementa.
+     * Genera un identificador unico y lo incrementa. Solo accede al contador global cuando se agota el bloque del hilo.
+     * Si el contador se reinicia o avanza mientras se toma el identificador, se descarta y se toma otro de un bloque nuevo.
      *
      * @return Un identificador unico generado.
      */
-    public Long getIdAndIncrement() {
-        Long idCopia = 0L;
-        locker.lock();
-        id++;
-        idCopia = id;
-        locker.unlock();
-        return idCopia;
+    public long getIdAndIncrement() {
+        long[] actual = bloque.get();
+        while (true) {
+            long epocaActual = epoca.get();
+            if ((epocaActual & 1) != 0) {
+                Thread.onSpinWait(); // Se esta cambiando el contador
+                continue;
+            }
+            if (actual[2] != epocaActual || actual[0] >= actual[1]) {
+                actual[0] = reserve(BLOCK_SIZE);
+                actual[1] = actual[0] + BLOCK_SIZE;
+                actual[2] = epocaActual;
+            }
+            long id = actual[0]++;
+            if (epoca.get() == epocaActual) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Reserva de una vez un rango de identificadores consecutivos, por ejemplo para una carga masiva.
+     *
+     * @param count El número de identificadores a reservar.
+     * @return El primer identificador del rango reservado; el rango es [primero, primero + count).
+     */
+    public long reserve(long count) {
+        return ultimo.getAndAdd(count) + 1;
+    }
+
+    /**
+     * Avanza el contador para que los siguientes identificadores sean mayores que uno ya usado,
+     * por ejemplo el mayor MyId guardado en la base de datos. Si el contador ya está por delante no hace nada.
+     *
+     * @param id El mayor identificador ya usado.
+     */
+    public synchronized void advanceTo(long id) {
+        if (ultimo.get() >= id) {
+            return;
+        }
+        epoca.incrementAndGet();
+        ultimo.accumulateAndGet(id, Math::max);
+        epoca.incrementAndGet();
     }
 
     /**
-     * Reinicia el identificador a su valor inicial (0).
+     * Reinicia el identificador a su valor inicial (0) y descarta los bloques de todos los hilos.
      */
-    public void resetId() {
-        this.id = 0L;
+    public synchronized void resetId() {
+        epoca.incrementAndGet();
+        ultimo.set(0);
+        epoca.incrementAndGet();
     }
 }
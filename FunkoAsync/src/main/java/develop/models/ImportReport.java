@@ -0,0 +1,22 @@
+package develop.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * La clase ImportReport representa el resultado de una importación tolerante a fallos: las filas leídas, guardadas
+ * y rechazadas, el archivo de rechazos y las métricas de cada etapa.
+ */
+@Data
+@Builder
+public class ImportReport {
+    private String file; // Archivo importado
+    private String rejectFile; // Archivo con las filas rechazadas, su numero de linea y el motivo
+    private long read; // Filas leidas del archivo
+    private long saved; // Funkos guardados en la base de datos
+    private long rejected; // Filas rechazadas en cualquier etapa
+    private long totalNanos; // Duracion total de la importacion
+    private List<ImportStageReport> stages; // Metricas de cada etapa
+}
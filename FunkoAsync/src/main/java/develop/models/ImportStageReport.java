@@ -0,0 +1,27 @@
+package develop.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * La clase ImportStageReport representa las métricas de una etapa de la importación: cuántas filas entran,
+ * cuántas salen hacia la siguiente etapa, cuántas se rechazan y el tiempo dedicado.
+ */
+@Data
+@Builder
+public class ImportStageReport {
+    private String stage; // Nombre de la etapa
+    private long in; // Filas que entran en la etapa
+    private long out; // Filas que pasan a la siguiente etapa
+    private long rejected; // Filas rechazadas en la etapa
+    private long nanos; // Tiempo total dedicado a la etapa
+
+    /**
+     * Calcula el rendimiento de la etapa en filas procesadas por segundo.
+     *
+     * @return Las filas por segundo, o 0 si la etapa no ha consumido tiempo medible.
+     */
+    public double getRowsPerSecond() {
+        return nanos == 0 ? 0 : in * 1_000_000_000.0 / nanos;
+    }
+}
@@ -0,0 +1,22 @@
+package develop.models;
+
+/**
+ * El record ModelStats es una foto inmutable de las estadísticas de precio de los Funkos de un modelo.
+ *
+ * @param model    El modelo.
+ * @param count    Número de Funkos del modelo.
+ * @param sumPrice Suma de los precios.
+ * @param minPrice Precio mínimo, o 0 si no hay Funkos.
+ * @param maxPrice Precio máximo, o 0 si no hay Funkos.
+ */
+public record ModelStats(Model model, long count, double sumPrice, double minPrice, double maxPrice) {
+
+    /**
+     * Calcula el precio medio.
+     *
+     * @return El precio medio, o 0 si no hay Funkos.
+     */
+    public double averagePrice() {
+        return count == 0 ? 0.0 : sumPrice / count;
+    }
+}
@@ -0,0 +1,18 @@
+package develop.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * La clase ShardInfo describe un fragmento (shard) de una exportación particionada: el archivo donde se ha escrito,
+ * la partición que contiene, el número de Funkos y la suma de comprobación del contenido.
+ */
+@Data
+@Builder
+public class ShardInfo {
+    private String file; // Nombre del archivo del fragmento dentro de la carpeta de datos
+    private String partition; // Particion que contiene el fragmento, por ejemplo el modelo
+    private long rows; // Numero de funkos escritos en el fragmento
+    private long bytes; // Tamaño en bytes del archivo
+    private String sha256; // Suma de comprobacion SHA-256 del archivo en hexadecimal
+}
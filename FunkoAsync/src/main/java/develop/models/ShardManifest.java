@@ -0,0 +1,20 @@
+package develop.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * La clase ShardManifest es el índice de una exportación particionada: lista todos los fragmentos que la componen,
+ * de forma que se puedan validar y cargar en paralelo.
+ */
+@Data
+@Builder
+public class ShardManifest {
+    private String partitionedBy; // Criterio de particion de los fragmentos
+    private LocalDateTime createdAt; // Fecha de la exportacion
+    private long totalRows; // Numero total de funkos entre todos los fragmentos
+    private List<ShardInfo> shards; // Fragmentos de la exportacion
+}
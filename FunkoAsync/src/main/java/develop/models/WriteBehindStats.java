@@ -0,0 +1,23 @@
+package develop.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * La clase WriteBehindStats representa las métricas de la cola de escritura diferida: cuántas actualizaciones esperan,
+ * cuántas se han fusionado con otra del mismo Funko y cuántas se han escrito, rechazado o fallado, y cuántas han esperado por estar la cola llena.
+ */
+@Data
+@Builder
+public class WriteBehindStats {
+    private int queueDepth; // Funkos pendientes de escribir
+    private int maxQueueDepth; // Mayor numero de funkos pendientes a la vez
+    private long oldestPendingMillis; // Tiempo que lleva esperando el funko pendiente mas antiguo
+    private long enqueued; // Actualizaciones recibidas
+    private long coalesced; // Actualizaciones sustituidas por una posterior del mismo funko antes de escribirse
+    private long flushed; // Funkos escritos en la base de datos
+    private long batches; // Batches JDBC ejecutados
+    private long conflicts; // Funkos no escritos por no existir o por tener otra version
+    private long failures; // Funkos no escritos por fallar tambien al reintentarlos de uno en uno
+    private long blocked; // Actualizaciones que han esperado por estar la cola llena
+}
@@ -0,0 +1,73 @@
+package develop.repositories.funkos;
+
+import develop.models.FunkoChange;
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * La clase FunkoChangeTrigger es el trigger de H2 que registra en funkos_cambios cada fila insertada, actualizada o borrada
+ * de la tabla funkos. Se ejecuta dentro de la misma transacción que el cambio, así que un cambio deshecho no deja registro
+ * y uno confirmado siempre lo deja. H2 la instancia por su nombre desde init.sql, por eso debe ser pública.
+ * <p>
+ * Registrado además como trigger BEFORE UPDATE (trg_funkos_version), garantiza que la versión de un Funko aumenta con cada
+ * actualización aunque el UPDATE no la incremente, como el SQL directo o el de otros procesos: si la versión nueva no es
+ * mayor que la anterior, pasa a ser la anterior más uno. Así la versión de cada cambio registrado identifica el estado.
+ * <p>
+ * El INSERT en funkos_cambios se prepara en cada fila sobre la conexión que pasa H2, que es la de la transacción que
+ * escribe, y se cierra al terminar; el trigger no guarda sentencias ni sesiones entre llamadas. H2 reutiliza el plan
+ * de la sentencia gracias a su caché de consultas por sesión.
+ */
+public class FunkoChangeTrigger implements Trigger {
+    private static final String INSERT_CAMBIO = "INSERT INTO funkos_cambios (funko_id, operacion, version) VALUES (?, ?, ?)";
+    private int columnaId;
+    private int columnaVersion;
+    private boolean antes;
+
+    /**
+     * Resuelve las posiciones de las columnas ID y version por los metadatos de la tabla, para no depender de su orden.
+     */
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) throws SQLException {
+        antes = before;
+        columnaId = -1;
+        columnaVersion = -1;
+        try (var rs = conn.getMetaData().getColumns(null, schemaName, tableName, null)) {
+            while (rs.next()) {
+                String columna = rs.getString("COLUMN_NAME");
+                int posicion = rs.getInt("ORDINAL_POSITION") - 1;
+                if ("ID".equalsIgnoreCase(columna)) {
+                    columnaId = posicion;
+                } else if ("VERSION".equalsIgnoreCase(columna)) {
+                    columnaVersion = posicion;
+                }
+            }
+        }
+        if (columnaId < 0 || columnaVersion < 0) {
+            throw new SQLException("La tabla " + tableName + " no tiene las columnas ID y version");
+        }
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (antes) {
+            if (oldRow != null && newRow != null) {
+                long anterior = ((Number) oldRow[columnaVersion]).longValue();
+                if (((Number) newRow[columnaVersion]).longValue() <= anterior) {
+                    newRow[columnaVersion] = anterior + 1;
+                }
+            }
+            return;
+        }
+        FunkoChange.Operation operacion = oldRow == null ? FunkoChange.Operation.INSERT
+                : newRow == null ? FunkoChange.Operation.DELETE : FunkoChange.Operation.UPDATE;
+        Object[] fila = newRow != null ? newRow : oldRow;
+        try (var stmt = conn.prepareStatement(INSERT_CAMBIO)) {
+            stmt.setLong(1, ((Number) fila[columnaId]).longValue());
+            stmt.setString(2, operacion.name());
+            stmt.setObject(3, newRow != null ? newRow[columnaVersion] : null);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package develop.repositories.funkos;
+
+import develop.models.FunkoSummary;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * La clase FunkoProjection describe una proyección de la tabla de Funkos: las columnas que se seleccionan y cómo se
+ * convierte cada fila en el objeto resultado. Así una consulta solo transfiere y decodifica las columnas que se usan.
+ *
+ * @param <T> El tipo de objeto que se construye con cada fila.
+ */
+public final class FunkoProjection<T> {
+    private static final Set<String> COLUMNAS = Set.of("ID", "cod", "MyId", "nombre", "modelo", "precio", "fecha_lanzamiento", "created_at", "updated_at", "version");
+
+    /**
+     * Proyección con el ID, el nombre, el precio y el modelo, para listados.
+     */
+    public static final FunkoProjection<FunkoSummary> SUMMARY = of(List.of("ID", "nombre", "precio", "modelo"),
+            rs -> new FunkoSummary(rs.getLong(1), rs.getString(2), rs.getDouble(3), FunkoRowMapper.toModel(rs.getString(4))));
+
+    /**
+     * Proyección con solo el ID.
+     */
+    public static final FunkoProjection<Long> IDS = of(List.of("ID"), rs -> rs.getLong(1));
+
+    private final List<String> columns;
+    private final String selectList;
+    private final RowMapper<T> mapper; // Lee las columnas por posicion, en el orden en que se declararon
+
+    private FunkoProjection(List<String> columns, RowMapper<T> mapper) {
+        this.columns = List.copyOf(columns);
+        this.selectList = String.join(", ", columns);
+        this.mapper = mapper;
+    }
+
+    /**
+     * Crea una proyección.
+     *
+     * @param columns Las columnas de la tabla funkos que se seleccionan, en orden.
+     * @param mapper  La función que convierte cada fila en el objeto resultado, leyendo las columnas por posición.
+     * @param <T>     El tipo de objeto que se construye con cada fila.
+     * @return La proyección.
+     * @throws IllegalArgumentException Si no hay columnas o alguna no pertenece a la tabla funkos.
+     */
+    public static <T> FunkoProjection<T> of(List<String> columns, RowMapper<T> mapper) {
+        if (columns.isEmpty() || !COLUMNAS.containsAll(columns)) {
+            throw new IllegalArgumentException("Columnas de la proyeccion no validas: " + columns);
+        }
+        return new FunkoProjection<>(columns, mapper);
+    }
+
+    /**
+     * Obtiene las columnas seleccionadas.
+     *
+     * @return Las columnas, en orden.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Obtiene la lista de columnas para la cláusula SELECT.
+     *
+     * @return Las columnas separadas por comas.
+     */
+    String getSelectList() {
+        return selectList;
+    }
+
+    /**
+     * Obtiene la función que convierte cada fila.
+     *
+     * @return La función de lectura.
+     */
+    RowMapper<T> getMapper() {
+        return mapper;
+    }
+}
@@ -0,0 +1,108 @@
+package develop.repositories.funkos;
+
+import develop.models.Funko;
+import develop.models.Model;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * La clase FunkoRowMapper convierte filas de la tabla funkos en objetos Funko.
+ * La primera vez que recibe un ResultSet busca en sus metadatos la posición de cada columna y después lee todas
+ * las filas por posición, sin buscar las columnas por nombre en cada fila. El modelo se traduce con una tabla precalculada.
+ * Guarda las posiciones del último ResultSet, por lo que cada consulta debe usar su propia instancia.
+ */
+public final class FunkoRowMapper implements RowMapper<Funko> {
+    private static final Map<String, Model> MODELO_POR_NOMBRE = new HashMap<>();
+
+    static {
+        for (Model model : Model.values()) {
+            MODELO_POR_NOMBRE.put(model.name(), model);
+        }
+    }
+
+    private ResultSet resultSet;
+    private int id;
+    private int cod;
+    private int myId;
+    private int nombre;
+    private int modelo;
+    private int precio;
+    private int fechaLanzamiento;
+    private int createdAt;
+    private int updatedAt;
+    private int version;
+
+    /**
+     * Traduce el nombre de un modelo guardado en la base de datos. La columna modelo admite NULL, que se traduce a null.
+     *
+     * @param nombre El nombre del modelo, o null.
+     * @return El modelo, o null si no tiene.
+     * @throws IllegalArgumentException Si el nombre no corresponde a ningún modelo.
+     */
+    public static Model toModel(String nombre) {
+        if (nombre == null) {
+            return null;
+        }
+        Model model = MODELO_POR_NOMBRE.get(nombre);
+        if (model == null) {
+            throw new IllegalArgumentException("Modelo desconocido: " + nombre);
+        }
+        return model;
+    }
+
+    @Override
+    public Funko mapRow(ResultSet rs) throws SQLException {
+        if (rs != resultSet) {
+            resolverColumnas(rs);
+        }
+        return Funko.builder()
+                .id(rs.getLong(id))
+                .COD(rs.getObject(cod, UUID.class))
+                .myId(rs.getLong(myId))
+                .name(rs.getString(nombre))
+                .model(toModel(rs.getString(modelo)))
+                .price(rs.getDouble(precio))
+                .releaseData(rs.getObject(fechaLanzamiento, LocalDate.class))
+                .createdAt(rs.getObject(createdAt, LocalDateTime.class))
+                .updatedAt(rs.getObject(updatedAt, LocalDateTime.class))
+                .version(rs.getLong(version))
+                .build();
+    }
+
+    /**
+     * Busca en los metadatos del ResultSet la posición de cada columna de la tabla funkos.
+     */
+    private void resolverColumnas(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        Map<String, Integer> posiciones = new HashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            posiciones.putIfAbsent(metaData.getColumnLabel(i).toUpperCase(), i);
+        }
+        id = posicion(posiciones, "ID");
+        cod = posicion(posiciones, "COD");
+        myId = posicion(posiciones, "MYID");
+        nombre = posicion(posiciones, "NOMBRE");
+        modelo = posicion(posiciones, "MODELO");
+        precio = posicion(posiciones, "PRECIO");
+        fechaLanzamiento = posicion(posiciones, "FECHA_LANZAMIENTO");
+        createdAt = posicion(posiciones, "CREATED_AT");
+        updatedAt = posicion(posiciones, "UPDATED_AT");
+        version = posicion(posiciones, "VERSION");
+        resultSet = rs;
+    }
+
+    private static int posicion(Map<String, Integer> posiciones, String columna) throws SQLException {
+        Integer posicion = posiciones.get(columna);
+        if (posicion == null) {
+            throw new SQLException("Falta la columna " + columna + " en el resultado");
+        }
+        return posicion;
+    }
+}
@@ -0,0 +1,87 @@
+package develop.repositories.funkos;
+
+import develop.exceptions.funkos.FunkoConflictoException;
+import develop.exceptions.funkos.FunkoException;
+import develop.exceptions.funkos.FunkoNoEncotradoException;
+import develop.models.Funko;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * La interfaz FunkoTransaction representa una unidad de trabajo: un conjunto de operaciones sobre Funkos que se ejecutan
+ * con una sola conexión y se confirman juntas con un único commit, o se deshacen todas si alguna falla.
+ * Las operaciones son síncronas y solo se pueden usar dentro del trabajo pasado a FunkosRepository.inTransaction.
+ */
+public interface FunkoTransaction {
+
+    /**
+     * El trabajo que se ejecuta dentro de una transacción.
+     *
+     * @param <R> El tipo del resultado del trabajo.
+     */
+    @FunctionalInterface
+    interface Work<R> {
+        R run(FunkoTransaction tx) throws SQLException, FunkoException;
+    }
+
+    /**
+     * Busca un Funko por su ID, viendo los cambios aún no confirmados de la transacción.
+     *
+     * @param id El ID del Funko.
+     * @return El Funko, o vacío si no existe.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    Optional<Funko> findById(long id) throws SQLException;
+
+    /**
+     * Guarda un Funko nuevo, asignándole su ID y su MyId.
+     *
+     * @param funko El Funko a guardar.
+     * @return El Funko guardado.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    Funko save(Funko funko) throws SQLException;
+
+    /**
+     * Actualiza el nombre, el modelo y el precio de un Funko si su versión sigue siendo la del Funko, y aumenta la versión.
+     *
+     * @param funko El Funko con los datos nuevos y la versión que se leyó.
+     * @return El Funko actualizado.
+     * @throws SQLException              Si ocurre un error de SQL.
+     * @throws FunkoNoEncotradoException Si no existe un Funko con ese ID; la transacción entera se deshace.
+     * @throws FunkoConflictoException   Si otro proceso ha modificado el Funko; la transacción entera se deshace.
+     */
+    Funko update(Funko funko) throws SQLException, FunkoNoEncotradoException, FunkoConflictoException;
+
+    /**
+     * Borra un Funko por su ID. El trigger de la tabla funkos registra el borrado en funkos_cambios para la exportación incremental.
+     *
+     * @param id El ID del Funko.
+     * @return true si el Funko existía.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    boolean deleteById(long id) throws SQLException;
+
+    /**
+     * Registra una acción que se ejecuta solo si la transacción se confirma, justo después del commit.
+     *
+     * @param action La acción a ejecutar.
+     */
+    void afterCommit(Runnable action);
+
+    /**
+     * Obtiene los Funkos guardados o actualizados en la transacción, en el orden en que se hicieron los cambios.
+     *
+     * @return Los Funkos guardados o actualizados.
+     */
+    List<Funko> getUpserted();
+
+    /**
+     * Obtiene los ID de los Funkos borrados en la transacción.
+     *
+     * @return Los ID de los Funkos borrados.
+     */
+    List<Long> getDeleted();
+}
@@ -0,0 +1,154 @@
+package develop.repositories.funkos;
+
+import develop.exceptions.funkos.FunkoConflictoException;
+import develop.exceptions.funkos.FunkoNoEncotradoException;
+import develop.models.Funko;
+import develop.models.IdGenerator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * La clase FunkoTransactionImpl implementa una unidad de trabajo sobre una conexión con el autocommit desactivado.
+ * Cada sentencia se prepara una sola vez y se reutiliza en todas las operaciones de la unidad.
+ * El commit, el rollback y el cierre los hace FunkosRepositoryImpl.inTransaction.
+ */
+class FunkoTransactionImpl implements FunkoTransaction, AutoCloseable {
+    private static final String FIND_BY_ID = "SELECT * FROM funkos WHERE ID = ?";
+    private static final String INSERT = "INSERT INTO funkos (cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE funkos SET nombre = ?, modelo = ?, precio = ?, updated_at = ?, version = version + 1 WHERE ID = ? AND version = ?";
+    private static final String DELETE = "DELETE FROM funkos WHERE ID = ?";
+    private final Connection connection;
+    private final IdGenerator idGenerator;
+    private final Map<String, PreparedStatement> sentencias = new HashMap<>();
+    private final List<Runnable> trasCommit = new ArrayList<>();
+    private final List<Funko> upserted = new ArrayList<>();
+    private final List<Long> deleted = new ArrayList<>();
+    private final FunkoRowMapper mapper = new FunkoRowMapper();
+
+    FunkoTransactionImpl(Connection connection, IdGenerator idGenerator) {
+        this.connection = connection;
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public Optional<Funko> findById(long id) throws SQLException {
+        PreparedStatement stmt = sentencia(FIND_BY_ID);
+        stmt.setLong(1, id);
+        try (var rs = stmt.executeQuery()) {
+            return rs.next() ? Optional.of(mapper.mapRow(rs)) : Optional.empty();
+        }
+    }
+
+    @Override
+    public Funko save(Funko funko) throws SQLException {
+        PreparedStatement stmt = sentencia(INSERT);
+        funko.setMyId(idGenerator.getIdAndIncrement());
+        funko.setUpdatedAt(LocalDateTime.now());
+        funko.setVersion(0);
+        stmt.setObject(1, funko.getCOD());
+        stmt.setLong(2, funko.getMyId());
+        stmt.setString(3, funko.getName());
+        stmt.setString(4, funko.getModel().toString());
+        stmt.setDouble(5, funko.getPrice());
+        stmt.setObject(6, funko.getReleaseData());
+        stmt.setObject(7, funko.getCreatedAt());
+        stmt.setObject(8, funko.getUpdatedAt());
+        stmt.executeUpdate();
+        try (var rs = stmt.getGeneratedKeys()) {
+            if (rs.next()) {
+                funko.setId(rs.getLong(1));
+            }
+        }
+        upserted.add(funko);
+        return funko;
+    }
+
+    @Override
+    public Funko update(Funko funko) throws SQLException, FunkoNoEncotradoException, FunkoConflictoException {
+        PreparedStatement stmt = sentencia(UPDATE);
+        LocalDateTime ahora = LocalDateTime.now();
+        stmt.setString(1, funko.getName());
+        stmt.setString(2, funko.getModel().toString());
+        stmt.setDouble(3, funko.getPrice());
+        stmt.setObject(4, ahora);
+        stmt.setLong(5, funko.getId());
+        stmt.setLong(6, funko.getVersion());
+        if (stmt.executeUpdate() == 0) {
+            if (findById(funko.getId()).isPresent()) {
+                throw new FunkoConflictoException("Funko con id: " + funko.getId() + " modificado por otro proceso, version esperada: " + funko.getVersion());
+            }
+            throw new FunkoNoEncotradoException("Funko no encontrado con id: " + funko.getId());
+        }
+        funko.setUpdatedAt(ahora);
+        funko.setVersion(funko.getVersion() + 1);
+        upserted.add(funko);
+        return funko;
+    }
+
+    @Override
+    public boolean deleteById(long id) throws SQLException {
+        PreparedStatement stmt = sentencia(DELETE);
+        stmt.setLong(1, id);
+        if (stmt.executeUpdate() == 0) {
+            return false;
+        }
+        deleted.add(id);
+        return true;
+    }
+
+    @Override
+    public void afterCommit(Runnable action) {
+        trasCommit.add(action);
+    }
+
+    @Override
+    public List<Funko> getUpserted() {
+        return List.copyOf(upserted);
+    }
+
+    @Override
+    public List<Long> getDeleted() {
+        return List.copyOf(deleted);
+    }
+
+    /**
+     * Obtiene las acciones registradas para después del commit.
+     *
+     * @return Las acciones, en el orden en que se registraron.
+     */
+    List<Runnable> getAfterCommit() {
+        return trasCommit;
+    }
+
+    /**
+     * Obtiene la sentencia preparada de un SQL, preparándola la primera vez que se usa en la unidad.
+     */
+    private PreparedStatement sentencia(String sql) throws SQLException {
+        PreparedStatement stmt = sentencias.get(sql);
+        if (stmt == null) {
+            stmt = sql.equals(INSERT) ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : connection.prepareStatement(sql);
+            sentencias.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    /**
+     * Cierra las sentencias preparadas. La conexión la cierra quien la abrió.
+     */
+    @Override
+    public void close() throws SQLException {
+        for (PreparedStatement stmt : sentencias.values()) {
+            stmt.close();
+        }
+        sentencias.clear();
+    }
+}
@@ -2,11 +2,20 @@ package develop.repositories.funkos;
 
 import develop.exceptions.funkos.FunkoNoEncotradoException;
 import develop.models.Funko;
+import develop.models.FunkoChange;
+import develop.models.FunkoCompact;
+import develop.models.FunkoQuery;
+import develop.models.ImportReport;
+import develop.models.Model;
 import develop.repositories.crud.CrudRepository;
 
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.SortedMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * La interfaz FunkosRepository extiende CrudRepository y proporciona métodos adicionales para buscar objetos Funko en un repositorio, identificados por un ID de tipo Long.
@@ -22,4 +31,197 @@ public interface FunkosRepository extends CrudRepository<Funko, Long> {
      * @throws FunkoNoEncotradoException  Si no se encuentran objetos Funko con el nombre especificado.
      */
     CompletableFuture<List<Funko>> findByNombre(String nombre) throws SQLException, FunkoNoEncotradoException;
-}
\ No newline at end of file
+
+    /**
+     * Restaura un lote de objetos Funko en el repositorio conservando su ID, su MyId y sus marcas de tiempo.
+     * Si ya existe un Funko con el mismo ID se sobrescribe, por lo que restaurar dos veces el mismo lote no duplica datos.
+     *
+     * @param funkos El lote de Funkos que se va a restaurar.
+     * @return Un CompletableFuture que representa la operación de restauración (devuelve el número de Funkos restaurados).
+     * @throws SQLException Si ocurre un error en la operación de restauración.
+     */
+    CompletableFuture<Integer> restoreAll(List<Funko> funkos) throws SQLException;
+
+    /**
+     * Busca los Funkos que existen y tienen algún cambio registrado entre dos secuencias de funkos_cambios, ordenados por ID.
+     *
+     * @param fromSeq La secuencia del último cambio ya exportado, excluida.
+     * @param toSeq   La secuencia del último cambio a exportar, incluida.
+     * @return Un CompletableFuture que representa la operación de búsqueda de los Funkos modificados.
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    CompletableFuture<List<Funko>> findChangedBetween(long fromSeq, long toSeq) throws SQLException;
+
+    /**
+     * Busca los IDs de los Funkos borrados entre dos secuencias de funkos_cambios que no se han vuelto a crear.
+     *
+     * @param fromSeq La secuencia del último cambio ya exportado, excluida.
+     * @param toSeq   La secuencia del último cambio a exportar, incluida.
+     * @return Un CompletableFuture con los IDs de los Funkos borrados, ordenados.
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    CompletableFuture<List<Long>> findDeletedBetween(long fromSeq, long toSeq) throws SQLException;
+
+    /**
+     * Busca los cambios de la tabla funkos registrados por el trigger después de una secuencia, en orden de secuencia.
+     *
+     * @param seq   La secuencia del último cambio ya leído.
+     * @param limit El número máximo de cambios a devolver.
+     * @return Un CompletableFuture con los cambios.
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    CompletableFuture<List<FunkoChange>> findChangesSince(long seq, int limit) throws SQLException;
+
+    /**
+     * Obtiene la secuencia del último cambio registrado por el trigger.
+     *
+     * @return Un CompletableFuture con la secuencia, o 0 si no hay cambios registrados.
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    CompletableFuture<Long> lastChangeSeq() throws SQLException;
+
+    /**
+     * Borra los cambios registrados hasta una secuencia, cuando ya no los necesita ningún lector.
+     *
+     * @param seq La secuencia del último cambio a borrar, incluida.
+     * @return Un CompletableFuture con el número de cambios borrados.
+     * @throws SQLException Si ocurre un error en la operación de borrado.
+     */
+    CompletableFuture<Integer> purgeChanges(long seq) throws SQLException;
+
+    /**
+     * Recorre con un cursor propio todos los Funkos de un modelo, entregándolos uno a uno sin cargarlos todos en memoria.
+     *
+     * @param model  El modelo de los Funkos a recorrer.
+     * @param action La acción que se ejecuta con cada Funko leído.
+     * @return Un CompletableFuture que representa la operación de recorrido (devuelve el número de Funkos leídos).
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    CompletableFuture<Long> forEachByModel(Model model, Consumer<Funko> action) throws SQLException;
+
+    /**
+     * Carga masivamente un archivo CSV de Funkos leyéndolo directamente desde la base de datos, sin crear objetos Funko.
+     * Las filas con algún campo inválido no se cargan: se escriben en el archivo de rechazos con su número de línea y el motivo.
+     *
+     * @param file       La ruta del archivo CSV sin comprimir, con la cabecera COD,NOMBRE,MODELO,PRECIO,FECHA_LANZAMIENTO.
+     * @param rejectFile El archivo CSV donde se escriben las filas rechazadas; solo se crea si se rechaza alguna.
+     * @return Un CompletableFuture que representa la operación de carga (devuelve el informe de filas leídas, cargadas y rechazadas).
+     * @throws SQLException Si ocurre un error en la operación de carga.
+     */
+    CompletableFuture<ImportReport> bulkLoadCsv(Path file, Path rejectFile) throws SQLException;
+
+    /**
+     * Guarda un lote de objetos Funko nuevos en una única transacción, asignándoles su ID y su MyId.
+     *
+     * @param funkos El lote de Funkos que se va a guardar.
+     * @return Un CompletableFuture que representa la operación de guardado (devuelve los Funkos guardados).
+     * @throws SQLException Si ocurre un error en la operación de guardado.
+     */
+    CompletableFuture<List<Funko>> saveAll(List<Funko> funkos) throws SQLException;
+
+    /**
+     * Obtiene todos los Funkos en su representación compacta e inmutable, para análisis con muchos Funkos en memoria.
+     *
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de FunkoCompact).
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    CompletableFuture<List<FunkoCompact>> findAllCompact() throws SQLException;
+
+    /**
+     * Recorre con un cursor todos los Funkos en su representación compacta, entregándolos uno a uno sin cargarlos todos en memoria.
+     *
+     * @param action La acción que se ejecuta con cada Funko leído.
+     * @return Un CompletableFuture que representa la operación de recorrido (devuelve el número de Funkos leídos).
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    CompletableFuture<Long> forEachCompact(Consumer<FunkoCompact> action) throws SQLException;
+
+    /**
+     * Busca los Funkos con un precio dentro de un rango, ordenados de menor a mayor precio. Usa el índice sobre el precio.
+     *
+     * @param min El precio mínimo, incluido.
+     * @param max El precio máximo, incluido.
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de Funkos del rango).
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    CompletableFuture<List<Funko>> findByPriceRange(double min, double max) throws SQLException;
+
+    /**
+     * Busca los Funkos más caros, ordenados de mayor a menor precio. A igual precio va primero el de menor ID.
+     *
+     * @param n El número máximo de Funkos a devolver.
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de los n Funkos más caros).
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    CompletableFuture<List<Funko>> findTopByPrice(int n) throws SQLException;
+
+    /**
+     * Busca los Funkos lanzados entre dos fechas, ordenados por fecha de lanzamiento. Usa el índice sobre la fecha de lanzamiento.
+     *
+     * @param desde La primera fecha, incluida.
+     * @param hasta La última fecha, incluida.
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de Funkos lanzados entre las fechas).
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    CompletableFuture<List<Funko>> findByReleaseDateBetween(LocalDate desde, LocalDate hasta) throws SQLException;
+
+    /**
+     * Cuenta los Funkos lanzados cada año, agrupándolos en la base de datos.
+     *
+     * @return Un CompletableFuture que representa la operación de recuento (devuelve un mapa ordenado del año al número de Funkos).
+     * @throws SQLException Si ocurre un error en la operación de recuento.
+     */
+    CompletableFuture<SortedMap<Integer, Long>> countByReleaseYear() throws SQLException;
+
+    /**
+     * Busca los Funkos que cumplen todos los criterios de una consulta. El filtrado, el orden y el límite se resuelven
+     * en la base de datos con una única sentencia parametrizada.
+     *
+     * @param query Los criterios de la consulta.
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de Funkos que cumplen los criterios).
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    CompletableFuture<List<Funko>> find(FunkoQuery query) throws SQLException;
+
+    /**
+     * Busca los Funkos que cumplen todos los criterios de una consulta, leyendo solo las columnas de una proyección.
+     *
+     * @param query      Los criterios de la consulta.
+     * @param projection Las columnas a seleccionar y cómo se convierte cada fila, por ejemplo FunkoProjection.SUMMARY.
+     * @param <T>        El tipo de objeto de la proyección.
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de objetos de la proyección).
+     * @throws SQLException Si ocurre un error en la operación de búsqueda.
+     */
+    <T> CompletableFuture<List<T>> find(FunkoQuery query, FunkoProjection<T> projection) throws SQLException;
+
+    /**
+     * Ejecuta un conjunto de operaciones como una unidad de trabajo: con una sola conexión, reutilizando las sentencias
+     * preparadas y confirmando todo con un único commit. Si el trabajo lanza una excepción se deshacen todos sus cambios.
+     *
+     * @param work El trabajo a ejecutar con la transacción.
+     * @param <R>  El tipo del resultado del trabajo.
+     * @return Un CompletableFuture que representa la transacción (devuelve el resultado del trabajo tras el commit).
+     * @throws SQLException Si ocurre un error al abrir la transacción.
+     */
+    <R> CompletableFuture<R> inTransaction(FunkoTransaction.Work<R> work) throws SQLException;
+
+    /**
+     * Actualiza un Funko solo si su versión en la base de datos sigue siendo la del Funko (compare-and-set).
+     * Si se actualiza, la versión del Funko aumenta en uno.
+     *
+     * @param funko El Funko con los datos nuevos y la versión que se leyó.
+     * @return Un CompletableFuture que representa la operación (devuelve false si el Funko no existe o su versión ha cambiado).
+     * @throws SQLException Si ocurre un error en la operación de actualización.
+     */
+    CompletableFuture<Boolean> compareAndSet(Funko funko) throws SQLException;
+
+    /**
+     * Actualiza un lote de Funkos en una única transacción, cada uno solo si su versión sigue siendo la del Funko.
+     * Los que no existen o tienen otra versión se quedan como estaban. Los Funkos recibidos no se modifican.
+     *
+     * @param funkos El lote de Funkos con los datos nuevos y la versión que se leyó.
+     * @return Un CompletableFuture que representa la operación (devuelve copias de los Funkos actualizados con su nueva versión y fecha).
+     * @throws SQLException Si ocurre un error en la operación de actualización.
+     */
+    CompletableFuture<List<Funko>> updateAll(List<Funko> funkos) throws SQLException;
+}
@@ -1,39 +1,66 @@
 package develop.repositories.funkos;
 
+import develop.exceptions.funkos.FunkoConflictoException;
+import develop.exceptions.funkos.FunkoException;
 import develop.exceptions.funkos.FunkoNoAlmacenadoException;
 import develop.exceptions.funkos.FunkoNoEncotradoException;
 import develop.models.Funko;
+import develop.models.FunkoChange;
+import develop.models.FunkoCompact;
+import develop.models.FunkoQuery;
 import develop.models.IdGenerator;
+import develop.models.ImportReport;
+import develop.models.ImportStageReport;
 import develop.models.Model;
 import develop.services.database.DatabaseManager;
+import develop.utils.CsvUtils;
+import develop.utils.TimingLogger;
 import lombok.Builder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.StringJoiner;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * La clase FunkosRepositoryImpl implementa la interfaz FunkosRepository y proporciona una implementación de los métodos para operaciones CRUD en objetos Funko.
  * Utiliza una base de datos y un generador de identificadores para gestionar los Funkos.
  */
 public class FunkosRepositoryImpl implements FunkosRepository {
+    private static final int FETCH_SIZE = 1000;
     private static FunkosRepositoryImpl instance;
     private final Logger logger = LoggerFactory.getLogger(FunkosRepositoryImpl.class);
     private final DatabaseManager db;
     private final IdGenerator idGenerator;
+    private final Map<String, String> sqlPorForma = new ConcurrentHashMap<>(); // Sentencia SQL de cada proyeccion y forma de FunkoQuery
 
     /**
      * Constructor privado para crear una instancia de FunkosRepositoryImpl.
+     * Avanza el generador de identificadores hasta el mayor MyId guardado para no repetirlos tras un reinicio.
      *
      * @param db           El gestor de la base de datos para acceder a los datos de los Funkos.
      * @param idGenerator  El generador de identificadores para los Funkos.
@@ -41,6 +68,15 @@ public class FunkosRepositoryImpl implements FunkosRepository {
     private FunkosRepositoryImpl(DatabaseManager db, IdGenerator idGenerator) {
         this.db = db;
         this.idGenerator = idGenerator;
+        try (var connection = db.getConnection();
+             var stmt = connection.createStatement();
+             var rs = stmt.executeQuery("SELECT COALESCE(MAX(MyId), 0) FROM funkos")
+        ) {
+            rs.next();
+            idGenerator.advanceTo(rs.getLong(1));
+        } catch (SQLException e) {
+            logger.error("Error al leer el mayor MyId de los funkos", e);
+        }
     }
 
     /**
@@ -65,6 +101,7 @@ public class FunkosRepositoryImpl implements FunkosRepository {
     @Override
     public CompletableFuture<List<Funko>> findAll() {
         return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
             List<Funko> lista = new ArrayList<>();
             String query = "SELECT * FROM funkos";
             try (var connection = db.getConnection();
@@ -72,24 +109,15 @@ public class FunkosRepositoryImpl implements FunkosRepository {
             ) {
                 logger.debug("Obteniendo todos los funkos");
                 var rs = stmt.executeQuery();
+                var mapper = new FunkoRowMapper();
                 while (rs.next()) {
-                    Funko funko = Funko.builder()
-                            .id(rs.getLong("ID"))
-                            .COD(rs.getObject("cod", UUID.class))
-                            .myId(rs.getLong("MyId"))
-                            .name(rs.getString("nombre"))
-                            .model(Model.valueOf(rs.getString("modelo")))
-                            .price(rs.getDouble("precio"))
-                            .releaseData(rs.getObject("fecha_lanzamiento", LocalDate.class))
-                            .createdAt(rs.getObject("created_at", LocalDateTime.class))
-                            .updatedAt(rs.getObject("updated_at", LocalDateTime.class))
-                            .build();
-                    lista.add(funko);
+                    lista.add(mapper.mapRow(rs));
                 }
             } catch (SQLException e) {
                 logger.error("Error al buscar todos los funkos", e);
                 throw new CompletionException(e);
             }
+            TimingLogger.record("findAll", inicio, lista.size());
             return lista;
         });
     }
@@ -104,32 +132,24 @@ public class FunkosRepositoryImpl implements FunkosRepository {
     @Override
     public CompletableFuture<List<Funko>> findByNombre(String nombre) {
         return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
             var lista = new ArrayList<Funko>();
             String query = "SELECT * FROM funkos WHERE nombre LIKE ?";
             try (var connection = db.getConnection();
                  var stmt = connection.prepareStatement(query)
             ) {
-                logger.debug("Obteniendo todos los funkos por nombre que contenga: " + nombre);
+                logger.debug("Obteniendo todos los funkos por nombre que contenga: {}", nombre);
                 stmt.setString(1, "%" + nombre + "%");
                 var rs = stmt.executeQuery();
+                var mapper = new FunkoRowMapper();
                 while (rs.next()) {
-                    Funko funko = Funko.builder()
-                            .id(rs.getLong("ID"))
-                            .COD(rs.getObject("cod", UUID.class))
-                            .myId(rs.getLong("MyId"))
-                            .name(rs.getString("nombre"))
-                            .model(Model.valueOf(rs.getString("modelo")))
-                            .price(rs.getDouble("precio"))
-                            .releaseData(rs.getObject("fecha_lanzamiento", LocalDate.class))
-                            .createdAt(rs.getObject("created_at", LocalDateTime.class))
-                            .updatedAt(rs.getObject("updated_at", LocalDateTime.class))
-                            .build();
-                    lista.add(funko);
+                    lista.add(mapper.mapRow(rs));
                 }
             } catch (SQLException e) {
                 logger.error("Error al buscar funkos por nombre", e);
                 throw new CompletionException(e);
             }
+            TimingLogger.record("findByNombre", inicio, lista.size());
             return lista;
         });
     }
@@ -143,6 +163,7 @@ public class FunkosRepositoryImpl implements FunkosRepository {
     @Override
     public CompletableFuture<Optional<Funko>> findById(Long id) {
         return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
             Optional<Funko> funko = Optional.empty();
             String query = "SELECT * FROM funkos WHERE ID =?";
             try (var connection = db.getConnection();
@@ -150,24 +171,14 @@ public class FunkosRepositoryImpl implements FunkosRepository {
             ) {
                 stmt.setLong(1, id);
                 var rs = stmt.executeQuery();
-                while (rs.next()) {
-                    funko = Optional.of(Funko.builder()
-                            .id(rs.getLong("ID"))
-                            .COD(rs.getObject("cod", UUID.class))
-                            .myId(rs.getLong("MyId"))
-                            .name(rs.getString("nombre"))
-                            .model(Model.valueOf(rs.getString("modelo")))
-                            .price(rs.getDouble("precio"))
-                            .releaseData(rs.getObject("fecha_lanzamiento", LocalDate.class))
-                            .createdAt(rs.getObject("created_at", LocalDateTime.class))
-                            .updatedAt(rs.getObject("updated_at", LocalDateTime.class))
-                            .build()
-                    );
+                if (rs.next()) {
+                    funko = Optional.of(new FunkoRowMapper().mapRow(rs));
                 }
             } catch (SQLException e) {
                 logger.error("Error al buscar funko por id", e);
                 throw new CompletionException(e);
             }
+            TimingLogger.record("findById", inicio, funko.isPresent() ? 1 : 0);
             return funko;
         });
     }
@@ -181,14 +192,16 @@ public class FunkosRepositoryImpl implements FunkosRepository {
     @Override
     public CompletableFuture<Funko> save(Funko funko) {
         return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
             String query = "INSERT INTO funkos (cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
             try (var connection = db.getConnection();
                  var stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)
             ) {
-                logger.debug("Guardando el funko: " + funko);
+                logger.debug("Guardando el funko: {}", funko);
 
                 funko.setMyId(idGenerator.getIdAndIncrement());
                 funko.setUpdatedAt(LocalDateTime.now());
+                funko.setVersion(0);
                 stmt.setObject(1, funko.getCOD());
                 stmt.setLong(2, funko.getMyId());
                 stmt.setString(3, funko.getName());
@@ -205,52 +218,220 @@ public class FunkosRepositoryImpl implements FunkosRepository {
                     }
                     rs.close();
                 } else {
-                    logger.error("Funko no guardado con id: " + funko.getId());
+                    logger.error("Funko no guardado con id: {}", funko.getId());
                     throw new FunkoNoAlmacenadoException("Funko no guardado con id: " + funko.getId());
                 }
             } catch (SQLException | FunkoNoAlmacenadoException e) {
                 logger.error("Error al guardar el funko", e);
                 throw new CompletionException(e);
             }
+            TimingLogger.record("save", inicio, 1);
             return funko;
         });
     }
 
 
     /**
-     * Actualiza un Funko en el repositorio.
+     * Guarda un lote de Funkos nuevos con un único batch JDBC dentro de una transacción.
+     * Los MyId del lote se reservan de una vez en el IdGenerator y los ID se leen de las claves generadas.
+     * Si falla cualquier Funko, no se guarda ninguno del lote.
      *
-     * @param funko El Funko que se va a actualizar.
-     * @return Un CompletableFuture que representa la operación de actualización.
+     * @param funkos El lote de Funkos que se va a guardar.
+     * @return Un CompletableFuture que representa la operación de guardado (devuelve los Funkos guardados).
      */
     @Override
-        public CompletableFuture<Funko> update(Funko funko) {
+    public CompletableFuture<List<Funko>> saveAll(List<Funko> funkos) {
         return CompletableFuture.supplyAsync(() -> {
-            String query = "UPDATE funkos SET nombre = ?, modelo = ?, precio = ?, updated_at = ? WHERE ID = ?";
+            long inicio = TimingLogger.start();
+            String query = "INSERT INTO funkos (cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
             try (var connection = db.getConnection();
-                 var stmt = connection.prepareStatement(query)
+                 var stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)
             ) {
-                logger.debug("Actualizando el funko: " + funko);
-                funko.setUpdatedAt(LocalDateTime.now());
-                stmt.setString(1, funko.getName());
-                stmt.setString(2, funko.getModel().toString());
-                stmt.setDouble(3, funko.getPrice());
-                stmt.setObject(4, funko.getUpdatedAt());
-                stmt.setLong(5, funko.getId());
-                var res = stmt.executeUpdate();
-                if (res > 0) {
+                logger.debug("Guardando un lote de {} funkos", funkos.size());
+                long myId = idGenerator.reserve(funkos.size());
+                LocalDateTime ahora = LocalDateTime.now();
+                connection.setAutoCommit(false);
+                try {
+                    for (Funko funko : funkos) {
+                        funko.setMyId(myId++);
+                        funko.setUpdatedAt(ahora);
+                        funko.setVersion(0);
+                        stmt.setObject(1, funko.getCOD());
+                        stmt.setLong(2, funko.getMyId());
+                        stmt.setString(3, funko.getName());
+                        stmt.setString(4, funko.getModel().toString());
+                        stmt.setDouble(5, funko.getPrice());
+                        stmt.setObject(6, funko.getReleaseData());
+                        stmt.setObject(7, funko.getCreatedAt());
+                        stmt.setObject(8, funko.getUpdatedAt());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    try (ResultSet rs = stmt.getGeneratedKeys()) {
+                        for (Funko funko : funkos) {
+                            if (rs.next()) {
+                                funko.setId(rs.getLong(1));
+                            }
+                        }
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Error al guardar el lote de funkos", e);
+                throw new CompletionException(e);
+            }
+            TimingLogger.record("saveAll", inicio, funkos.size());
+            return funkos;
+        });
+    }
+
+    /**
+     * Actualiza un Funko en el repositorio con control de concurrencia optimista: solo se actualiza si la versión
+     * de la base de datos sigue siendo la del Funko. Si se actualiza, la versión del Funko aumenta en uno.
+     *
+     * @param funko El Funko que se va a actualizar.
+     * @return Un CompletableFuture que representa la operación de actualización. Termina con FunkoNoEncotradoException
+     * si el Funko no existe o con FunkoConflictoException si otro proceso lo ha actualizado antes.
+     */
+    @Override
+    public CompletableFuture<Funko> update(Funko funko) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            try (var connection = db.getConnection()) {
+                logger.debug("Actualizando el funko: {}", funko);
+                if (actualizarSiVersion(connection, funko)) {
                     logger.debug("Funko actualizado");
+                } else if (existe(connection, funko.getId())) {
+                    logger.warn("Funko no actualizado por un conflicto de version con id: {}", funko.getId());
+                    throw new FunkoConflictoException("Funko con id: " + funko.getId() + " modificado por otro proceso, version esperada: " + funko.getVersion());
                 } else {
-                    logger.error("Funko no actualizado al no encontrarse en la base de datos con id: " + funko.getId());
+                    logger.error("Funko no actualizado al no encontrarse en la base de datos con id: {}", funko.getId());
                     throw new FunkoNoEncotradoException("Funko no encontrado con id: " + funko.getId());
                 }
-            } catch (SQLException | FunkoNoEncotradoException e) {
+            } catch (SQLException | FunkoNoEncotradoException | FunkoConflictoException e) {
                 throw new CompletionException(e);
             }
+            TimingLogger.record("update", inicio, 1);
             return funko;
         });
     }
 
+    /**
+     * Actualiza un Funko solo si su versión en la base de datos es la del Funko (compare-and-set).
+     * Si se actualiza, la versión del Funko aumenta en uno; si no, el Funko no se modifica.
+     *
+     * @param funko El Funko con los datos nuevos y la versión que se leyó.
+     * @return Un CompletableFuture que representa la operación (devuelve false si el Funko no existe o su versión ha cambiado).
+     */
+    @Override
+    public CompletableFuture<Boolean> compareAndSet(Funko funko) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            boolean actualizado;
+            try (var connection = db.getConnection()) {
+                logger.debug("Actualizando el funko si su version es {}: {}", funko.getVersion(), funko);
+                actualizado = actualizarSiVersion(connection, funko);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+            TimingLogger.record("compareAndSet", inicio, actualizado ? 1 : 0);
+            return actualizado;
+        });
+    }
+
+    /**
+     * Actualiza un lote de Funkos con un único batch JDBC dentro de una transacción, condicionando cada fila a su versión.
+     * El número de filas de cada sentencia del batch indica qué Funkos se han actualizado. Los Funkos recibidos no se modifican.
+     *
+     * @param funkos El lote de Funkos con los datos nuevos y la versión que se leyó.
+     * @return Un CompletableFuture que representa la operación (devuelve copias de los Funkos actualizados con su nueva versión).
+     */
+    @Override
+    public CompletableFuture<List<Funko>> updateAll(List<Funko> funkos) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            String query = "UPDATE funkos SET nombre = ?, modelo = ?, precio = ?, updated_at = ?, version = version + 1 WHERE ID = ? AND version = ?";
+            List<Funko> actualizados = new ArrayList<>(funkos.size());
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(query)
+            ) {
+                logger.debug("Actualizando un lote de {} funkos", funkos.size());
+                LocalDateTime ahora = LocalDateTime.now();
+                connection.setAutoCommit(false);
+                try {
+                    for (Funko funko : funkos) {
+                        stmt.setString(1, funko.getName());
+                        stmt.setString(2, funko.getModel().toString());
+                        stmt.setDouble(3, funko.getPrice());
+                        stmt.setObject(4, ahora);
+                        stmt.setLong(5, funko.getId());
+                        stmt.setLong(6, funko.getVersion());
+                        stmt.addBatch();
+                    }
+                    int[] filas = stmt.executeBatch();
+                    connection.commit();
+                    for (int i = 0; i < filas.length; i++) {
+                        if (filas[i] > 0) {
+                            Funko funko = funkos.get(i).copy();
+                            funko.setUpdatedAt(ahora);
+                            funko.setVersion(funko.getVersion() + 1);
+                            actualizados.add(funko);
+                        }
+                    }
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Error al actualizar el lote de funkos", e);
+                throw new CompletionException(e);
+            }
+            TimingLogger.record("updateAll", inicio, actualizados.size());
+            return actualizados;
+        });
+    }
+
+    /**
+     * Ejecuta la actualización condicionada a la versión y, si se aplica, actualiza la fecha y la versión del Funko.
+     */
+    private boolean actualizarSiVersion(Connection connection, Funko funko) throws SQLException {
+        String query = "UPDATE funkos SET nombre = ?, modelo = ?, precio = ?, updated_at = ?, version = version + 1 WHERE ID = ? AND version = ?";
+        try (var stmt = connection.prepareStatement(query)) {
+            LocalDateTime ahora = LocalDateTime.now();
+            stmt.setString(1, funko.getName());
+            stmt.setString(2, funko.getModel().toString());
+            stmt.setDouble(3, funko.getPrice());
+            stmt.setObject(4, ahora);
+            stmt.setLong(5, funko.getId());
+            stmt.setLong(6, funko.getVersion());
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+            funko.setUpdatedAt(ahora);
+            funko.setVersion(funko.getVersion() + 1);
+            return true;
+        }
+    }
+
+    /**
+     * Comprueba si existe un Funko con un ID.
+     */
+    private boolean existe(Connection connection, long id) throws SQLException {
+        try (var stmt = connection.prepareStatement("SELECT 1 FROM funkos WHERE ID = ?")) {
+            stmt.setLong(1, id);
+            try (var rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
     /**
      * Borra un Funko por su ID en el repositorio.
      *
@@ -264,11 +445,9 @@ public class FunkosRepositoryImpl implements FunkosRepository {
             try (var connection = db.getConnection();
                  var stmt = connection.prepareStatement(query)
             ) {
-                logger.debug("Borrando el funko con id: " + aLong);
+                logger.debug("Borrando el funko con id: {}", aLong);
                 stmt.setLong(1, aLong);
-                var res = stmt.executeUpdate();
-                stmt.close();
-                return res > 0;
+                return stmt.executeUpdate() > 0;
             } catch (SQLException e) {
                 throw new CompletionException(e);
             }
@@ -294,4 +473,767 @@ public class FunkosRepositoryImpl implements FunkosRepository {
         });
     }
 
+    /**
+     * Restaura un lote de Funkos en el repositorio conservando su ID, su MyId y sus marcas de tiempo. Los Funkos que no
+     * existen se crean con la versión de la copia; los que existen se sobrescriben con su versión actual más uno, para que
+     * una copia antigua no devuelva la versión a un valor ya usado y un compare-and-set con ese valor no se aplique por error.
+     * El lote se envía en un único batch JDBC dentro de una transacción y, al terminar, se ajusta el autoincremental
+     * del ID y el IdGenerator para que los siguientes guardados no colisionen con los ID y MyId restaurados.
+     *
+     * @param funkos El lote de Funkos que se va a restaurar.
+     * @return Un CompletableFuture que representa la operación de restauración (devuelve el número de Funkos restaurados).
+     */
+    @Override
+    public CompletableFuture<Integer> restoreAll(List<Funko> funkos) {
+        return CompletableFuture.supplyAsync(() -> {
+            // Las filas que ya existen pasan a su version siguiente, no a la de la copia, para que la version nunca retroceda
+            String query = "MERGE INTO funkos f USING (VALUES (CAST(? AS BIGINT), CAST(? AS UUID), CAST(? AS BIGINT), CAST(? AS VARCHAR(255)), " +
+                    "CAST(? AS VARCHAR(50)), CAST(? AS DOUBLE), CAST(? AS DATE), CAST(? AS TIMESTAMP), CAST(? AS TIMESTAMP), CAST(? AS BIGINT))) " +
+                    "AS r (ID, cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at, version) ON f.ID = r.ID " +
+                    "WHEN MATCHED THEN UPDATE SET cod = r.cod, MyId = r.MyId, nombre = r.nombre, modelo = r.modelo, precio = r.precio, " +
+                    "fecha_lanzamiento = r.fecha_lanzamiento, created_at = r.created_at, updated_at = r.updated_at, version = f.version + 1 " +
+                    "WHEN NOT MATCHED THEN INSERT (ID, cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at, version) " +
+                    "VALUES (r.ID, r.cod, r.MyId, r.nombre, r.modelo, r.precio, r.fecha_lanzamiento, r.created_at, r.updated_at, r.version)";
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(query)
+            ) {
+                logger.debug("Restaurando un lote de {} funkos", funkos.size());
+                connection.setAutoCommit(false);
+                try {
+                    for (Funko funko : funkos) {
+                        stmt.setLong(1, funko.getId());
+                        stmt.setObject(2, funko.getCOD());
+                        stmt.setLong(3, funko.getMyId());
+                        stmt.setString(4, funko.getName());
+                        stmt.setString(5, funko.getModel().toString());
+                        stmt.setDouble(6, funko.getPrice());
+                        stmt.setObject(7, funko.getReleaseData());
+                        stmt.setObject(8, funko.getCreatedAt());
+                        stmt.setObject(9, funko.getUpdatedAt());
+                        stmt.setLong(10, funko.getVersion());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                ajustarAutoincremental(connection);
+                idGenerator.advanceTo(funkos.stream().mapToLong(Funko::getMyId).max().orElse(0));
+            } catch (SQLException e) {
+                logger.error("Error al restaurar los funkos", e);
+                throw new CompletionException(e);
+            }
+            return funkos.size();
+        });
+    }
+
+    /**
+     * Carga masivamente un archivo CSV de Funkos con la función CSVREAD de H2, de forma que las filas nunca pasan por la JVM como objetos Funko.
+     * Primero se vuelca el CSV a una tabla temporal de la sesión y se valida cada fila con una única sentencia UPDATE que
+     * anota el motivo de rechazo. Las filas rechazadas se escriben en el archivo de rechazos, se reserva en el IdGenerator
+     * un rango de MyId del tamaño de las filas válidas y por último se insertan todas con una única sentencia INSERT ... SELECT
+     * en una transacción. Los códigos deben ser UUID completos: a diferencia de Funko.getUUID, no se recortan.
+     *
+     * @param file       La ruta del archivo CSV sin comprimir.
+     * @param rejectFile El archivo CSV donde se escriben las filas rechazadas; solo se crea si se rechaza alguna.
+     * @return Un CompletableFuture que representa la operación de carga (devuelve el informe de filas leídas, cargadas y rechazadas).
+     */
+    @Override
+    public CompletableFuture<ImportReport> bulkLoadCsv(Path file, Path rejectFile) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = System.nanoTime();
+            // CSVREAD necesita el nombre del archivo como literal al preparar la sentencia, por eso no puede ser un parametro
+            String csv = "'" + file.toAbsolutePath().toString().replace("'", "''") + "'";
+            String queryStaging = "INSERT INTO funkos_staging (cod, nombre, modelo, precio, fecha_lanzamiento) " +
+                    "SELECT TRIM(COD), TRIM(NOMBRE), TRIM(MODELO), TRIM(PRECIO), TRIM(FECHA_LANZAMIENTO) FROM CSVREAD(" + csv + ", NULL, 'charset=UTF-8')";
+            String modelos = Arrays.stream(Model.values()).map(m -> "'" + m.name() + "'").collect(Collectors.joining(", "));
+            // Una fecha con el formato correcto es valida si al construirla con DATEADD a partir de sus partes se obtiene la misma cadena
+            String queryValidar = "UPDATE funkos_staging SET motivo = CASE " +
+                    "WHEN cod IS NULL OR NOT REGEXP_LIKE(cod, '^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$') " +
+                    "THEN 'Codigo invalido: ' || COALESCE(cod, '') " +
+                    "WHEN nombre IS NULL OR nombre = '' OR CHAR_LENGTH(nombre) > 255 THEN 'Nombre invalido: ' || COALESCE(nombre, '') " +
+                    "WHEN modelo IS NULL OR modelo NOT IN (" + modelos + ") THEN 'Modelo invalido: ' || COALESCE(modelo, '') " +
+                    "WHEN precio IS NULL OR NOT REGEXP_LIKE(precio, '^[0-9]+(\\.[0-9]+)?$') THEN 'Precio invalido: ' || COALESCE(precio, '') " +
+                    "WHEN fecha_lanzamiento IS NULL OR NOT REGEXP_LIKE(fecha_lanzamiento, '^[0-9]{4}-[0-9]{2}-[0-9]{2}$') " +
+                    "OR CAST(DATEADD(DAY, CAST(SUBSTRING(fecha_lanzamiento, 9, 2) AS INT) - 1, DATEADD(MONTH, CAST(SUBSTRING(fecha_lanzamiento, 6, 2) AS INT) - 1, " +
+                    "CAST(SUBSTRING(fecha_lanzamiento, 1, 4) || '-01-01' AS DATE))) AS VARCHAR) <> fecha_lanzamiento " +
+                    "THEN 'Fecha de lanzamiento invalida: ' || COALESCE(fecha_lanzamiento, '') " +
+                    "END";
+            String queryRechazos = "SELECT rn, motivo, cod, nombre, modelo, precio, fecha_lanzamiento FROM funkos_staging WHERE motivo IS NOT NULL ORDER BY rn";
+            String queryInsert = "INSERT INTO funkos (cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at) " +
+                    "SELECT CAST(cod AS UUID), ? + ROW_NUMBER() OVER (ORDER BY rn) - 1, nombre, modelo, CAST(precio AS DOUBLE), CAST(fecha_lanzamiento AS DATE), LOCALTIMESTAMP, LOCALTIMESTAMP " +
+                    "FROM funkos_staging WHERE motivo IS NULL ORDER BY rn";
+            try (var connection = db.getConnection();
+                 var stmt = connection.createStatement()
+            ) {
+                logger.debug("Cargando masivamente el archivo CSV: {}", file);
+                stmt.execute("DROP TABLE IF EXISTS funkos_staging");
+                stmt.execute("CREATE LOCAL TEMPORARY TABLE funkos_staging (rn BIGINT AUTO_INCREMENT PRIMARY KEY, cod VARCHAR, nombre VARCHAR, modelo VARCHAR, precio VARCHAR, fecha_lanzamiento VARCHAR, motivo VARCHAR)");
+                int leidos;
+                int rechazados;
+                int cargados;
+                long validado;
+                connection.setAutoCommit(false);
+                try (var stmtInsert = connection.prepareStatement(queryInsert)) {
+                    leidos = stmt.executeUpdate(queryStaging);
+                    stmt.executeUpdate(queryValidar);
+                    rechazados = escribirRechazos(stmt, queryRechazos, rejectFile);
+                    validado = System.nanoTime();
+                    stmtInsert.setLong(1, idGenerator.reserve(leidos - rechazados));
+                    cargados = stmtInsert.executeUpdate();
+                    connection.commit();
+                } catch (SQLException | IOException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                    stmt.execute("DROP TABLE IF EXISTS funkos_staging");
+                }
+                long fin = System.nanoTime();
+                if (rechazados > 0) {
+                    logger.warn("Rechazadas {} filas del archivo CSV {}, ver: {}", rechazados, file, rejectFile);
+                }
+                logger.debug("Cargados {} funkos desde el archivo CSV", cargados);
+                return ImportReport.builder()
+                        .file(file.toString())
+                        .rejectFile(rejectFile.toString())
+                        .read(leidos)
+                        .saved(cargados)
+                        .rejected(rechazados)
+                        .totalNanos(fin - inicio)
+                        .stages(List.of(
+                                ImportStageReport.builder().stage("validate").in(leidos).out(leidos - rechazados).rejected(rechazados).nanos(validado - inicio).build(),
+                                ImportStageReport.builder().stage("persist").in(leidos - rechazados).out(cargados).nanos(fin - validado).build()))
+                        .build();
+            } catch (SQLException | IOException e) {
+                logger.error("Error al cargar masivamente el archivo CSV", e);
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Escribe en el archivo de rechazos las filas de la tabla temporal que no han pasado la validación, con la misma
+     * cabecera que FunkoImportPipeline. El archivo solo se crea si hay alguna fila rechazada.
+     *
+     * @return El número de filas rechazadas.
+     */
+    private int escribirRechazos(Statement stmt, String queryRechazos, Path rejectFile) throws SQLException, IOException {
+        int rechazados = 0;
+        Writer writer = null;
+        try (var rs = stmt.executeQuery(queryRechazos)) {
+            while (rs.next()) {
+                if (writer == null) {
+                    writer = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8);
+                    writer.write("LINEA,ETAPA,MOTIVO,CONTENIDO\n");
+                }
+                StringJoiner contenido = new StringJoiner(",");
+                for (int i = 3; i <= 7; i++) {
+                    contenido.add(CsvUtils.escape(rs.getString(i)));
+                }
+                // La primera linea del archivo es la cabecera
+                writer.write((rs.getLong(1) + 1) + ",validate," + CsvUtils.escape(rs.getString(2)) + "," + CsvUtils.escape(contenido.toString()) + "\n");
+                rechazados++;
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        return rechazados;
+    }
+
+    /**
+     * Busca los Funkos que existen y tienen algún cambio registrado entre dos secuencias de funkos_cambios, ordenados por ID.
+     * Se devuelve su estado actual, que puede incluir cambios posteriores a la secuencia final.
+     *
+     * @param fromSeq La secuencia del último cambio ya exportado, excluida.
+     * @param toSeq   La secuencia del último cambio a exportar, incluida.
+     * @return Un CompletableFuture que representa la operación de búsqueda de los Funkos modificados.
+     */
+    @Override
+    public CompletableFuture<List<Funko>> findChangedBetween(long fromSeq, long toSeq) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            List<Funko> lista = new ArrayList<>();
+            String query = "SELECT * FROM funkos WHERE ID IN (SELECT funko_id FROM funkos_cambios WHERE seq > ? AND seq <= ?) ORDER BY ID";
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(query)
+            ) {
+                logger.debug("Obteniendo los funkos modificados entre las secuencias {} y {}", fromSeq, toSeq);
+                stmt.setLong(1, fromSeq);
+                stmt.setLong(2, toSeq);
+                try (var rs = stmt.executeQuery()) {
+                    var mapper = new FunkoRowMapper();
+                    while (rs.next()) {
+                        lista.add(mapper.mapRow(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                logger.error("Error al buscar los funkos modificados", e);
+                throw new CompletionException(e);
+            }
+            TimingLogger.record("findChangedBetween", inicio, lista.size());
+            return lista;
+        });
+    }
+
+    /**
+     * Busca los IDs de los Funkos borrados entre dos secuencias de funkos_cambios que no se han vuelto a crear, ordenados.
+     *
+     * @param fromSeq La secuencia del último cambio ya exportado, excluida.
+     * @param toSeq   La secuencia del último cambio a exportar, incluida.
+     * @return Un CompletableFuture con los IDs de los Funkos borrados.
+     */
+    @Override
+    public CompletableFuture<List<Long>> findDeletedBetween(long fromSeq, long toSeq) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Long> borrados = new ArrayList<>();
+            String query = "SELECT DISTINCT c.funko_id FROM funkos_cambios c WHERE c.seq > ? AND c.seq <= ? AND c.operacion = 'DELETE' " +
+                    "AND NOT EXISTS (SELECT 1 FROM funkos f WHERE f.ID = c.funko_id) ORDER BY c.funko_id";
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(query)
+            ) {
+                logger.debug("Obteniendo los funkos borrados entre las secuencias {} y {}", fromSeq, toSeq);
+                stmt.setLong(1, fromSeq);
+                stmt.setLong(2, toSeq);
+                try (var rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        borrados.add(rs.getLong(1));
+                    }
+                }
+            } catch (SQLException e) {
+                logger.error("Error al buscar los funkos borrados", e);
+                throw new CompletionException(e);
+            }
+            return borrados;
+        });
+    }
+
+    /**
+     * Busca los cambios registrados por el trigger trg_funkos_cambios después de una secuencia, usando la clave primaria.
+     *
+     * @param seq   La secuencia del último cambio ya leído.
+     * @param limit El número máximo de cambios a devolver.
+     * @return Un CompletableFuture con los cambios en orden de secuencia.
+     */
+    @Override
+    public CompletableFuture<List<FunkoChange>> findChangesSince(long seq, int limit) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            List<FunkoChange> cambios = new ArrayList<>();
+            String query = "SELECT seq, funko_id, operacion, version, changed_at FROM funkos_cambios WHERE seq > ? ORDER BY seq LIMIT ?";
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(query)
+            ) {
+                logger.debug("Obteniendo los cambios desde la secuencia: {}", seq);
+                stmt.setLong(1, seq);
+                stmt.setInt(2, limit);
+                try (var rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        cambios.add(new FunkoChange(rs.getLong(1), rs.getLong(2), FunkoChange.Operation.valueOf(rs.getString(3)),
+                                rs.getObject(4, Long.class), rs.getObject(5, LocalDateTime.class)));
+                    }
+                }
+            } catch (SQLException e) {
+                logger.error("Error al buscar los cambios de los funkos", e);
+                throw new CompletionException(e);
+            }
+            TimingLogger.record("findChangesSince", inicio, cambios.size());
+            return cambios;
+        });
+    }
+
+    /**
+     * Obtiene la secuencia del último cambio registrado por el trigger.
+     *
+     * @return Un CompletableFuture con la secuencia, o 0 si no hay cambios registrados.
+     */
+    @Override
+    public CompletableFuture<Long> lastChangeSeq() {
+        return CompletableFuture.supplyAsync(() -> {
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement("SELECT COALESCE(MAX(seq), 0) FROM funkos_cambios");
+                 var rs = stmt.executeQuery()
+            ) {
+                rs.next();
+                return rs.getLong(1);
+            } catch (SQLException e) {
+                logger.error("Error al obtener la secuencia del ultimo cambio", e);
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Borra los cambios registrados hasta una secuencia.
+     *
+     * @param seq La secuencia del último cambio a borrar, incluida.
+     * @return Un CompletableFuture con el número de cambios borrados.
+     */
+    @Override
+    public CompletableFuture<Integer> purgeChanges(long seq) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement("DELETE FROM funkos_cambios WHERE seq <= ?")
+            ) {
+                logger.debug("Borrando los cambios hasta la secuencia: {}", seq);
+                stmt.setLong(1, seq);
+                return stmt.executeUpdate();
+            } catch (SQLException e) {
+                logger.error("Error al borrar los cambios de los funkos", e);
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Recorre con una conexión y un cursor propios todos los Funkos de un modelo, entregándolos uno a uno.
+     * Al usar su propia conexión, se pueden recorrer varios modelos a la vez desde hilos distintos.
+     *
+     * @param model  El modelo de los Funkos a recorrer.
+     * @param action La acción que se ejecuta con cada Funko leído.
+     * @return Un CompletableFuture que representa la operación de recorrido (devuelve el número de Funkos leídos).
+     */
+    @Override
+    public CompletableFuture<Long> forEachByModel(Model model, Consumer<Funko> action) {
+        return CompletableFuture.supplyAsync(() -> {
+            long leidos = 0;
+            String query = "SELECT * FROM funkos WHERE modelo = ? ORDER BY ID";
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(query)
+            ) {
+                logger.debug("Recorriendo los funkos del modelo: {}", model);
+                stmt.setFetchSize(FETCH_SIZE);
+                stmt.setString(1, model.toString());
+                var rs = stmt.executeQuery();
+                var mapper = new FunkoRowMapper();
+                while (rs.next()) {
+                    action.accept(mapper.mapRow(rs));
+                    leidos++;
+                }
+            } catch (SQLException e) {
+                logger.error("Error al recorrer los funkos del modelo {}", model, e);
+                throw new CompletionException(e);
+            }
+            return leidos;
+        });
+    }
+
+    /**
+     * Obtiene todos los Funkos del repositorio en su representación compacta, leyendo cada fila directamente
+     * a primitivos sin construir objetos Funko intermedios. Pensado para análisis sobre muchos Funkos en memoria.
+     *
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de FunkoCompact).
+     */
+    @Override
+    public CompletableFuture<List<FunkoCompact>> findAllCompact() {
+        List<FunkoCompact> lista = new ArrayList<>();
+        return forEachCompact(lista::add).thenApply(leidos -> lista);
+    }
+
+    /**
+     * Recorre con un cursor todos los Funkos del repositorio en su representación compacta, entregándolos uno a uno
+     * sin cargarlos todos en memoria ni construir objetos Funko intermedios.
+     *
+     * @param action La acción que se ejecuta con cada Funko leído.
+     * @return Un CompletableFuture que representa la operación de recorrido (devuelve el número de Funkos leídos).
+     */
+    @Override
+    public CompletableFuture<Long> forEachCompact(Consumer<FunkoCompact> action) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            long leidos = 0;
+            String query = "SELECT ID, cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at, version FROM funkos";
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(query)
+            ) {
+                logger.debug("Recorriendo todos los funkos en formato compacto");
+                stmt.setFetchSize(FETCH_SIZE);
+                try (var rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        UUID cod = rs.getObject(2, UUID.class);
+                        LocalDate lanzamiento = rs.getObject(7, LocalDate.class);
+                        Model model = FunkoRowMapper.toModel(rs.getString(5));
+                        action.accept(new FunkoCompact(
+                                rs.getLong(1),
+                                cod.getMostSignificantBits(),
+                                cod.getLeastSignificantBits(),
+                                rs.getLong(3),
+                                rs.getString(4),
+                                model == null ? -1 : (byte) model.ordinal(),
+                                rs.getDouble(6),
+                                (int) lanzamiento.toEpochDay(),
+                                FunkoCompact.toNanos(rs.getObject(8, LocalDateTime.class)),
+                                FunkoCompact.toNanos(rs.getObject(9, LocalDateTime.class)),
+                                rs.getLong(10)));
+                        leidos++;
+                    }
+                }
+            } catch (SQLException e) {
+                logger.error("Error al recorrer todos los funkos en formato compacto", e);
+                throw new CompletionException(e);
+            }
+            TimingLogger.record("forEachCompact", inicio, leidos);
+            return leidos;
+        });
+    }
+
+    /**
+     * Busca los Funkos con un precio dentro de un rango, ordenados de menor a mayor precio.
+     * La consulta recorre solo el tramo del índice idx_funkos_precio que corresponde al rango.
+     *
+     * @param min El precio mínimo, incluido.
+     * @param max El precio máximo, incluido.
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de Funkos del rango).
+     */
+    @Override
+    public CompletableFuture<List<Funko>> findByPriceRange(double min, double max) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            List<Funko> lista = new ArrayList<>();
+            String query = "SELECT * FROM funkos WHERE precio BETWEEN ? AND ? ORDER BY precio, ID";
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(query)
+            ) {
+                logger.debug("Obteniendo los funkos con precio entre {} y {}", min, max);
+                stmt.setDouble(1, min);
+                stmt.setDouble(2, max);
+                var rs = stmt.executeQuery();
+                var mapper = new FunkoRowMapper();
+                while (rs.next()) {
+                    lista.add(mapper.mapRow(rs));
+                }
+            } catch (SQLException e) {
+                logger.error("Error al buscar funkos por rango de precio", e);
+                throw new CompletionException(e);
+            }
+            TimingLogger.record("findByPriceRange", inicio, lista.size());
+            return lista;
+        });
+    }
+
+    /**
+     * Busca los Funkos más caros, ordenados de mayor a menor precio y, a igual precio, por ID.
+     * H2 no recorre los índices hacia atrás, así que la consulta lee en orden el índice descendente idx_funkos_precio_desc
+     * (precio DESC, ID) y se detiene tras n filas.
+     *
+     * @param n El número máximo de Funkos a devolver.
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de los n Funkos más caros).
+     */
+    @Override
+    public CompletableFuture<List<Funko>> findTopByPrice(int n) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            List<Funko> lista = new ArrayList<>();
+            String query = "SELECT * FROM funkos ORDER BY precio DESC, ID LIMIT ?";
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(query)
+            ) {
+                logger.debug("Obteniendo los {} funkos mas caros", n);
+                stmt.setInt(1, Math.max(n, 0));
+                var rs = stmt.executeQuery();
+                var mapper = new FunkoRowMapper();
+                while (rs.next()) {
+                    lista.add(mapper.mapRow(rs));
+                }
+            } catch (SQLException e) {
+                logger.error("Error al buscar los funkos mas caros", e);
+                throw new CompletionException(e);
+            }
+            TimingLogger.record("findTopByPrice", inicio, lista.size());
+            return lista;
+        });
+    }
+
+    /**
+     * Busca los Funkos lanzados entre dos fechas, ordenados por fecha de lanzamiento y por ID.
+     * La consulta recorre solo el tramo del índice idx_funkos_fecha_lanzamiento que corresponde a las fechas.
+     *
+     * @param desde La primera fecha, incluida.
+     * @param hasta La última fecha, incluida.
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de Funkos lanzados entre las fechas).
+     */
+    @Override
+    public CompletableFuture<List<Funko>> findByReleaseDateBetween(LocalDate desde, LocalDate hasta) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            List<Funko> lista = new ArrayList<>();
+            String query = "SELECT * FROM funkos WHERE fecha_lanzamiento BETWEEN ? AND ? ORDER BY fecha_lanzamiento, ID";
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(query)
+            ) {
+                logger.debug("Obteniendo los funkos lanzados entre {} y {}", desde, hasta);
+                stmt.setObject(1, desde);
+                stmt.setObject(2, hasta);
+                var rs = stmt.executeQuery();
+                var mapper = new FunkoRowMapper();
+                while (rs.next()) {
+                    lista.add(mapper.mapRow(rs));
+                }
+            } catch (SQLException e) {
+                logger.error("Error al buscar funkos por fecha de lanzamiento", e);
+                throw new CompletionException(e);
+            }
+            TimingLogger.record("findByReleaseDateBetween", inicio, lista.size());
+            return lista;
+        });
+    }
+
+    /**
+     * Cuenta los Funkos lanzados cada año. El agrupamiento se hace en la base de datos, que solo devuelve una fila por año.
+     *
+     * @return Un CompletableFuture que representa la operación de recuento (devuelve un mapa ordenado del año al número de Funkos).
+     */
+    @Override
+    public CompletableFuture<SortedMap<Integer, Long>> countByReleaseYear() {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            SortedMap<Integer, Long> porAno = new TreeMap<>();
+            String query = "SELECT EXTRACT(YEAR FROM fecha_lanzamiento) AS ano, COUNT(*) FROM funkos GROUP BY ano ORDER BY ano";
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(query)
+            ) {
+                logger.debug("Contando los funkos lanzados cada año");
+                var rs = stmt.executeQuery();
+                while (rs.next()) {
+                    porAno.put(rs.getInt(1), rs.getLong(2));
+                }
+            } catch (SQLException e) {
+                logger.error("Error al contar los funkos por año de lanzamiento", e);
+                throw new CompletionException(e);
+            }
+            TimingLogger.record("countByReleaseYear", inicio, porAno.size());
+            return porAno;
+        });
+    }
+
+    /**
+     * Busca los Funkos que cumplen todos los criterios de una consulta con una única sentencia parametrizada.
+     * El texto SQL depende solo de la forma de la consulta, por lo que se compila una vez por forma y se reutiliza.
+     *
+     * @param query Los criterios de la consulta.
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de Funkos que cumplen los criterios).
+     */
+    @Override
+    public CompletableFuture<List<Funko>> find(FunkoQuery query) {
+        return consultar(query, "*", new FunkoRowMapper(), "find");
+    }
+
+    /**
+     * Busca los Funkos que cumplen todos los criterios de una consulta, seleccionando solo las columnas de una proyección
+     * y construyendo con cada fila el objeto de la proyección en lugar de un Funko completo.
+     *
+     * @param query      Los criterios de la consulta.
+     * @param projection Las columnas a seleccionar y cómo se convierte cada fila.
+     * @param <T>        El tipo de objeto de la proyección.
+     * @return Un CompletableFuture que representa la operación de búsqueda (devuelve la lista de objetos de la proyección).
+     */
+    @Override
+    public <T> CompletableFuture<List<T>> find(FunkoQuery query, FunkoProjection<T> projection) {
+        return consultar(query, projection.getSelectList(), projection.getMapper(), "findProjection");
+    }
+
+    /**
+     * Ejecuta un conjunto de operaciones como una unidad de trabajo con una sola conexión y un único commit.
+     * Si el trabajo lanza una excepción o un Error se hace rollback y el CompletableFuture termina con él.
+     * Las acciones registradas con afterCommit se ejecutan solo tras un commit correcto, cada una por separado: si una
+     * falla se registra el error y se ejecutan las demás, porque el commit ya no se puede deshacer.
+     *
+     * @param work El trabajo a ejecutar con la transacción.
+     * @param <R>  El tipo del resultado del trabajo.
+     * @return Un CompletableFuture que representa la transacción (devuelve el resultado del trabajo tras el commit).
+     */
+    @Override
+    public <R> CompletableFuture<R> inTransaction(FunkoTransaction.Work<R> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            FunkoTransactionImpl tx;
+            R resultado;
+            try (var connection = db.getConnection()) {
+                logger.debug("Iniciando una unidad de trabajo");
+                connection.setAutoCommit(false);
+                tx = new FunkoTransactionImpl(connection, idGenerator);
+                try (tx) {
+                    resultado = work.run(tx);
+                    connection.commit();
+                } catch (Throwable e) {
+                    // Tambien con un Error: si no se deshace aqui, setAutoCommit(true) confirmaria los cambios a medias
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException | FunkoException e) {
+                logger.error("Error en la unidad de trabajo, se deshacen sus cambios", e);
+                throw new CompletionException(e);
+            }
+            for (Runnable accion : tx.getAfterCommit()) {
+                try {
+                    accion.run();
+                } catch (RuntimeException e) {
+                    logger.error("Error en una accion posterior al commit, la unidad de trabajo ya esta confirmada", e);
+                }
+            }
+            TimingLogger.record("inTransaction", inicio, tx.getUpserted().size() + tx.getDeleted().size());
+            return resultado;
+        });
+    }
+
+    /**
+     * Ejecuta una consulta con criterios seleccionando unas columnas. El texto SQL depende solo de las columnas y de la forma
+     * de la consulta, por lo que se compila una vez para cada combinación y se reutiliza.
+     *
+     * @param query     Los criterios de la consulta.
+     * @param columnas  La lista de columnas de la cláusula SELECT.
+     * @param lector    La función que convierte cada fila.
+     * @param operacion El nombre de la operación para el registro de tiempos.
+     * @return Un CompletableFuture con la lista de objetos leídos.
+     */
+    private <T> CompletableFuture<List<T>> consultar(FunkoQuery query, String columnas, RowMapper<T> lector, String operacion) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = TimingLogger.start();
+            List<T> lista = new ArrayList<>();
+            String sql = sqlPorForma.computeIfAbsent(columnas + "#" + query.shape(), forma -> compilar(query, columnas));
+            try (var connection = db.getConnection();
+                 var stmt = connection.prepareStatement(sql)
+            ) {
+                logger.debug("Obteniendo las columnas {} de los funkos de la consulta: {}", columnas, query);
+                enlazar(stmt, query);
+                try (var rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        lista.add(lector.mapRow(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                logger.error("Error al buscar funkos por criterios", e);
+                throw new CompletionException(e);
+            }
+            TimingLogger.record(operacion, inicio, lista.size());
+            return lista;
+        });
+    }
+
+    /**
+     * Traduce la forma de una consulta a SQL. Los parámetros se enlazan después en el mismo orden con enlazar.
+     *
+     * @param query    La consulta.
+     * @param columnas La lista de columnas de la cláusula SELECT.
+     * @return El texto de la sentencia SQL.
+     */
+    private static String compilar(FunkoQuery query, String columnas) {
+        List<String> condiciones = new ArrayList<>();
+        if (query.getModel() != null) {
+            condiciones.add("modelo = ?");
+        }
+        if (query.getMinPrice() != null) {
+            condiciones.add("precio >= ?");
+        }
+        if (query.getMaxPrice() != null) {
+            condiciones.add("precio <= ?");
+        }
+        if (query.getReleasedFrom() != null) {
+            condiciones.add("fecha_lanzamiento >= ?");
+        }
+        if (query.getReleasedTo() != null) {
+            condiciones.add("fecha_lanzamiento <= ?");
+        }
+        if (query.getNameContains() != null) {
+            condiciones.add("nombre LIKE ? ESCAPE '\\'");
+        }
+        if (query.getNamePrefix() != null) {
+            condiciones.add("nombre LIKE ? ESCAPE '\\'");
+        }
+        String columna = query.getSort().getColumn();
+        if (query.getCursor() != null) {
+            condiciones.add(columna == null ? "ID > ?"
+                    : "(" + columna + (query.getSort().isDescending() ? " < ?" : " > ?") + " OR (" + columna + " = ? AND ID > ?))");
+        }
+        StringBuilder sql = new StringBuilder("SELECT ").append(columnas).append(" FROM funkos");
+        if (!condiciones.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", condiciones));
+        }
+        sql.append(" ORDER BY ");
+        if (columna != null) {
+            sql.append(columna).append(query.getSort().isDescending() ? " DESC, " : ", ");
+        }
+        sql.append("ID");
+        if (query.getLimit() != null) {
+            sql.append(" LIMIT ?");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Enlaza los valores de una consulta a la sentencia compilada para su forma, en el mismo orden que compilar.
+     *
+     * @param stmt  La sentencia preparada.
+     * @param query La consulta.
+     * @throws SQLException Si ocurre un error al enlazar un parámetro.
+     */
+    private static void enlazar(PreparedStatement stmt, FunkoQuery query) throws SQLException {
+        int i = 1;
+        if (query.getModel() != null) {
+            stmt.setString(i++, query.getModel().toString());
+        }
+        if (query.getMinPrice() != null) {
+            stmt.setDouble(i++, query.getMinPrice());
+        }
+        if (query.getMaxPrice() != null) {
+            stmt.setDouble(i++, query.getMaxPrice());
+        }
+        if (query.getReleasedFrom() != null) {
+            stmt.setObject(i++, query.getReleasedFrom());
+        }
+        if (query.getReleasedTo() != null) {
+            stmt.setObject(i++, query.getReleasedTo());
+        }
+        if (query.getNameContains() != null) {
+            stmt.setString(i++, "%" + escaparLike(query.getNameContains()) + "%");
+        }
+        if (query.getNamePrefix() != null) {
+            stmt.setString(i++, escaparLike(query.getNamePrefix()) + "%");
+        }
+        if (query.getCursor() != null) {
+            if (query.getSort().getColumn() != null) {
+                stmt.setObject(i++, query.getCursor().key());
+                stmt.setObject(i++, query.getCursor().key());
+            }
+            stmt.setLong(i++, query.getCursor().id());
+        }
+        if (query.getLimit() != null) {
+            stmt.setInt(i, Math.max(query.getLimit(), 0));
+        }
+    }
+
+    /**
+     * Escapa los comodines de LIKE para que un texto se busque literalmente.
+     */
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Ajusta el siguiente valor del ID autoincremental al mayor ID existente más uno, si el autoincremental se ha quedado por detras.
+     * H2 no avanza la identidad cuando se insertan IDs explicitos, como ocurre al restaurar una copia de seguridad.
+     *
+     * @param connection La conexión a la base de datos.
+     * @throws SQLException Si ocurre un error al consultar o modificar la tabla.
+     */
+    private void ajustarAutoincremental(Connection connection) throws SQLException {
+        String query = "SELECT (SELECT COALESCE(MAX(ID), 0) FROM funkos), IDENTITY_BASE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'FUNKOS' AND COLUMN_NAME = 'ID'";
+        try (var stmt = connection.createStatement();
+             var rs = stmt.executeQuery(query)
+        ) {
+            if (rs.next() && rs.getLong(1) >= rs.getLong(2)) {
+                long siguiente = rs.getLong(1) + 1;
+                logger.debug("Reiniciando el ID autoincremental en: {}", siguiente);
+                stmt.executeUpdate("ALTER TABLE funkos ALTER COLUMN ID RESTART WITH " + siguiente);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package develop.repositories.funkos;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * La interfaz RowMapper convierte la fila actual de un ResultSet en un objeto.
+ *
+ * @param <T> El tipo de objeto que se construye con cada fila.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Convierte la fila actual de un ResultSet. No mueve el cursor.
+     *
+     * @param rs El ResultSet posicionado en la fila a leer.
+     * @return El objeto construido con los datos de la fila.
+     * @throws SQLException Si ocurre un error al leer las columnas.
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+}
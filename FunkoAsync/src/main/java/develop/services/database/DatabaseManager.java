@@ -69,7 +69,7 @@ public class DatabaseManager {
             databaseInitTables = Boolean.parseBoolean(props.getProperty("database.initTables", "false"));
             databaseInitScript = props.getProperty("database.initScript", "init.sql");
         } catch (IOException e) {
-            logger.error("Error al leer el fichero de configuración de la base de datos " + e.getMessage());
+            logger.error("Error al leer el fichero de configuración de la base de datos {}", e.getMessage());
         }
     }
 
@@ -82,7 +82,7 @@ public class DatabaseManager {
         try {
             executeScript(conn, databaseInitScript, true);
         } catch (FileNotFoundException e) {
-            logger.error("Error al leer el fichero de inicialización de la base de datos " + e.getMessage());
+            logger.error("Error al leer el fichero de inicialización de la base de datos {}", e.getMessage());
         }
     }
 
@@ -97,7 +97,7 @@ public class DatabaseManager {
     public synchronized void executeScript(Connection conn, String scriptSqlFile, boolean logWriter) throws FileNotFoundException {
         ScriptRunner sr = new ScriptRunner(conn);
         var file = ClassLoader.getSystemResource(scriptSqlFile).getFile();
-        logger.debug("Ejecutando script de SQL " + file);
+        logger.debug("Ejecutando script de SQL {}", file);
         Reader reader = new BufferedReader(new FileReader(file));
         sr.setLogWriter(logWriter ? new PrintWriter(System.out) : null);
         sr.runScript(reader);
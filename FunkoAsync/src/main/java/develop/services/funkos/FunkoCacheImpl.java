@@ -1,9 +1,11 @@
 package develop.services.funkos;
 
 import develop.models.Funko;
+import develop.models.FunkoCompact;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -16,11 +18,20 @@ import java.util.concurrent.TimeUnit;
 /**
  * La clase FunkoCacheImpl implementa la interfaz FunkoCache y proporciona una implementación de una caché para objetos Funko con un tamaño máximo.
  * Utiliza el patrón Singleton para proporcionar una única instancia de la caché.
+ * Los Funkos se guardan como FunkoCompact, por lo que ocupan menos memoria y modificar un Funko después de
+ * añadirlo u obtenerlo no cambia la copia de la caché.
+ * Al añadir se compara la versión: un Funko con una versión anterior a la guardada se descarta, para que una escritura
+ * que llega tarde no sustituya a una más reciente. El acceso al mapa se sincroniza, porque un LinkedHashMap
+ * ordenado por acceso se modifica también al leer.
+ * Un Funko caduca cuando pasa el tiempo de vida desde su última actualización; si no tiene fecha de actualización
+ * se cuenta desde que se añadió a la caché.
  */
 public class FunkoCacheImpl implements  FunkoCache {
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(2);
     private final Logger logger = LoggerFactory.getLogger(FunkoCacheImpl.class);
     private final int maxSize;
-    private final Map<Long, Funko> cache;
+    private final Duration ttl;
+    private final Map<Long, Entrada> cache;
     private final ScheduledExecutorService cleaner;
     private static FunkoCacheImpl instance;
 
@@ -31,8 +42,21 @@ public class FunkoCacheImpl implements  FunkoCache {
      * @return La instancia única de FunkoCacheImpl.
      */
     public static synchronized FunkoCacheImpl getInstance(int maxSize) {
+        return getInstance(maxSize, DEFAULT_TTL);
+    }
+
+    /**
+     * Obtiene la instancia única de FunkoCacheImpl con un tamaño máximo y un tiempo de vida de las entradas especificados.
+     * Un tiempo de vida largo solo es seguro si los cambios hechos fuera del servicio invalidan la caché, por ejemplo
+     * suscribiéndola a un FunkoChangeFeed.
+     *
+     * @param maxSize El tamaño máximo de la caché.
+     * @param ttl     El tiempo tras su última actualización en el que un Funko caduca y se elimina de la caché.
+     * @return La instancia única de FunkoCacheImpl.
+     */
+    public static synchronized FunkoCacheImpl getInstance(int maxSize, Duration ttl) {
         if(instance == null){
-            instance = new FunkoCacheImpl(maxSize);
+            instance = new FunkoCacheImpl(maxSize, ttl);
         }
         return instance;
     }
@@ -43,23 +67,26 @@ public class FunkoCacheImpl implements  FunkoCache {
      * @return El tamaño actual de la caché.
      */
     public int getTamano(){
-        return cache.size();
+        synchronized (cache) {
+            return cache.size();
+        }
     }
 
-    private FunkoCacheImpl(int maxSize) {
+    private FunkoCacheImpl(int maxSize, Duration ttl) {
         this.maxSize = maxSize;
-        this.cache = new LinkedHashMap<Long, Funko>(maxSize, 0.75f, true) {
+        this.ttl = ttl;
+        this.cache = new LinkedHashMap<Long, Entrada>(maxSize, 0.75f, true) {
             @Override
-            protected boolean removeEldestEntry(Map.Entry<Long, Funko> eldest) {
+            protected boolean removeEldestEntry(Map.Entry<Long, Entrada> eldest) {
                 return size() > maxSize;
             }
         };
         this.cleaner = Executors.newSingleThreadScheduledExecutor();
-        this.cleaner.scheduleAtFixedRate(this::clear, 2, 2, TimeUnit.MINUTES);
+        this.cleaner.scheduleAtFixedRate(this::clear, ttl.toMillis(), ttl.toMillis(), TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Almacena un objeto Funko en la caché asociado a una clave.
+     * Almacena un objeto Funko en la caché asociado a una clave, salvo que la caché ya tenga una versión más reciente.
      *
      * @param key   La clave que identifica el objeto Funko.
      * @param value El objeto Funko que se va a almacenar en la caché.
@@ -68,8 +95,19 @@ public class FunkoCacheImpl implements  FunkoCache {
     @Override
     public CompletableFuture<Void> put(Long key, Funko value) {
         return CompletableFuture.runAsync(() -> {
-            logger.debug("Añadiendo funko a cache con id: " + key + " y valor: " + value);
-            cache.put(key, value);
+            logger.debug("Añadiendo funko a cache con id: {} y valor: {}", key, value);
+            FunkoCompact nuevo = FunkoCompact.of(value);
+            // Sin fecha de actualizacion la caducidad se cuenta desde que se añade
+            long actualizado = nuevo.updatedAtNanos() != FunkoCompact.NO_TIMESTAMP
+                    ? nuevo.updatedAtNanos() : FunkoCompact.toNanos(LocalDateTime.now());
+            synchronized (cache) {
+                Entrada actual = cache.get(key);
+                if (actual != null && actual.funko().version() > nuevo.version()) {
+                    logger.debug("Descartado funko obsoleto para cache con id: {}, version: {} anterior a la guardada: {}", key, nuevo.version(), actual.funko().version());
+                    return;
+                }
+                cache.put(key, new Entrada(nuevo, actualizado));
+            }
         });
     }
 
@@ -83,10 +121,13 @@ public class FunkoCacheImpl implements  FunkoCache {
     @Override
     public CompletableFuture<Optional<Funko>> get(Long key) {
         return CompletableFuture.supplyAsync(() -> {
-           logger.debug("Obteniendo funko de cache con id: " + key);
-           Optional<Funko> funko = Optional.ofNullable(cache.get(key));
-           if(funko.isPresent() && funko!= null) {
-               return funko;
+           logger.debug("Obteniendo funko de cache con id: {}", key);
+           Entrada entrada;
+           synchronized (cache) {
+               entrada = cache.get(key);
+           }
+           if(entrada != null) {
+               return Optional.of(entrada.funko().toFunko());
            } else {
                return Optional.empty();
            }
@@ -102,8 +143,10 @@ public class FunkoCacheImpl implements  FunkoCache {
     @Override
     public CompletableFuture<Void> remove(Long key) {
         return CompletableFuture.runAsync(() -> {
-           logger.debug("Eliminando funko de cache con id: " + key);
-           cache.remove(key);
+           logger.debug("Eliminando funko de cache con id: {}", key);
+           synchronized (cache) {
+               cache.remove(key);
+           }
         });
     }
 
@@ -115,13 +158,16 @@ public class FunkoCacheImpl implements  FunkoCache {
     @Override
     public CompletableFuture<Void> clear() {
         return CompletableFuture.runAsync(() -> {
-            cache.entrySet().removeIf(entry -> {
-               boolean shouldRemove = entry.getValue().getUpdatedAt().plusMinutes(2).isBefore(LocalDateTime.now());
-               if (shouldRemove) {
-                   logger.debug("Autoeliminando por caducidad funko de cache con id: " + entry.getKey());
-               }
-               return shouldRemove;
-            });
+            long limite = FunkoCompact.toNanos(LocalDateTime.now().minus(ttl));
+            synchronized (cache) {
+                cache.entrySet().removeIf(entry -> {
+                   boolean shouldRemove = entry.getValue().actualizadoNanos() < limite;
+                   if (shouldRemove) {
+                       logger.debug("Autoeliminando por caducidad funko de cache con id: {}", entry.getKey());
+                   }
+                   return shouldRemove;
+                });
+            }
         });
     }
 
@@ -136,4 +182,13 @@ public class FunkoCacheImpl implements  FunkoCache {
            cleaner.shutdown();
         });
     }
+
+    /**
+     * Funko guardado en la caché junto con el instante desde el que se cuenta su caducidad.
+     *
+     * @param funko            El Funko en su representación compacta.
+     * @param actualizadoNanos Su fecha de actualización, o la de cuando se añadió si no tiene, en nanosegundos.
+     */
+    private record Entrada(FunkoCompact funko, long actualizadoNanos) {
+    }
 }
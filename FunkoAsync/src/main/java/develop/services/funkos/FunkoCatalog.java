@@ -0,0 +1,369 @@
+package develop.services.funkos;
+
+import develop.models.Funko;
+import develop.models.FunkoCompact;
+import develop.models.Model;
+import develop.repositories.funkos.FunkosRepository;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * La clase FunkoCatalog guarda en memoria los datos de los Funkos que usan los análisis, organizados por columnas:
+ * un array de primitivos por campo (ID, precio, ordinal del modelo y día de lanzamiento) y el nombre codificado con un diccionario.
+ * Los operadores recorren los arrays con bucles simples sin objetos intermedios, lo que permite al compilador JIT vectorizarlos.
+ * Se construye recorriendo la base de datos con un cursor y se mantiene al día registrándolo como FunkoChangeListener en el servicio.
+ * Las lecturas pueden ser concurrentes; las escrituras son exclusivas.
+ */
+public class FunkoCatalog implements FunkoChangeListener {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Model[] MODELS = Model.values();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> filaPorId = new HashMap<>();
+    private final List<String> diccionario = new ArrayList<>();
+    private final Map<String, Integer> codigoPorNombre = new HashMap<>();
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private byte[] models = new byte[INITIAL_CAPACITY];
+    private int[] releaseEpochDays = new int[INITIAL_CAPACITY];
+    private int[] nameCodes = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Construye un catálogo con todos los Funkos de la base de datos, leyéndolos en streaming.
+     *
+     * @param repository El repositorio de Funkos.
+     * @return Un CompletableFuture con el catálogo cargado.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public static CompletableFuture<FunkoCatalog> load(FunkosRepository repository) throws SQLException {
+        FunkoCatalog catalogo = new FunkoCatalog();
+        return repository.forEachCompact(catalogo::upsert).thenApply(leidos -> catalogo);
+    }
+
+    /**
+     * Añade un Funko al catálogo o, si ya existe uno con el mismo ID, sustituye sus datos.
+     *
+     * @param funko El Funko en su representación compacta.
+     */
+    public void upsert(FunkoCompact funko) {
+        lock.writeLock().lock();
+        try {
+            Integer fila = filaPorId.get(funko.id());
+            if (fila == null) {
+                if (size == ids.length) {
+                    crecer();
+                }
+                fila = size++;
+                filaPorId.put(funko.id(), fila);
+            }
+            ids[fila] = funko.id();
+            prices[fila] = funko.price();
+            models[fila] = funko.model();
+            releaseEpochDays[fila] = funko.releaseEpochDay();
+            nameCodes[fila] = codificar(funko.name());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita un Funko del catálogo moviendo la última fila a su hueco.
+     *
+     * @param id El ID del Funko.
+     * @return true si el Funko estaba en el catálogo.
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer fila = filaPorId.remove(id);
+            if (fila == null) {
+                return false;
+            }
+            int ultima = --size;
+            if (fila != ultima) {
+                ids[fila] = ids[ultima];
+                prices[fila] = prices[ultima];
+                models[fila] = models[ultima];
+                releaseEpochDays[fila] = releaseEpochDays[ultima];
+                nameCodes[fila] = nameCodes[ultima];
+                filaPorId.put(ids[fila], fila);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Vacía el catálogo. El diccionario de nombres se conserva.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            filaPorId.clear();
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onUpsert(Funko funko) {
+        upsert(FunkoCompact.of(funko));
+    }
+
+    @Override
+    public void onDelete(long id) {
+        remove(id);
+    }
+
+    @Override
+    public void onDeleteAll() {
+        clear();
+    }
+
+    /**
+     * Obtiene el número de Funkos del catálogo.
+     *
+     * @return El número de Funkos.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calcula el precio máximo.
+     *
+     * @return El precio máximo, o vacío si el catálogo está vacío.
+     */
+    public OptionalDouble maxPrice() {
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return OptionalDouble.empty();
+            }
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, prices[i]);
+            }
+            return OptionalDouble.of(max);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca el Funko más caro. Si hay varios con el mismo precio, devuelve el primero del catálogo.
+     *
+     * @return El ID del Funko más caro, o vacío si el catálogo está vacío.
+     */
+    public OptionalLong idOfMaxPrice() {
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return OptionalLong.empty();
+            }
+            int mejor = 0;
+            for (int i = 1; i < size; i++) {
+                if (prices[i] > prices[mejor]) {
+                    mejor = i;
+                }
+            }
+            return OptionalLong.of(ids[mejor]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calcula la suma de los precios.
+     *
+     * @return La suma de los precios, 0 si el catálogo está vacío.
+     */
+    public double sumPrice() {
+        lock.readLock().lock();
+        try {
+            double suma = 0;
+            for (int i = 0; i < size; i++) {
+                suma += prices[i];
+            }
+            return suma;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calcula el precio medio.
+     *
+     * @return El precio medio, 0 si el catálogo está vacío.
+     */
+    public double averagePrice() {
+        lock.readLock().lock();
+        try {
+            return size == 0 ? 0.0 : sumPrice() / size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta los Funkos de cada modelo. Los Funkos sin modelo se cuentan en una posición propia y no aparecen en el resultado.
+     *
+     * @return Un mapa con el número de Funkos de cada modelo que tiene al menos uno.
+     */
+    public Map<Model, Long> countByModel() {
+        lock.readLock().lock();
+        try {
+            // La posicion 0 es la de los Funkos sin modelo, cuyo ordinal es -1
+            long[] contadores = new long[MODELS.length + 1];
+            for (int i = 0; i < size; i++) {
+                contadores[models[i] + 1]++;
+            }
+            Map<Model, Long> resultado = new EnumMap<>(Model.class);
+            for (int m = 0; m < MODELS.length; m++) {
+                if (contadores[m + 1] > 0) {
+                    resultado.put(MODELS[m], contadores[m + 1]);
+                }
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Agrupa los IDs de los Funkos por modelo. Los Funkos sin modelo no aparecen en el resultado.
+     *
+     * @return Un mapa con los IDs de los Funkos de cada modelo que tiene al menos uno.
+     */
+    public Map<Model, long[]> idsByModel() {
+        lock.readLock().lock();
+        try {
+            Map<Model, Long> contadores = countByModel();
+            Map<Model, long[]> resultado = new EnumMap<>(Model.class);
+            int[] posiciones = new int[MODELS.length];
+            contadores.forEach((modelo, n) -> resultado.put(modelo, new long[n.intValue()]));
+            for (int i = 0; i < size; i++) {
+                if (models[i] >= 0) {
+                    resultado.get(MODELS[models[i]])[posiciones[models[i]]++] = ids[i];
+                }
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta los Funkos lanzados en un año.
+     *
+     * @param year El año de lanzamiento.
+     * @return El número de Funkos lanzados ese año.
+     */
+    public long countReleasedInYear(int year) {
+        int desde = (int) LocalDate.of(year, 1, 1).toEpochDay();
+        int hasta = (int) LocalDate.of(year + 1, 1, 1).toEpochDay();
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                int dia = releaseEpochDays[i];
+                total += (dia >= desde & dia < hasta) ? 1 : 0;
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los Funkos lanzados en un año.
+     *
+     * @param year El año de lanzamiento.
+     * @return Los IDs de los Funkos lanzados ese año.
+     */
+    public long[] idsReleasedInYear(int year) {
+        int desde = (int) LocalDate.of(year, 1, 1).toEpochDay();
+        int hasta = (int) LocalDate.of(year + 1, 1, 1).toEpochDay();
+        lock.readLock().lock();
+        try {
+            long[] resultado = new long[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (releaseEpochDays[i] >= desde && releaseEpochDays[i] < hasta) {
+                    resultado[n++] = ids[i];
+                }
+            }
+            return Arrays.copyOf(resultado, n);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los Funkos cuyo nombre contiene un texto. El texto se busca una sola vez en cada nombre distinto del
+     * diccionario y después solo se comparan los códigos de la columna de nombres.
+     *
+     * @param text El texto a buscar, distinguiendo mayúsculas y minúsculas.
+     * @return Los IDs de los Funkos cuyo nombre contiene el texto.
+     */
+    public long[] idsWithNameContaining(String text) {
+        lock.readLock().lock();
+        try {
+            boolean[] coincide = new boolean[diccionario.size()];
+            boolean alguno = false;
+            for (int c = 0; c < coincide.length; c++) {
+                coincide[c] = diccionario.get(c) != null && diccionario.get(c).contains(text);
+                alguno |= coincide[c];
+            }
+            if (!alguno) {
+                return new long[0];
+            }
+            long[] resultado = new long[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (coincide[nameCodes[i]]) {
+                    resultado[n++] = ids[i];
+                }
+            }
+            return Arrays.copyOf(resultado, n);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene el código de un nombre en el diccionario, añadiéndolo si es nuevo. Se llama con el cerrojo de escritura.
+     */
+    private int codificar(String nombre) {
+        Integer codigo = codigoPorNombre.get(nombre);
+        if (codigo == null) {
+            codigo = diccionario.size();
+            diccionario.add(nombre);
+            codigoPorNombre.put(nombre, codigo);
+        }
+        return codigo;
+    }
+
+    /**
+     * Duplica la capacidad de todas las columnas. Se llama con el cerrojo de escritura.
+     */
+    private void crecer() {
+        int capacidad = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacidad);
+        prices = Arrays.copyOf(prices, capacidad);
+        models = Arrays.copyOf(models, capacidad);
+        releaseEpochDays = Arrays.copyOf(releaseEpochDays, capacidad);
+        nameCodes = Arrays.copyOf(nameCodes, capacidad);
+    }
+}
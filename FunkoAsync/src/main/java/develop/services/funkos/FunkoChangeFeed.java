@@ -0,0 +1,290 @@
+package develop.services.funkos;
+
+import develop.exceptions.funkos.FunkoNoEncotradoException;
+import develop.models.Funko;
+import develop.models.FunkoChange;
+import develop.repositories.funkos.FunkosRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * La clase FunkoChangeFeed lee incrementalmente la tabla funkos_cambios, que rellena el trigger trg_funkos_cambios con cada
+ * cambio de la tabla funkos, y entrega cada cambio en orden de secuencia a sus suscriptores. Así la caché y los oyentes se
+ * enteran también de los cambios que no pasan por FunkosServiceImpl: SQL directo, otro proceso sobre el mismo archivo de H2
+ * o las importaciones.
+ * <p>
+ * Como la secuencia se asigna al insertar y no al confirmar, una transacción que confirma más tarde puede dejar un hueco que
+ * se rellena después. Al encontrar un hueco la lectura se detiene hasta que se rellena o pasan dos segundos, momento en el que
+ * se da por hecho que era una transacción deshecha y se salta.
+ * <p>
+ * Con {@link #purgeDelivered(LongSupplier)} el propio lector borra de funkos_cambios los cambios que ya ha entregado,
+ * respetando los que todavía necesite otro lector, para que la tabla no crezca sin límite.
+ */
+public class FunkoChangeFeed implements Closeable {
+    static final long GAP_TIMEOUT_MS = 2000; // Tiempo tras el que un hueco de secuencias se da por una transaccion deshecha
+    private final Logger logger = LoggerFactory.getLogger(FunkoChangeFeed.class);
+    private final FunkosRepository repository;
+    private final int batchSize;
+    private final List<Consumer<FunkoChange>> subscribers = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService poller;
+    private volatile long lastSeq;
+    private long huecoDesde = 0; // Instante en nanos en que se vio el hueco tras lastSeq, o 0 si no hay hueco
+    private volatile LongSupplier retencion; // Secuencia hasta la que otro lector ya ha procesado, o null si no se purga
+
+    /**
+     * Crea un lector de cambios que empieza después de una secuencia.
+     *
+     * @param repository El repositorio de Funkos.
+     * @param fromSeq    La secuencia del último cambio ya procesado.
+     * @param batchSize  El número máximo de cambios que se leen en cada consulta.
+     */
+    public FunkoChangeFeed(FunkosRepository repository, long fromSeq, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("El tamaño del lote debe ser positivo");
+        }
+        this.repository = repository;
+        this.lastSeq = fromSeq;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Crea un lector de cambios que empieza en el último cambio registrado, es decir, que solo entrega los cambios nuevos.
+     *
+     * @param repository El repositorio de Funkos.
+     * @param batchSize  El número máximo de cambios que se leen en cada consulta.
+     * @return El lector de cambios.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public static FunkoChangeFeed fromNow(FunkosRepository repository, int batchSize) throws SQLException {
+        return new FunkoChangeFeed(repository, repository.lastChangeSeq().join(), batchSize);
+    }
+
+    /**
+     * Suscriptor que invalida en la caché los Funkos borrados y los que tienen en la caché una versión anterior a la del cambio.
+     * El trigger trg_funkos_version garantiza que cada actualización aumenta la versión, también las hechas por SQL directo
+     * o por otros procesos, así que solo no invalidan la caché los cambios que ya tiene, como las escrituras de este servicio.
+     *
+     * @param cache La caché de Funkos.
+     * @return El suscriptor.
+     */
+    public static Consumer<FunkoChange> invalidating(FunkoCache cache) {
+        return cambio -> {
+            if (cambio.operation() == FunkoChange.Operation.DELETE || cambio.version() == null) {
+                cache.remove(cambio.funkoId()).join();
+                return;
+            }
+            Optional<Funko> cacheado = cache.get(cambio.funkoId()).join();
+            if (cacheado.isPresent() && cacheado.get().getVersion() < cambio.version()) {
+                cache.remove(cambio.funkoId()).join();
+            }
+        };
+    }
+
+    /**
+     * Suscriptor que reenvía los cambios a unos oyentes: los borrados como onDelete y el resto como onUpsert con el Funko
+     * leído de la base de datos. Si no hay oyentes no se lee nada. Reenvía todos los cambios, así que si los oyentes ya
+     * reciben las escrituras de un servicio, las recibirán dos veces; para evitarlo se usa
+     * {@link #forwarding(FunkosRepository, FunkoCache, Collection)}.
+     *
+     * @param repository El repositorio de Funkos.
+     * @param listeners  Los oyentes; se consulta en cada cambio, así que puede cambiar mientras se usa.
+     * @return El suscriptor.
+     */
+    public static Consumer<FunkoChange> forwarding(FunkosRepository repository, Collection<? extends FunkoChangeListener> listeners) {
+        return forwarding(repository, null, listeners);
+    }
+
+    /**
+     * Suscriptor que reenvía los cambios a unos oyentes como {@link #forwarding(FunkosRepository, Collection)}, salvo los
+     * que ya han recibido del servicio que usa la caché: un cambio que no es un borrado y cuya versión, o una posterior,
+     * ya está en la caché lo ha escrito ese servicio, que guarda en la caché y avisa a los oyentes en cada escritura.
+     * Se debe suscribir después de {@link #invalidating(FunkoCache)}, que quita de la caché las versiones anteriores.
+     * Los borrados y los cambios de las operaciones que invalidan la caché en lugar de actualizarla (restauraciones,
+     * cargas masivas y transacciones) se reenvían aunque el servicio ya los haya avisado, así que los oyentes deben
+     * tolerar recibir dos veces el mismo onDelete u onUpsert, como FunkoCatalog.
+     *
+     * @param repository El repositorio de Funkos.
+     * @param cache      La caché del servicio cuyas escrituras no se reenvían, o null para reenviarlo todo.
+     * @param listeners  Los oyentes; se consulta en cada cambio, así que puede cambiar mientras se usa.
+     * @return El suscriptor.
+     */
+    public static Consumer<FunkoChange> forwarding(FunkosRepository repository, FunkoCache cache, Collection<? extends FunkoChangeListener> listeners) {
+        return cambio -> {
+            if (listeners.isEmpty()) {
+                return;
+            }
+            if (cache != null && cambio.operation() != FunkoChange.Operation.DELETE && cambio.version() != null) {
+                Optional<Funko> cacheado = cache.get(cambio.funkoId()).join();
+                if (cacheado.isPresent() && cacheado.get().getVersion() >= cambio.version()) {
+                    return; // Escrito por el servicio, que ya ha avisado a los oyentes
+                }
+            }
+            Optional<Funko> funko = Optional.empty();
+            if (cambio.operation() != FunkoChange.Operation.DELETE) {
+                try {
+                    funko = repository.findById(cambio.funkoId()).join();
+                } catch (SQLException | FunkoNoEncotradoException e) {
+                    throw new CompletionException(e);
+                }
+            }
+            for (FunkoChangeListener listener : listeners) {
+                if (funko.isPresent()) {
+                    listener.onUpsert(funko.get());
+                } else {
+                    listener.onDelete(cambio.funkoId()); // Borrado, o borrado despues de este cambio
+                }
+            }
+        };
+    }
+
+    /**
+     * Añade un suscriptor, que recibirá los cambios en orden de secuencia desde el hilo que lee.
+     *
+     * @param subscriber El suscriptor.
+     */
+    public void subscribe(Consumer<FunkoChange> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Activa el borrado de los cambios ya entregados: tras cada lectura que entrega cambios se borran de funkos_cambios
+     * los cambios hasta {@link #getLastSeq()}, sin pasar de la secuencia que indique {@code conservarDesde}.
+     *
+     * @param conservarDesde La secuencia del último cambio que ha procesado otro lector de funkos_cambios, como la
+     *                       exportación incremental; los posteriores no se borran. Long.MAX_VALUE si no hay otro lector.
+     */
+    public void purgeDelivered(LongSupplier conservarDesde) {
+        this.retencion = conservarDesde;
+    }
+
+    /**
+     * Empieza a leer los cambios periódicamente en un hilo en segundo plano.
+     *
+     * @param pollInterval El tiempo entre lecturas.
+     */
+    public synchronized void start(Duration pollInterval) {
+        if (poller != null) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "funko-change-feed");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        poller.scheduleWithFixedDelay(this::pollSeguro, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        logger.debug("Leyendo cambios desde la secuencia {} cada {}", lastSeq, pollInterval);
+    }
+
+    /**
+     * Lee y entrega a los suscriptores todos los cambios nuevos hasta el primer hueco sin caducar.
+     *
+     * @return El número de cambios entregados.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public synchronized int poll() throws SQLException {
+        int entregados = leer();
+        LongSupplier conservarDesde = retencion;
+        if (entregados > 0 && conservarDesde != null) {
+            long hasta = Math.min(lastSeq, conservarDesde.getAsLong());
+            int borrados = repository.purgeChanges(hasta).join();
+            logger.debug("Borrados {} cambios ya procesados hasta la secuencia {}", borrados, hasta);
+        }
+        return entregados;
+    }
+
+    /**
+     * Lee y entrega los cambios nuevos hasta el primer hueco sin caducar.
+     */
+    private int leer() throws SQLException {
+        int entregados = 0;
+        while (true) {
+            List<FunkoChange> cambios = repository.findChangesSince(lastSeq, batchSize).join();
+            for (FunkoChange cambio : cambios) {
+                if (cambio.seq() != lastSeq + 1 && !huecoCaducado()) {
+                    return entregados;
+                }
+                huecoDesde = 0;
+                publicar(cambio);
+                lastSeq = cambio.seq();
+                entregados++;
+            }
+            if (cambios.size() < batchSize) {
+                return entregados;
+            }
+        }
+    }
+
+    /**
+     * Obtiene la secuencia del último cambio entregado, que se puede guardar para continuar desde ahí con otro lector.
+     *
+     * @return La secuencia.
+     */
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Para la lectura periódica.
+     */
+    @Override
+    public synchronized void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    /**
+     * Entrega un cambio a todos los suscriptores; el error de uno no impide que lo reciban los demás.
+     */
+    private void publicar(FunkoChange cambio) {
+        for (Consumer<FunkoChange> subscriber : subscribers) {
+            try {
+                subscriber.accept(cambio);
+            } catch (RuntimeException e) {
+                logger.error("Error al entregar el cambio {} a un suscriptor", cambio, e);
+            }
+        }
+    }
+
+    /**
+     * Indica si el hueco tras la última secuencia entregada lleva abierto más de GAP_TIMEOUT_MS.
+     */
+    private boolean huecoCaducado() {
+        long ahora = System.nanoTime();
+        if (huecoDesde == 0) {
+            huecoDesde = ahora;
+            return false;
+        }
+        if (TimeUnit.NANOSECONDS.toMillis(ahora - huecoDesde) < GAP_TIMEOUT_MS) {
+            return false;
+        }
+        logger.debug("Se salta el hueco de secuencias tras {}", lastSeq);
+        return true;
+    }
+
+    /**
+     * Lectura desde el hilo en segundo plano: un error no debe cancelar las siguientes lecturas programadas.
+     */
+    private void pollSeguro() {
+        try {
+            poll();
+        } catch (SQLException | RuntimeException e) {
+            logger.error("Error al leer los cambios de los funkos", e);
+        }
+    }
+}
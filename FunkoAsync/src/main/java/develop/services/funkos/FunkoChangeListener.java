@@ -0,0 +1,30 @@
+package develop.services.funkos;
+
+import develop.models.Funko;
+
+/**
+ * La interfaz FunkoChangeListener recibe los cambios que el servicio de Funkos confirma en la base de datos,
+ * para mantener actualizadas las estructuras en memoria que se construyen a partir de ella.
+ * Los métodos se llaman después de que la base de datos confirme el cambio y deben ser rápidos.
+ */
+public interface FunkoChangeListener {
+
+    /**
+     * Se llama cuando un Funko se ha guardado, actualizado o restaurado.
+     *
+     * @param funko El Funko con sus datos actuales.
+     */
+    void onUpsert(Funko funko);
+
+    /**
+     * Se llama cuando un Funko se ha borrado.
+     *
+     * @param id El ID del Funko borrado.
+     */
+    void onDelete(long id);
+
+    /**
+     * Se llama cuando se han borrado todos los Funkos.
+     */
+    void onDeleteAll();
+}
@@ -0,0 +1,390 @@
+package develop.services.funkos;
+
+import develop.exceptions.funkos.FunkoInvalidoException;
+import develop.models.Funko;
+import develop.models.ImportReport;
+import develop.models.ImportStageReport;
+import develop.models.Model;
+import develop.repositories.funkos.FunkosRepository;
+import develop.utils.CompressionCodec;
+import develop.utils.CsvUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * La clase FunkoImportPipeline importa líneas CSV de Funkos en cuatro etapas: parseo, validación, eliminación de duplicados y guardado.
+ * Una línea que falla en cualquier etapa no detiene la importación: se escribe en el archivo de rechazos con su número de línea
+ * y el motivo, y se continúa con la siguiente. Los Funkos válidos se guardan en lotes.
+ * Los duplicados solo se buscan entre las líneas que pasan por esta instancia: un código que ya está en la base de datos
+ * o que llegó en otra importación no se rechaza.
+ * Cada instancia la usa un único hilo y se debe cerrar al terminar para guardar el último lote.
+ */
+public class FunkoImportPipeline implements Closeable {
+    private static final int CAMPOS = 5;
+    private final Logger logger = LoggerFactory.getLogger(FunkoImportPipeline.class);
+    private final FunkosRepository repository;
+    private final Path rejectFile;
+    private final int batchSize;
+    private final boolean append;
+    private final Set<UUID> vistos = new HashSet<>();
+    private final List<Funko> lote;
+    private final List<Long> numerosLote;
+    private final List<String> lineasLote;
+    private final Etapa parseo = new Etapa("parse");
+    private final Etapa validacion = new Etapa("validate");
+    private final Etapa duplicados = new Etapa("dedupe");
+    private final Etapa guardado = new Etapa("persist");
+    private final long inicio = System.nanoTime();
+    private Writer rechazos;
+    private long leidas = 0;
+
+    /**
+     * Crea una importación que guarda en lotes en el repositorio indicado.
+     *
+     * @param repository El repositorio donde se guardan los Funkos válidos.
+     * @param rejectFile El archivo CSV donde se escriben las líneas rechazadas; solo se crea si se rechaza alguna.
+     * @param batchSize  El número de Funkos que se guardan juntos en cada lote.
+     */
+    public FunkoImportPipeline(FunkosRepository repository, Path rejectFile, int batchSize) {
+        this(repository, rejectFile, batchSize, false);
+    }
+
+    /**
+     * Crea una importación que guarda en lotes en el repositorio indicado.
+     *
+     * @param repository El repositorio donde se guardan los Funkos válidos.
+     * @param rejectFile El archivo CSV donde se escriben las líneas rechazadas; solo se crea si se rechaza alguna.
+     * @param batchSize  El número de Funkos que se guardan juntos en cada lote.
+     * @param append     Si es true, los rechazos se añaden al final del archivo en lugar de sobrescribirlo.
+     */
+    public FunkoImportPipeline(FunkosRepository repository, Path rejectFile, int batchSize, boolean append) {
+        this.repository = repository;
+        this.rejectFile = rejectFile;
+        this.batchSize = batchSize;
+        this.append = append;
+        this.lote = new ArrayList<>(batchSize);
+        this.numerosLote = new ArrayList<>(batchSize);
+        this.lineasLote = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Importa en streaming un archivo CSV con cabecera, descomprimiéndolo si el nombre termina en .gz, .deflate o .lz4.
+     *
+     * @param repository El repositorio donde se guardan los Funkos válidos.
+     * @param file       El archivo CSV a importar.
+     * @param rejectFile El archivo CSV donde se escriben las líneas rechazadas.
+     * @param batchSize  El número de Funkos que se guardan juntos en cada lote.
+     * @return Un CompletableFuture con el informe de la importación.
+     */
+    public static CompletableFuture<ImportReport> importCsv(FunkosRepository repository, Path file, Path rejectFile, int batchSize) {
+        return CompletableFuture.supplyAsync(() -> {
+            FunkoImportPipeline pipeline = new FunkoImportPipeline(repository, rejectFile, batchSize);
+            InputStream in = null;
+            try (pipeline) {
+                in = CompressionCodec.forFile(file.toString()).wrap(new BufferedInputStream(Files.newInputStream(file)));
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                String linea = reader.readLine(); // Saltamos la cabecera
+                long numeroLinea = 1;
+                while ((linea = reader.readLine()) != null) {
+                    pipeline.accept(++numeroLinea, linea);
+                }
+            } catch (IOException e) {
+                pipeline.logger.error("Error al leer el archivo: {}", file);
+                throw new CompletionException(e);
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                        // El archivo ya se ha leido entero, no hay nada que recuperar
+                    }
+                }
+            }
+            ImportReport report = pipeline.getReport(file);
+            pipeline.logger.debug("Importacion de {} terminada: {}", file, report);
+            return report;
+        });
+    }
+
+    /**
+     * Procesa una línea CSV a través de todas las etapas. Si el lote se llena, se guarda en el repositorio.
+     *
+     * @param numeroLinea El número de la línea dentro del archivo, para el archivo de rechazos.
+     * @param linea       La línea CSV con el código, nombre, modelo, precio y fecha de lanzamiento.
+     */
+    public void accept(long numeroLinea, String linea) {
+        leidas++;
+        String[] campos = parsear(numeroLinea, linea);
+        if (campos == null) {
+            return;
+        }
+        Funko funko = validar(numeroLinea, linea, campos);
+        if (funko == null) {
+            return;
+        }
+        if (!esNuevo(numeroLinea, linea, funko)) {
+            return;
+        }
+        lote.add(funko);
+        numerosLote.add(numeroLinea);
+        lineasLote.add(linea);
+        if (lote.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Etapa de parseo: separa la línea en sus campos.
+     *
+     * @return Los campos de la línea, o null si se ha rechazado.
+     */
+    private String[] parsear(long numeroLinea, String linea) {
+        long t = System.nanoTime();
+        parseo.entrada++;
+        try {
+            if (linea.isBlank()) {
+                rechazar(parseo, numeroLinea, linea, "Linea vacia");
+                return null;
+            }
+            String[] campos = linea.split(",", -1);
+            if (campos.length != CAMPOS) {
+                rechazar(parseo, numeroLinea, linea, "Se esperaban " + CAMPOS + " campos y hay " + campos.length);
+                return null;
+            }
+            parseo.salida++;
+            return campos;
+        } finally {
+            parseo.nanos += System.nanoTime() - t;
+        }
+    }
+
+    /**
+     * Etapa de validación: comprueba cada campo y construye el Funko.
+     *
+     * @return El Funko construido, o null si se ha rechazado.
+     */
+    private Funko validar(long numeroLinea, String linea, String[] campos) {
+        long t = System.nanoTime();
+        validacion.entrada++;
+        try {
+            Funko funko = Funko.builder()
+                    .COD(validarCodigo(campos[0].trim()))
+                    .name(validarNombre(campos[1].trim()))
+                    .model(validarModelo(campos[2].trim()))
+                    .price(validarPrecio(campos[3].trim()))
+                    .releaseData(validarFecha(campos[4].trim()))
+                    .build();
+            validacion.salida++;
+            return funko;
+        } catch (FunkoInvalidoException e) {
+            rechazar(validacion, numeroLinea, linea, e.getMessage());
+            return null;
+        } finally {
+            validacion.nanos += System.nanoTime() - t;
+        }
+    }
+
+    /**
+     * Etapa de eliminación de duplicados: descarta los Funkos cuyo código ya ha aparecido en esta importación.
+     * No se consulta la base de datos, por lo que no se detectan los códigos guardados antes.
+     *
+     * @return true si es la primera vez que aparece el código.
+     */
+    private boolean esNuevo(long numeroLinea, String linea, Funko funko) {
+        long t = System.nanoTime();
+        duplicados.entrada++;
+        try {
+            if (!vistos.add(funko.getCOD())) {
+                rechazar(duplicados, numeroLinea, linea, "Codigo duplicado: " + funko.getCOD());
+                return false;
+            }
+            duplicados.salida++;
+            return true;
+        } finally {
+            duplicados.nanos += System.nanoTime() - t;
+        }
+    }
+
+    /**
+     * Etapa de guardado: guarda el lote pendiente en el repositorio. Si el lote falla, se reintenta Funko a Funko
+     * para rechazar solo los que la base de datos no acepta. Al terminar, los rechazos pendientes se escriben en disco.
+     */
+    public void flush() {
+        guardarLote();
+        if (rechazos != null) {
+            try {
+                rechazos.flush();
+            } catch (IOException e) {
+                logger.error("Error al escribir en el archivo de rechazos: {}", rejectFile);
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void guardarLote() {
+        if (lote.isEmpty()) {
+            return;
+        }
+        long t = System.nanoTime();
+        guardado.entrada += lote.size();
+        try {
+            repository.saveAll(lote).join();
+            guardado.salida += lote.size();
+        } catch (CompletionException | SQLException e) {
+            logger.warn("Error al guardar un lote de {} funkos, se guardan de uno en uno", lote.size());
+            for (int i = 0; i < lote.size(); i++) {
+                try {
+                    repository.saveAll(List.of(lote.get(i))).join();
+                    guardado.salida++;
+                } catch (CompletionException | SQLException ex) {
+                    Throwable causa = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    rechazar(guardado, numerosLote.get(i), lineasLote.get(i), "Error al guardar: " + causa.getMessage());
+                }
+            }
+        } finally {
+            guardado.nanos += System.nanoTime() - t;
+            lote.clear();
+            numerosLote.clear();
+            lineasLote.clear();
+        }
+    }
+
+    /**
+     * Guarda el último lote y cierra el archivo de rechazos.
+     *
+     * @throws IOException Si ocurre un error al cerrar el archivo de rechazos.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (rechazos != null) {
+            rechazos.close();
+        }
+    }
+
+    /**
+     * Construye el informe de la importación con las métricas de cada etapa.
+     *
+     * @param file El archivo importado.
+     * @return El informe de la importación.
+     */
+    public ImportReport getReport(Path file) {
+        List<ImportStageReport> etapas = new ArrayList<>();
+        for (Etapa etapa : List.of(parseo, validacion, duplicados, guardado)) {
+            etapas.add(ImportStageReport.builder()
+                    .stage(etapa.nombre)
+                    .in(etapa.entrada)
+                    .out(etapa.salida)
+                    .rejected(etapa.rechazadas)
+                    .nanos(etapa.nanos)
+                    .build());
+        }
+        return ImportReport.builder()
+                .file(file.toString())
+                .rejectFile(rejectFile.toString())
+                .read(leidas)
+                .saved(guardado.salida)
+                .rejected(etapas.stream().mapToLong(ImportStageReport::getRejected).sum())
+                .totalNanos(System.nanoTime() - inicio)
+                .stages(etapas)
+                .build();
+    }
+
+    private UUID validarCodigo(String codigo) throws FunkoInvalidoException {
+        // A diferencia de Funko.getUUID, no se recortan los codigos largos ni se aceptan grupos incompletos
+        try {
+            UUID uuid = UUID.fromString(codigo);
+            if (codigo.length() == 36 && uuid.toString().equalsIgnoreCase(codigo)) {
+                return uuid;
+            }
+        } catch (IllegalArgumentException ignored) {
+            // Se informa con el mismo mensaje que un codigo con longitud incorrecta
+        }
+        throw new FunkoInvalidoException("Codigo invalido: " + codigo);
+    }
+
+    private String validarNombre(String nombre) throws FunkoInvalidoException {
+        if (nombre.isEmpty() || nombre.length() > 255) {
+            throw new FunkoInvalidoException("Nombre invalido: " + nombre);
+        }
+        return nombre;
+    }
+
+    private Model validarModelo(String modelo) throws FunkoInvalidoException {
+        try {
+            return Model.valueOf(modelo);
+        } catch (IllegalArgumentException e) {
+            throw new FunkoInvalidoException("Modelo invalido: " + modelo);
+        }
+    }
+
+    private double validarPrecio(String precio) throws FunkoInvalidoException {
+        try {
+            double valor = Double.parseDouble(precio);
+            if (valor >= 0 && Double.isFinite(valor)) {
+                return valor;
+            }
+        } catch (NumberFormatException ignored) {
+            // Se informa con el mismo mensaje que un precio negativo
+        }
+        throw new FunkoInvalidoException("Precio invalido: " + precio);
+    }
+
+    private LocalDate validarFecha(String fecha) throws FunkoInvalidoException {
+        try {
+            return Funko.getDate(fecha);
+        } catch (DateTimeParseException e) {
+            throw new FunkoInvalidoException("Fecha de lanzamiento invalida: " + fecha);
+        }
+    }
+
+    /**
+     * Escribe una línea rechazada en el archivo de rechazos, creándolo con su cabecera la primera vez.
+     */
+    private void rechazar(Etapa etapa, long numeroLinea, String linea, String motivo) {
+        etapa.rechazadas++;
+        try {
+            if (rechazos == null) {
+                boolean nuevo = !append || !Files.exists(rejectFile) || Files.size(rejectFile) == 0;
+                rechazos = append
+                        ? Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                        : Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8);
+                if (nuevo) {
+                    rechazos.write("LINEA,ETAPA,MOTIVO,CONTENIDO\n");
+                }
+            }
+            // La linea original puede tener comillas o comas de mas, asi que se escapa como un unico campo
+            rechazos.write(numeroLinea + "," + etapa.nombre + "," + CsvUtils.escape(motivo) + "," + CsvUtils.escape(linea) + "\n");
+        } catch (IOException e) {
+            logger.error("Error al escribir en el archivo de rechazos: {}", rejectFile);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Contadores de una etapa de la importación.
+     */
+    private static class Etapa {
+        private final String nombre;
+        private long entrada;
+        private long salida;
+        private long rechazadas;
+        private long nanos;
+
+        Etapa(String nombre) {
+            this.nombre = nombre;
+        }
+    }
+}
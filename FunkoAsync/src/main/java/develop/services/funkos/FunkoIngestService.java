@@ -0,0 +1,266 @@
+package develop.services.funkos;
+
+import develop.repositories.funkos.FunkosRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * La clase FunkoIngestService vigila una carpeta y va importando los archivos CSV de Funkos según se crean o crecen.
+ * De cada archivo solo se leen los bytes nuevos desde el último desplazamiento confirmado, que se guarda en disco para
+ * que un reinicio no vuelva a leer lo ya importado. Solo se consumen líneas completas: una línea a medio escribir se
+ * deja para la siguiente lectura. Las filas pasan por un FunkoImportPipeline y las rechazadas se añaden a {@code <archivo>.rejects.csv}.
+ * El desplazamiento se confirma después de guardar cada lote, así que tras una caída se puede repetir como mucho el último lote.
+ * Cada lectura usa su propio pipeline, que se cierra al terminar: los códigos duplicados solo se detectan entre las líneas
+ * leídas en la misma llamada a {@link #ingest(Path)}, no frente a lo importado antes del mismo archivo o de otros.
+ * <p>
+ * Los Funkos se guardan directamente en el repositorio. Para que la caché y los oyentes del servicio se enteren, hay que
+ * crear la ingesta con FunkosServiceImpl.ingestService, que los avisa tras confirmar cada lote, o activar la lectura de cambios.
+ */
+public class FunkoIngestService implements Closeable {
+    public static final String OFFSETS_FILE = ".ingest-offsets.properties";
+    private static final String REJECTS_SUFFIX = ".rejects.csv";
+    private static final int INGEST_BATCH_SIZE = 500;
+    private static final long POLL_INTERVAL_MS = 500;
+    private final Logger logger = LoggerFactory.getLogger(FunkoIngestService.class);
+    private final FunkosRepository repository;
+    private final LongConsumer alConfirmar;
+    private final Path directory;
+    private final Path offsetsFile;
+    private final Properties offsets = new Properties();
+    private WatchService watchService;
+    private Thread watcher;
+    private volatile boolean running = false;
+
+    /**
+     * Crea el servicio de ingesta de una carpeta, cargando los desplazamientos confirmados en ejecuciones anteriores.
+     *
+     * @param repository El repositorio donde se guardan los Funkos.
+     * @param directory  La carpeta que se vigila.
+     * @throws IOException Si ocurre un error al leer el archivo de desplazamientos.
+     */
+    public FunkoIngestService(FunkosRepository repository, Path directory) throws IOException {
+        this(repository, directory, null);
+    }
+
+    /**
+     * Crea el servicio de ingesta de una carpeta con una acción que se ejecuta tras confirmar cada lote.
+     *
+     * @param repository  El repositorio donde se guardan los Funkos.
+     * @param directory   La carpeta que se vigila.
+     * @param alConfirmar Acción que recibe la secuencia del último cambio de funkos_cambios anterior al lote, para avisar
+     *                    de los Funkos guardados; puede ser null.
+     * @throws IOException Si ocurre un error al leer el archivo de desplazamientos.
+     */
+    public FunkoIngestService(FunkosRepository repository, Path directory, LongConsumer alConfirmar) throws IOException {
+        this.repository = repository;
+        this.alConfirmar = alConfirmar;
+        this.directory = directory;
+        this.offsetsFile = directory.resolve(OFFSETS_FILE);
+        if (Files.exists(offsetsFile)) {
+            try (Reader reader = Files.newBufferedReader(offsetsFile, StandardCharsets.UTF_8)) {
+                offsets.load(reader);
+            }
+        }
+    }
+
+    /**
+     * Importa lo pendiente de los archivos CSV que ya hay en la carpeta y empieza a vigilarla en un hilo en segundo plano.
+     *
+     * @throws IOException Si ocurre un error al registrar la carpeta.
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        running = true;
+        // Registramos antes de recorrer la carpeta para no perder los archivos que lleguen mientras tanto
+        ingestAll();
+        watcher = new Thread(this::vigilar, "funko-ingest-" + directory.getFileName());
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.debug("Vigilando la carpeta: {}", directory);
+    }
+
+    /**
+     * Bucle del hilo vigilante: importa cada archivo CSV creado o modificado. Si se pierden eventos, se revisa toda la carpeta.
+     */
+    private void vigilar() {
+        while (running) {
+            try {
+                WatchKey key = watchService.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        ingestAll();
+                    } else if (esCsv((Path) event.context())) {
+                        ingestSafe(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    logger.error("La carpeta vigilada ya no esta disponible: {}", directory);
+                    running = false;
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                running = false;
+            }
+        }
+    }
+
+    /**
+     * Importa lo pendiente de todos los archivos CSV de la carpeta.
+     */
+    private void ingestAll() {
+        try (Stream<Path> archivos = Files.list(directory)) {
+            archivos.filter(f -> esCsv(f.getFileName())).sorted().forEach(this::ingestSafe);
+        } catch (IOException e) {
+            logger.error("Error al recorrer la carpeta: {}", directory);
+        }
+    }
+
+    private void ingestSafe(Path file) {
+        try {
+            ingest(file);
+        } catch (IOException | UncheckedIOException e) {
+            // El desplazamiento no se ha confirmado, se reintentara con el siguiente evento
+            logger.error("Error al importar el archivo: {}", file);
+        }
+    }
+
+    /**
+     * Importa las líneas completas que se han añadido a un archivo CSV desde su último desplazamiento confirmado.
+     * Si el archivo es más pequeño que el desplazamiento, se considera reemplazado y se lee desde el principio.
+     *
+     * @param file El archivo CSV.
+     * @return El número de Funkos guardados.
+     * @throws IOException Si ocurre un error al leer el archivo o al guardar el desplazamiento.
+     */
+    public synchronized long ingest(Path file) throws IOException {
+        String clave = file.getFileName().toString();
+        long offset = Long.parseLong(offsets.getProperty(clave + ".offset", "0"));
+        long linea = Long.parseLong(offsets.getProperty(clave + ".linea", "0"));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < offset) {
+                logger.debug("El archivo {} se ha reemplazado, se lee desde el principio", file);
+                offset = 0;
+                linea = 0;
+            }
+            if (channel.size() == offset) {
+                return 0;
+            }
+            channel.position(offset);
+            // El pipeline se cierra al terminar la lectura para no acumular en memoria los codigos vistos de cada archivo
+            try (FunkoImportPipeline pipeline = new FunkoImportPipeline(repository,
+                    file.resolveSibling(clave.substring(0, clave.length() - 4) + REJECTS_SUFFIX), INGEST_BATCH_SIZE, true)) {
+                InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+                long pendientes = 0;
+                int b;
+                while ((b = in.read()) != -1) {
+                    if (b != '\n') {
+                        buffer.write(b);
+                        continue;
+                    }
+                    offset += buffer.size() + 1;
+                    String texto = buffer.toString(StandardCharsets.UTF_8);
+                    buffer.reset();
+                    if (texto.endsWith("\r")) {
+                        texto = texto.substring(0, texto.length() - 1);
+                    }
+                    if (++linea > 1) { // La primera linea es la cabecera
+                        pipeline.accept(linea, texto);
+                        if (++pendientes >= INGEST_BATCH_SIZE) {
+                            confirmar(pipeline, clave, offset, linea);
+                            pendientes = 0;
+                        }
+                    }
+                }
+                confirmar(pipeline, clave, offset, linea);
+                long guardados = pipeline.getReport(file).getSaved();
+                logger.debug("Importados {} funkos nuevos de: {}", guardados, file);
+                return guardados;
+            }
+        }
+    }
+
+    /**
+     * Guarda el lote pendiente y después confirma el desplazamiento hasta el que se ha leído el archivo.
+     * Si hay acción tras confirmar, se ejecuta al final; un error en ella no deshace la confirmación.
+     */
+    private void confirmar(FunkoImportPipeline pipeline, String clave, long offset, long linea) throws IOException {
+        long desde = alConfirmar == null ? 0 : ultimoCambio();
+        pipeline.flush();
+        offsets.setProperty(clave + ".offset", String.valueOf(offset));
+        offsets.setProperty(clave + ".linea", String.valueOf(linea));
+        Path tmpFile = offsetsFile.resolveSibling(OFFSETS_FILE + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+            offsets.store(writer, "Desplazamientos confirmados de la ingesta de Funkos");
+        }
+        Files.move(tmpFile, offsetsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (alConfirmar != null) {
+            try {
+                alConfirmar.accept(desde);
+            } catch (RuntimeException e) {
+                logger.error("Error al avisar de los funkos importados de: {}", clave, e);
+            }
+        }
+    }
+
+    private long ultimoCambio() throws IOException {
+        try {
+            return repository.lastChangeSeq().join();
+        } catch (SQLException | CompletionException e) {
+            throw new IOException("Error al leer el ultimo cambio de funkos", e);
+        }
+    }
+
+    /**
+     * Obtiene el desplazamiento confirmado de un archivo.
+     *
+     * @param file El archivo CSV.
+     * @return El número de bytes del archivo ya importados.
+     */
+    public synchronized long getOffset(Path file) {
+        return Long.parseLong(offsets.getProperty(file.getFileName() + ".offset", "0"));
+    }
+
+    private boolean esCsv(Path name) {
+        String nombre = name.toString();
+        return nombre.endsWith(".csv") && !nombre.endsWith(REJECTS_SUFFIX);
+    }
+
+    /**
+     * Deja de vigilar la carpeta.
+     *
+     * @throws IOException Si ocurre un error al cerrar el servicio de vigilancia.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (watcher != null) {
+            try {
+                watcher.join(POLL_INTERVAL_MS * 4);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package develop.services.funkos;
+
+import develop.models.Funko;
+import develop.models.FunkoCompact;
+import develop.models.Model;
+import develop.models.ModelStats;
+import develop.repositories.funkos.FunkosRepository;
+
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * La clase FunkoModelAggregates mantiene materializados el número de Funkos y la suma, el mínimo y el máximo de sus precios
+ * para cada modelo, de modo que consultarlos no requiere recorrer la base de datos.
+ * El mínimo y el máximo se sacan de un multiconjunto ordenado de precios, lo que permite retirar un precio al borrar o
+ * actualizar un Funko. Los contadores de cada modelo se protegen con su propio cerrojo, así que una foto nunca mezcla el
+ * estado de antes y de después de un cambio, y los cambios de modelos distintos no compiten entre sí.
+ * Para poder retirar los valores anteriores guarda solo el modelo y el precio de cada Funko por su ID.
+ * <p>
+ * El servicio no la crea ni la registra por su cuenta: quien la use la construye con {@link #load(FunkosRepository)} y la
+ * registra con FunkosServiceImpl.addChangeListener para mantenerla al día; sin registrar, sus datos son los de la carga.
+ */
+public class FunkoModelAggregates implements FunkoChangeListener {
+    private final Map<Long, ModeloPrecio> porId = new ConcurrentHashMap<>();
+    private final Map<Model, Agregado> agregados = new EnumMap<>(Model.class);
+
+    public FunkoModelAggregates() {
+        for (Model model : Model.values()) {
+            agregados.put(model, new Agregado());
+        }
+    }
+
+    /**
+     * Construye los agregados con todos los Funkos de la base de datos, leyéndolos en streaming.
+     *
+     * @param repository El repositorio de Funkos.
+     * @return Un CompletableFuture con los agregados cargados.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public static CompletableFuture<FunkoModelAggregates> load(FunkosRepository repository) throws SQLException {
+        FunkoModelAggregates aggregates = new FunkoModelAggregates();
+        return aggregates.rebuild(repository).thenApply(leidos -> aggregates);
+    }
+
+    /**
+     * Vacía los agregados y los vuelve a calcular a partir de la base de datos. Corrige además el error de redondeo
+     * que acumula la suma tras muchas retiradas.
+     *
+     * @param repository El repositorio de Funkos.
+     * @return Un CompletableFuture con el número de Funkos leídos.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public CompletableFuture<Long> rebuild(FunkosRepository repository) throws SQLException {
+        clear();
+        return repository.forEachCompact(this::upsert);
+    }
+
+    /**
+     * Añade un Funko a los agregados o, si ya estaba, retira sus valores anteriores y añade los nuevos.
+     *
+     * @param funko El Funko en su representación compacta.
+     */
+    public void upsert(FunkoCompact funko) {
+        // compute serializa los cambios sobre el mismo ID
+        ModeloPrecio nuevo = new ModeloPrecio(funko.getModel(), funko.price());
+        porId.compute(funko.id(), (id, anterior) -> {
+            if (anterior != null) {
+                retirar(anterior);
+            }
+            anadir(nuevo);
+            return nuevo;
+        });
+    }
+
+    /**
+     * Retira un Funko de los agregados.
+     *
+     * @param id El ID del Funko.
+     * @return true si el Funko estaba en los agregados.
+     */
+    public boolean remove(long id) {
+        boolean[] estaba = {false};
+        porId.computeIfPresent(id, (clave, anterior) -> {
+            retirar(anterior);
+            estaba[0] = true;
+            return null;
+        });
+        return estaba[0];
+    }
+
+    /**
+     * Vacía los agregados.
+     */
+    public void clear() {
+        porId.keySet().forEach(this::remove);
+    }
+
+    @Override
+    public void onUpsert(Funko funko) {
+        upsert(FunkoCompact.of(funko));
+    }
+
+    @Override
+    public void onDelete(long id) {
+        remove(id);
+    }
+
+    @Override
+    public void onDeleteAll() {
+        clear();
+    }
+
+    /**
+     * Obtiene las estadísticas de un modelo.
+     *
+     * @param model El modelo.
+     * @return Las estadísticas del modelo, con todo a 0 si no tiene Funkos.
+     */
+    public ModelStats stats(Model model) {
+        return agregados.get(model).foto(model);
+    }
+
+    /**
+     * Obtiene las estadísticas de todos los modelos que tienen al menos un Funko.
+     *
+     * @return Un mapa con las estadísticas de cada modelo.
+     */
+    public Map<Model, ModelStats> statsByModel() {
+        Map<Model, ModelStats> resultado = new EnumMap<>(Model.class);
+        agregados.forEach((model, agregado) -> {
+            ModelStats stats = agregado.foto(model);
+            if (stats.count() > 0) {
+                resultado.put(model, stats);
+            }
+        });
+        return resultado;
+    }
+
+    private void anadir(ModeloPrecio valor) {
+        if (valor.model() != null) {
+            agregados.get(valor.model()).anadir(valor.price());
+        }
+    }
+
+    private void retirar(ModeloPrecio valor) {
+        if (valor.model() != null) {
+            agregados.get(valor.model()).retirar(valor.price());
+        }
+    }
+
+    /**
+     * El modelo y el precio de un Funko, lo único que hace falta para retirarlo de los agregados.
+     */
+    private record ModeloPrecio(Model model, double price) {
+    }
+
+    /**
+     * Contadores de un modelo, protegidos por el cerrojo del propio objeto. El multiconjunto guarda cuántos Funkos hay con cada precio.
+     */
+    private static final class Agregado {
+        private final TreeMap<Double, Long> precios = new TreeMap<>();
+        private long count;
+        private double suma;
+
+        synchronized void anadir(double precio) {
+            count++;
+            suma += precio;
+            precios.merge(precio, 1L, Long::sum);
+        }
+
+        synchronized void retirar(double precio) {
+            count--;
+            suma -= precio;
+            precios.computeIfPresent(precio, (clave, n) -> n == 1 ? null : n - 1);
+        }
+
+        synchronized ModelStats foto(Model model) {
+            if (count == 0) {
+                return new ModelStats(model, 0, 0.0, 0.0, 0.0);
+            }
+            return new ModelStats(model, count, suma, precios.firstKey(), precios.lastKey());
+        }
+    }
+}
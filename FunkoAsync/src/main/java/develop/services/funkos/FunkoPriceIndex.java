@@ -0,0 +1,243 @@
+package develop.services.funkos;
+
+import develop.models.Funko;
+import develop.repositories.funkos.FunkosRepository;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * La clase FunkoPriceIndex es un índice en memoria de los Funkos ordenados por precio, guardado en dos arrays de primitivos
+ * paralelos (precio e ID) ordenados por precio y, a igual precio, por ID. Las consultas por rango de precio y de los más caros
+ * se resuelven con búsqueda binaria en tiempo logarítmico más el tamaño del resultado; insertar o borrar desplaza el tramo
+ * posterior del array. Se construye desde la base de datos y se mantiene al día registrándolo como FunkoChangeListener en el servicio.
+ */
+public class FunkoPriceIndex implements FunkoChangeListener {
+    private static final int INITIAL_CAPACITY = 1024;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Double> precioPorId = new HashMap<>();
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Construye un índice con todos los Funkos de la base de datos, leyéndolos en streaming.
+     *
+     * @param repository El repositorio de Funkos.
+     * @return Un CompletableFuture con el índice cargado.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public static CompletableFuture<FunkoPriceIndex> load(FunkosRepository repository) throws SQLException {
+        FunkoPriceIndex indice = new FunkoPriceIndex();
+        return repository.forEachCompact(funko -> indice.upsert(funko.id(), funko.price())).thenApply(leidos -> indice);
+    }
+
+    /**
+     * Añade un Funko al índice o, si ya estaba, lo recoloca según su nuevo precio.
+     *
+     * @param id    El ID del Funko.
+     * @param price El precio del Funko.
+     */
+    public void upsert(long id, double price) {
+        lock.writeLock().lock();
+        try {
+            Double anterior = precioPorId.put(id, price);
+            if (anterior != null) {
+                if (Double.compare(anterior, price) == 0) {
+                    return;
+                }
+                quitar(buscar(anterior, id));
+            }
+            int posicion = -buscar(price, id) - 1;
+            if (size == ids.length) {
+                prices = Arrays.copyOf(prices, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(prices, posicion, prices, posicion + 1, size - posicion);
+            System.arraycopy(ids, posicion, ids, posicion + 1, size - posicion);
+            prices[posicion] = price;
+            ids[posicion] = id;
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita un Funko del índice.
+     *
+     * @param id El ID del Funko.
+     * @return true si el Funko estaba en el índice.
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Double anterior = precioPorId.remove(id);
+            if (anterior == null) {
+                return false;
+            }
+            quitar(buscar(anterior, id));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Vacía el índice.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            precioPorId.clear();
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onUpsert(Funko funko) {
+        upsert(funko.getId(), funko.getPrice());
+    }
+
+    @Override
+    public void onDelete(long id) {
+        remove(id);
+    }
+
+    @Override
+    public void onDeleteAll() {
+        clear();
+    }
+
+    /**
+     * Obtiene el número de Funkos del índice.
+     *
+     * @return El número de Funkos.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los Funkos con un precio dentro de un rango.
+     *
+     * @param min El precio mínimo, incluido.
+     * @param max El precio máximo, incluido.
+     * @return Los IDs de los Funkos del rango, ordenados de menor a mayor precio y, a igual precio, por ID.
+     */
+    public long[] idsByPriceRange(double min, double max) {
+        lock.readLock().lock();
+        try {
+            int desde = primeraConPrecioDesde(min);
+            int hasta = primeraConPrecioMayorQue(max);
+            return desde >= hasta ? new long[0] : Arrays.copyOfRange(ids, desde, hasta);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los Funkos más caros, en el mismo orden que FunkosRepository.findTopByPrice.
+     *
+     * @param n El número máximo de Funkos a devolver.
+     * @return Los IDs de los n Funkos más caros, de mayor a menor precio y, a igual precio, por ID.
+     */
+    public long[] topIdsByPrice(int n) {
+        lock.readLock().lock();
+        try {
+            long[] resultado = new long[Math.max(0, Math.min(n, size))];
+            int escritos = 0;
+            int fin = size;
+            // Se recorren los tramos de igual precio desde el final; dentro de cada tramo los IDs ya están en orden ascendente
+            while (escritos < resultado.length) {
+                int inicio = primeraConPrecioDesde(prices[fin - 1]);
+                for (int i = inicio; i < fin && escritos < resultado.length; i++) {
+                    resultado[escritos++] = ids[i];
+                }
+                fin = inicio;
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Búsqueda binaria de la posición de un par (precio, ID).
+     *
+     * @return La posición si está, o -(punto de inserción) - 1 si no está, como Arrays.binarySearch.
+     */
+    private int buscar(double price, long id) {
+        int bajo = 0;
+        int alto = size - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int cmp = Double.compare(prices[medio], price);
+            if (cmp == 0) {
+                cmp = Long.compare(ids[medio], id);
+            }
+            if (cmp < 0) {
+                bajo = medio + 1;
+            } else if (cmp > 0) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -(bajo + 1);
+    }
+
+    /**
+     * Obtiene la primera posición cuyo precio es mayor o igual que el dado.
+     */
+    private int primeraConPrecioDesde(double price) {
+        int bajo = 0;
+        int alto = size;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (Double.compare(prices[medio], price) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Obtiene la primera posición cuyo precio es mayor que el dado.
+     */
+    private int primeraConPrecioMayorQue(double price) {
+        int bajo = 0;
+        int alto = size;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (Double.compare(prices[medio], price) <= 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Quita la entrada de una posición desplazando las siguientes. Se llama con el cerrojo de escritura.
+     */
+    private void quitar(int posicion) {
+        System.arraycopy(prices, posicion + 1, prices, posicion, size - posicion - 1);
+        System.arraycopy(ids, posicion + 1, ids, posicion, size - posicion - 1);
+        size--;
+    }
+}
@@ -0,0 +1,117 @@
+package develop.services.funkos;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import develop.models.Funko;
+import develop.models.ShardInfo;
+import develop.utils.CompressionCodec;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * La clase FunkoShardWriter escribe en streaming un fragmento de una exportación particionada como un array JSON,
+ * contando los Funkos escritos y calculando la suma SHA-256 del archivo mientras se escribe.
+ * Cada instancia la usa un único hilo.
+ */
+public class FunkoShardWriter implements Closeable {
+    private final Path file;
+    private final String partition;
+    private final Gson gson;
+    private final MessageDigest digest;
+    private final CountingOutputStream counter;
+    private final JsonWriter writer;
+    private long rows = 0;
+    private String sha256;
+
+    /**
+     * Crea un escritor de fragmento y abre el array JSON en el archivo indicado.
+     *
+     * @param file      La ruta del archivo del fragmento.
+     * @param partition La partición que contiene el fragmento.
+     * @param gson      El Gson configurado para serializar objetos Funko.
+     * @param codec     El algoritmo de compresión del archivo.
+     * @param level     El nivel de compresión.
+     * @throws IOException Si ocurre un error al crear el archivo.
+     */
+    FunkoShardWriter(Path file, String partition, Gson gson, CompressionCodec codec, int level) throws IOException {
+        this.file = file;
+        this.partition = partition;
+        this.gson = gson;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        this.counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        // La suma y el tamaño se calculan sobre los bytes que llegan al archivo, ya comprimidos
+        this.writer = gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(codec.wrap(new DigestOutputStream(counter, digest), level), StandardCharsets.UTF_8)));
+        this.writer.beginArray();
+    }
+
+    /**
+     * Escribe un Funko en el fragmento.
+     *
+     * @param funko El Funko a escribir.
+     */
+    public void write(Funko funko) {
+        gson.toJson(funko, Funko.class, writer);
+        rows++;
+    }
+
+    /**
+     * Cierra el array JSON y el archivo del fragmento.
+     *
+     * @throws IOException Si ocurre un error al escribir el final del archivo.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.endArray();
+        writer.close();
+        sha256 = HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Obtiene la información del fragmento escrito. Solo es completa despues de cerrar el escritor.
+     *
+     * @return La información del fragmento con su número de Funkos, tamaño y suma de comprobación.
+     */
+    public ShardInfo getInfo() {
+        return ShardInfo.builder()
+                .file(file.getFileName().toString())
+                .partition(partition)
+                .rows(rows)
+                .bytes(counter.count)
+                .sha256(sha256)
+                .build();
+    }
+
+    /**
+     * Flujo de salida que cuenta los bytes escritos en el archivo.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package develop.services.funkos;
+
+import develop.models.Funko;
+import develop.models.FunkoStatisticsReport;
+import develop.models.Model;
+
+import java.util.*;
+import java.util.stream.Collector;
+
+/**
+ * La clase FunkoStatistics calcula en una sola pasada todas las estadísticas de una colección de Funkos:
+ * precio máximo y el Funko más caro, precio medio, agrupación y recuento por modelo y Funkos cuyo nombre contiene un texto.
+ * Los Funkos lanzados en un año no se calculan aquí: se consultan con FunkosServiceImpl.findByReleaseDateBetween, que usa
+ * el índice sobre la fecha de lanzamiento. El colector se puede combinar, por lo que funciona igual en un stream paralelo
+ * y conserva el orden de encuentro de los Funkos en las listas del informe.
+ */
+public final class FunkoStatistics {
+    public static final int PARALLEL_THRESHOLD = 10_000;
+
+    private FunkoStatistics() {}
+
+    /**
+     * Calcula las estadísticas de una lista de Funkos, en paralelo si tiene al menos PARALLEL_THRESHOLD elementos.
+     *
+     * @param funkos       Los Funkos a analizar.
+     * @param nameFragment El texto que se busca en los nombres.
+     * @return El informe inmutable con las estadísticas.
+     */
+    public static FunkoStatisticsReport compute(List<Funko> funkos, String nameFragment) {
+        var stream = funkos.size() >= PARALLEL_THRESHOLD ? funkos.parallelStream() : funkos.stream();
+        return stream.collect(collector(nameFragment));
+    }
+
+    /**
+     * Crea el colector que calcula todas las estadísticas en una sola pasada.
+     *
+     * @param nameFragment El texto que se busca en los nombres.
+     * @return El colector de estadísticas.
+     */
+    public static Collector<Funko, ?, FunkoStatisticsReport> collector(String nameFragment) {
+        return Collector.of(
+                () -> new Acumulador(nameFragment),
+                Acumulador::add,
+                Acumulador::combine,
+                Acumulador::toReport);
+    }
+
+    /**
+     * Estado parcial del colector. Cada hilo de un stream paralelo trabaja con el suyo y después se combinan.
+     */
+    private static final class Acumulador {
+        private final String nameFragment;
+        private final Map<Model, List<Funko>> porModelo = new EnumMap<>(Model.class);
+        private final List<Funko> conNombre = new ArrayList<>();
+        private long count = 0;
+        private double suma = 0;
+        private double max = Double.NEGATIVE_INFINITY;
+        private Funko masCaro = null;
+
+        Acumulador(String nameFragment) {
+            this.nameFragment = nameFragment;
+        }
+
+        void add(Funko funko) {
+            double precio = funko.getPrice();
+            count++;
+            suma += precio;
+            if (masCaro == null || precio > max) {
+                max = precio;
+                masCaro = funko;
+            }
+            porModelo.computeIfAbsent(funko.getModel(), m -> new ArrayList<>()).add(funko);
+            if (funko.getName() != null && funko.getName().contains(nameFragment)) {
+                conNombre.add(funko);
+            }
+        }
+
+        Acumulador combine(Acumulador otro) {
+            count += otro.count;
+            suma += otro.suma;
+            // Ante un empate se queda el de la izquierda, que es el primero en orden de encuentro
+            if (otro.masCaro != null && (masCaro == null || otro.max > max)) {
+                max = otro.max;
+                masCaro = otro.masCaro;
+            }
+            otro.porModelo.forEach((modelo, lista) -> porModelo.computeIfAbsent(modelo, m -> new ArrayList<>()).addAll(lista));
+            conNombre.addAll(otro.conNombre);
+            return this;
+        }
+
+        FunkoStatisticsReport toReport() {
+            Map<Model, List<Funko>> grupos = new EnumMap<>(Model.class);
+            Map<Model, Long> recuento = new EnumMap<>(Model.class);
+            porModelo.forEach((modelo, lista) -> {
+                grupos.put(modelo, List.copyOf(lista));
+                recuento.put(modelo, (long) lista.size());
+            });
+            return new FunkoStatisticsReport(
+                    count,
+                    count == 0 ? 0.0 : max,
+                    Optional.ofNullable(masCaro),
+                    count == 0 ? 0.0 : suma / count,
+                    Collections.unmodifiableMap(grupos),
+                    Collections.unmodifiableMap(recuento),
+                    nameFragment,
+                    List.copyOf(conNombre));
+        }
+    }
+}
@@ -1,11 +1,121 @@
 package develop.services.funkos;
 
+import develop.exceptions.storage.RutaInvalidaException;
+import develop.models.ExportMark;
 import develop.models.Funko;
+import develop.models.FunkoDelta;
+import develop.models.ShardManifest;
 import develop.services.storage.Storage;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 /**
  * La interfaz FunkoStorage extiende la interfaz Storage y proporciona métodos para almacenar y recuperar objetos Funko.
  *
  */
 public interface FunkoStorage extends Storage<Funko> {
-}
+
+    /**
+     * Exporta un delta de cambios a un archivo JSON dentro de la carpeta de datos.
+     *
+     * @param delta El delta con los Funkos modificados y borrados.
+     * @param file  El nombre del archivo JSON de destino.
+     * @return Un CompletableFuture que representa la operación de exportación del delta.
+     * @throws RutaInvalidaException Si la ruta del archivo es inválida.
+     */
+    CompletableFuture<Void> exportDelta(FunkoDelta delta, String file) throws RutaInvalidaException;
+
+    /**
+     * Importa un delta de cambios desde un archivo JSON.
+     *
+     * @param file La ruta del archivo JSON del delta.
+     * @return Un CompletableFuture que representa la operación de importación del delta.
+     */
+    CompletableFuture<FunkoDelta> importDelta(Path file);
+
+    /**
+     * Lee la marca de la última exportación incremental guardada en la carpeta de datos.
+     *
+     * @param file El nombre del archivo de la marca.
+     * @return Un CompletableFuture con la marca guardada, o vacío si todavía no existe.
+     */
+    CompletableFuture<Optional<ExportMark>> loadMark(String file);
+
+    /**
+     * Guarda la marca de la última exportación incremental en la carpeta de datos.
+     *
+     * @param mark La marca que se va a guardar.
+     * @param file El nombre del archivo de la marca.
+     * @return Un CompletableFuture que representa la operación de guardado de la marca.
+     */
+    CompletableFuture<Void> saveMark(ExportMark mark, String file);
+
+    /**
+     * Abre un escritor en streaming para un fragmento de una exportación particionada dentro de la carpeta de datos.
+     *
+     * @param file      El nombre del archivo JSON del fragmento.
+     * @param partition La partición que contiene el fragmento.
+     * @return El escritor del fragmento, que se debe cerrar al terminar.
+     * @throws RutaInvalidaException Si la ruta del archivo es inválida.
+     * @throws IOException           Si ocurre un error al crear el archivo.
+     */
+    FunkoShardWriter openShardWriter(String file, String partition) throws RutaInvalidaException, IOException;
+
+    /**
+     * Exporta el manifiesto de una exportación particionada a un archivo JSON dentro de la carpeta de datos.
+     *
+     * @param manifest El manifiesto con los fragmentos de la exportación.
+     * @param file     El nombre del archivo JSON del manifiesto.
+     * @return Un CompletableFuture que representa la operación de exportación del manifiesto.
+     * @throws RutaInvalidaException Si la ruta del archivo es inválida.
+     */
+    CompletableFuture<Void> exportManifest(ShardManifest manifest, String file) throws RutaInvalidaException;
+
+    /**
+     * Exporta una lista de Funkos a un archivo NDJSON (JSON Lines) dentro de la carpeta de datos: un objeto compacto por línea.
+     *
+     * @param funkos La lista de Funkos a exportar.
+     * @param file   El nombre del archivo de destino, con extensión .ndjson o .jsonl.
+     * @param append Si es true, los Funkos se añaden al final del archivo en lugar de sobrescribirlo.
+     * @return Un CompletableFuture que representa la operación de exportación.
+     * @throws RutaInvalidaException Si la ruta del archivo es inválida.
+     */
+    CompletableFuture<Void> exportNdjson(List<Funko> funkos, String file, boolean append) throws RutaInvalidaException;
+
+    /**
+     * Importa en streaming todos los Funkos de un archivo NDJSON.
+     *
+     * @param file     La ruta del archivo NDJSON.
+     * @param consumer El consumidor que recibe cada Funko leído.
+     * @return Un CompletableFuture que representa la operación de importación (devuelve el número de Funkos leídos).
+     */
+    CompletableFuture<Long> importNdjson(Path file, Consumer<Funko> consumer);
+
+    /**
+     * Importa en streaming los Funkos de un archivo NDJSON cuyas líneas empiezan dentro del rango de bytes [start, end).
+     * Si start no cae al principio de una línea, se descarta hasta el siguiente salto de línea, por lo que varios rangos
+     * contiguos leen cada línea exactamente una vez y se pueden procesar en paralelo.
+     *
+     * @param file     La ruta del archivo NDJSON.
+     * @param start    El byte desde el que se empieza a leer.
+     * @param end      El byte a partir del cual ya no empiezan líneas de este rango.
+     * @param consumer El consumidor que recibe cada Funko leído.
+     * @return Un CompletableFuture que representa la operación de importación (devuelve el número de Funkos leídos).
+     */
+    CompletableFuture<Long> importNdjson(Path file, long start, long end, Consumer<Funko> consumer);
+
+    /**
+     * Importa un archivo NDJSON en paralelo dividiéndolo en varios rangos de bytes.
+     *
+     * @param file     La ruta del archivo NDJSON.
+     * @param parts    El número de rangos en los que se divide el archivo.
+     * @param consumer El consumidor que recibe cada Funko leído; se llama desde varios hilos a la vez.
+     * @return Un CompletableFuture que representa la operación de importación (devuelve el número de Funkos leídos).
+     */
+    CompletableFuture<Long> importNdjsonParallel(Path file, int parts, Consumer<Funko> consumer);
+}
\ No newline at end of file
@@ -2,10 +2,16 @@ package develop.services.funkos;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
 import develop.exceptions.funkos.FunkoNoEncotradoException;
 import develop.exceptions.storage.RutaInvalidaException;
+import develop.models.ExportMark;
 import develop.models.Funko;
+import develop.models.FunkoDelta;
+import develop.models.ShardManifest;
 import develop.models.Model;
+import develop.utils.CompressionCodec;
+import develop.utils.FunkoTypeAdapter;
 import develop.utils.LocalDateAdapter;
 import develop.utils.LocalDateTimeAdapter;
 import develop.utils.UuidAdapter;
@@ -13,22 +19,38 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
 
 /**
  * La clase FunkoStorageImpl implementa la interfaz FunkoStorage y proporciona una implementación de almacenamiento y recuperación de objetos Funko en diferentes formatos.
  * Utiliza el patrón Singleton para proporcionar una única instancia de la clase.
  */
 public class FunkoStorageImpl implements FunkoStorage {
+    private static final int NDJSON_BUFFER_SIZE = 64 * 1024;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
     private final Logger logger = LoggerFactory.getLogger(FunkoStorageImpl.class);
     private static FunkoStorageImpl instance;
+    private volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private final Gson gson = crearGsonBuilder().create(); // Gson es inmutable y seguro entre hilos, se crea una sola vez
+    private final Gson gsonPretty = crearGsonBuilder().setPrettyPrinting().create();
 
     private FunkoStorageImpl() {}
 
@@ -45,7 +67,19 @@ public class FunkoStorageImpl implements FunkoStorage {
     }
 
     /**
-     * Exporta una lista de objetos Funko a un archivo JSON.
+     * Establece el nivel de compresión que se usa al escribir archivos GZIP o DEFLATE.
+     *
+     * @param compressionLevel El nivel de compresión, de 0 (sin comprimir) a 9 (máxima compresión), o -1 para el nivel por defecto.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Nivel de compresion invalido: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Exporta una lista de objetos Funko a un archivo JSON, comprimido si el nombre termina en .gz, .deflate o .lz4.
      *
      * @param funkos La lista de objetos Funko a exportar.
      * @param file   La ruta del archivo de destino en formato JSON.
@@ -55,21 +89,14 @@ public class FunkoStorageImpl implements FunkoStorage {
         return CompletableFuture.runAsync(() -> {
             try {
                 if (!validarRuta(file)) {
-                    logger.error("Ruta de fichero invalida: " + file);
+                    logger.error("Ruta de fichero invalida: {}", file);
                     throw new RutaInvalidaException("Ruta de fichero invalida: " + file);
                 } else {
-                    String appPath = System.getProperty("user.dir");
-                    String dataPath = appPath + File.separator + "data";
-                    String backupFile = dataPath + File.separator + file;
-                    Gson gson = new GsonBuilder()
-                            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-                            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
-                            .registerTypeAdapter(UUID.class, new UuidAdapter())
-                            .setPrettyPrinting()
-                            .create();
-                    String json = gson.toJson(funkos);
-                    logger.debug("Escribiendo el archivo backup: " + backupFile);
-                    Files.writeString(new File(backupFile).toPath(), json);
+                    Path backupFile = rutaData(file);
+                    logger.debug("Escribiendo el archivo backup: {}", backupFile);
+                    try (Writer writer = abrirWriter(backupFile)) {
+                        gsonPretty.toJson(funkos, writer);
+                    }
                 }
             } catch (RutaInvalidaException | IOException e) {
                 logger.error("Error al escribir el archivo backup");
@@ -78,8 +105,80 @@ public class FunkoStorageImpl implements FunkoStorage {
         });
     }
 
+    /**
+     * Obtiene la ruta de un archivo dentro de la carpeta de datos de la aplicación.
+     *
+     * @param file El nombre del archivo.
+     * @return La ruta del archivo dentro de la carpeta de datos.
+     */
+    private Path rutaData(String file) {
+        return Paths.get(System.getProperty("user.dir"), "data", file);
+    }
+
+    /**
+     * Abre un archivo para escribir texto, comprimiendo en streaming según su extensión.
+     *
+     * @param file     La ruta del archivo.
+     * @param opciones Las opciones de apertura del archivo; sin opciones se crea o se sobrescribe.
+     * @return Un Writer con buffer sobre el archivo.
+     * @throws IOException Si ocurre un error al abrir el archivo.
+     */
+    private Writer abrirWriter(Path file, OpenOption... opciones) throws IOException {
+        CompressionCodec codec = CompressionCodec.forFile(file.toString());
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file, opciones), IO_BUFFER_SIZE);
+        try {
+            return new BufferedWriter(new OutputStreamWriter(codec.wrap(out, compressionLevel), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Abre un archivo para leer bytes, descomprimiendo en streaming según su extensión.
+     *
+     * @param file La ruta del archivo.
+     * @return Un InputStream con los datos ya descomprimidos.
+     * @throws IOException Si ocurre un error al abrir el archivo.
+     */
+    private InputStream abrirInputStream(Path file) throws IOException {
+        CompressionCodec codec = CompressionCodec.forFile(file.toString());
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE);
+        try {
+            return codec.wrap(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Abre un archivo para leer texto, descomprimiendo en streaming según su extensión.
+     *
+     * @param file La ruta del archivo.
+     * @return Un BufferedReader sobre el contenido descomprimido.
+     * @throws IOException Si ocurre un error al abrir el archivo.
+     */
+    private BufferedReader abrirReader(Path file) throws IOException {
+        return new BufferedReader(new InputStreamReader(abrirInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Crea un GsonBuilder con los adaptadores necesarios para serializar y deserializar objetos Funko.
+     * Los Funko se escriben con FunkoTypeAdapter, sin reflexión; el resto de adaptadores se usan en las marcas y deltas.
+     *
+     * @return Un GsonBuilder configurado con los adaptadores de Funko, UUID, LocalDate y LocalDateTime.
+     */
+    private static GsonBuilder crearGsonBuilder() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Funko.class, new FunkoTypeAdapter())
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapter(UUID.class, new UuidAdapter());
+    }
+
     private boolean validarRuta(String ruta) {
-        String[] partes = ruta.split("\\.");
+        String[] partes = CompressionCodec.forFile(ruta).stripExtension(ruta).split("\\.");
         if(partes.length > 1 && partes[partes.length - 1].equalsIgnoreCase("json")) {
             return true;
         } else {
@@ -87,29 +186,386 @@ public class FunkoStorageImpl implements FunkoStorage {
         }
     }
 
+    private boolean validarRutaNdjson(String ruta) {
+        ruta = CompressionCodec.forFile(ruta).stripExtension(ruta);
+        String extension = ruta.substring(ruta.lastIndexOf('.') + 1);
+        return ruta.contains(".") && (extension.equalsIgnoreCase("ndjson") || extension.equalsIgnoreCase("jsonl"));
+    }
+
     /**
-     * Importa una lista de objetos Funko desde un archivo CSV.
+     * Importa una lista de objetos Funko desde el archivo CSV de la carpeta de datos.
      *
      * @return Un CompletableFuture que representa la operación de importación de objetos Funko desde un archivo CSV.
      */
     @Override
     public CompletableFuture<List<Funko>> importCsv() throws IOException {
-        return CompletableFuture.supplyAsync(() -> {
-            String appPath = System.getProperty("user.dir");
-            String dataPath = "data" + File.separator + "funkos.csv";
-            Path filePath = Paths.get(appPath + File.separator + dataPath);
+        return importCsv(rutaData("funkos.csv"));
+    }
 
-            logger.debug("Leyendo el archivo: " + filePath.toString());
+    /**
+     * Importa una lista de objetos Funko desde un archivo CSV, descomprimiéndolo si el nombre termina en .gz, .deflate o .lz4.
+     *
+     * @param filePath La ruta del archivo CSV.
+     * @return Un CompletableFuture que representa la operación de importación de objetos Funko desde un archivo CSV.
+     */
+    @Override
+    public CompletableFuture<List<Funko>> importCsv(Path filePath) {
+        return CompletableFuture.supplyAsync(() -> {
+            logger.debug("Leyendo el archivo: {}", filePath);
 
-            try(BufferedReader reader = new BufferedReader(new FileReader(filePath.toString()))){
+            try(BufferedReader reader = abrirReader(filePath)){
                 return reader.lines().skip(1).map(lines -> Funko.getFunko(lines)).toList();
-            } catch (FileNotFoundException e) {
-                logger.error("No se encontro el archivo: " + filePath.toString());
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                logger.error("No se encontro el archivo: {}", filePath);
+                throw new RuntimeException(e);
+            } catch (IOException e) {
+                logger.error("Error al leer el archivo: {}", filePath);
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Importa objetos Funko desde un archivo JSON leyendo el array en streaming con un JsonReader.
+     * Cada Funko se entrega al consumidor en cuanto se lee, por lo que la memoria usada no depende del tamaño del archivo.
+     *
+     * @param file     La ruta del archivo JSON de origen.
+     * @param consumer El consumidor que recibe cada Funko leído.
+     * @return Un CompletableFuture que representa la operación de importación (devuelve el número de Funkos leídos).
+     */
+    @Override
+    public CompletableFuture<Long> importJson(Path file, Consumer<Funko> consumer) {
+        return CompletableFuture.supplyAsync(() -> {
+            logger.debug("Leyendo el archivo JSON: {}", file);
+            long leidos = 0;
+            try (JsonReader reader = new JsonReader(abrirReader(file))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Funko funko = gson.fromJson(reader, Funko.class);
+                    consumer.accept(funko);
+                    leidos++;
+                }
+                reader.endArray();
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                logger.error("No se encontro el archivo: {}", file);
+                throw new RuntimeException(e);
+            } catch (IOException e) {
+                logger.error("Error al leer el archivo: {}", file);
+                throw new RuntimeException(e);
+            }
+            return leidos;
+        });
+    }
+
+    /**
+     * Exporta un delta de cambios a un archivo JSON dentro de la carpeta de datos.
+     *
+     * @param delta El delta con los Funkos modificados y borrados.
+     * @param file  El nombre del archivo JSON de destino.
+     * @return Un CompletableFuture que representa la operación de exportación del delta.
+     */
+    @Override
+    public CompletableFuture<Void> exportDelta(FunkoDelta delta, String file) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (!validarRuta(file)) {
+                    logger.error("Ruta de fichero invalida: {}", file);
+                    throw new RutaInvalidaException("Ruta de fichero invalida: " + file);
+                }
+                Path deltaFile = rutaData(file);
+                logger.debug("Escribiendo el archivo delta: {}", deltaFile);
+                try (Writer writer = abrirWriter(deltaFile)) {
+                    gsonPretty.toJson(delta, writer);
+                }
+            } catch (RutaInvalidaException | IOException e) {
+                logger.error("Error al escribir el archivo delta");
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Importa un delta de cambios desde un archivo JSON.
+     *
+     * @param file La ruta del archivo JSON del delta.
+     * @return Un CompletableFuture que representa la operación de importación del delta.
+     */
+    @Override
+    public CompletableFuture<FunkoDelta> importDelta(Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            logger.debug("Leyendo el archivo delta: {}", file);
+            try (Reader reader = abrirReader(file)) {
+                return gson.fromJson(reader, FunkoDelta.class);
+            } catch (IOException e) {
+                logger.error("Error al leer el archivo delta: {}", file);
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Lee la marca de la última exportación incremental guardada en la carpeta de datos.
+     *
+     * @param file El nombre del archivo de la marca.
+     * @return Un CompletableFuture con la marca guardada, o vacío si todavía no existe.
+     */
+    @Override
+    public CompletableFuture<Optional<ExportMark>> loadMark(String file) {
+        return CompletableFuture.supplyAsync(() -> {
+            Path markFile = rutaData(file);
+            if (!Files.exists(markFile)) {
+                return Optional.empty();
+            }
+            try (Reader reader = Files.newBufferedReader(markFile)) {
+                return Optional.ofNullable(gson.fromJson(reader, ExportMark.class));
+            } catch (IOException e) {
+                logger.error("Error al leer la marca de exportacion: {}", markFile);
                 throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Guarda la marca de la última exportación incremental en la carpeta de datos.
+     * Se escribe primero en un archivo temporal y despues se renombra, para no dejar nunca una marca a medias.
+     *
+     * @param mark La marca que se va a guardar.
+     * @param file El nombre del archivo de la marca.
+     * @return Un CompletableFuture que representa la operación de guardado de la marca.
+     */
+    @Override
+    public CompletableFuture<Void> saveMark(ExportMark mark, String file) {
+        return CompletableFuture.runAsync(() -> {
+            Path markFile = rutaData(file);
+            Path tmpFile = rutaData(file + ".tmp");
+            try {
+                Files.writeString(tmpFile, gson.toJson(mark));
+                Files.move(tmpFile, markFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
             } catch (IOException e) {
-                logger.error("Error al leer el archivo: " + filePath.toString());
+                logger.error("Error al guardar la marca de exportacion: {}", markFile);
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Abre un escritor en streaming para un fragmento de una exportación particionada dentro de la carpeta de datos.
+     *
+     * @param file      El nombre del archivo JSON del fragmento.
+     * @param partition La partición que contiene el fragmento.
+     * @return El escritor del fragmento, que se debe cerrar al terminar.
+     * @throws RutaInvalidaException Si la ruta del archivo es inválida.
+     * @throws IOException           Si ocurre un error al crear el archivo.
+     */
+    @Override
+    public FunkoShardWriter openShardWriter(String file, String partition) throws RutaInvalidaException, IOException {
+        if (!validarRuta(file)) {
+            logger.error("Ruta de fichero invalida: {}", file);
+            throw new RutaInvalidaException("Ruta de fichero invalida: " + file);
+        }
+        Path shardFile = rutaData(file);
+        logger.debug("Escribiendo el fragmento {} en: {}", partition, shardFile);
+        return new FunkoShardWriter(shardFile, partition, gson, CompressionCodec.forFile(file), compressionLevel);
+    }
+
+    /**
+     * Exporta el manifiesto de una exportación particionada a un archivo JSON dentro de la carpeta de datos.
+     *
+     * @param manifest El manifiesto con los fragmentos de la exportación.
+     * @param file     El nombre del archivo JSON del manifiesto.
+     * @return Un CompletableFuture que representa la operación de exportación del manifiesto.
+     */
+    @Override
+    public CompletableFuture<Void> exportManifest(ShardManifest manifest, String file) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (!validarRuta(file)) {
+                    logger.error("Ruta de fichero invalida: {}", file);
+                    throw new RutaInvalidaException("Ruta de fichero invalida: " + file);
+                }
+                Path manifestFile = rutaData(file);
+                logger.debug("Escribiendo el manifiesto: {}", manifestFile);
+                Files.writeString(manifestFile, gsonPretty.toJson(manifest));
+            } catch (RutaInvalidaException | IOException e) {
+                logger.error("Error al escribir el manifiesto");
                 throw new RuntimeException(e);
             }
         });
     }
+
+    /**
+     * Exporta una lista de Funkos a un archivo NDJSON (JSON Lines) dentro de la carpeta de datos: un objeto compacto por línea.
+     * En modo append solo se escriben las líneas nuevas al final del archivo, sin reescribir lo que ya contiene.
+     *
+     * @param funkos La lista de Funkos a exportar.
+     * @param file   El nombre del archivo de destino, con extensión .ndjson o .jsonl.
+     * @param append Si es true, los Funkos se añaden al final del archivo en lugar de sobrescribirlo.
+     * @return Un CompletableFuture que representa la operación de exportación.
+     */
+    @Override
+    public CompletableFuture<Void> exportNdjson(List<Funko> funkos, String file, boolean append) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (!validarRutaNdjson(file)) {
+                    logger.error("Ruta de fichero invalida: {}", file);
+                    throw new RutaInvalidaException("Ruta de fichero invalida: " + file);
+                }
+                Path ndjsonFile = rutaData(file);
+                if (append && !CompressionCodec.forFile(file).supportsAppend()) {
+                    logger.error("El formato de compresion no admite añadir datos: {}", file);
+                    throw new RutaInvalidaException("El formato de compresion no admite añadir datos: " + file);
+                }
+                logger.debug("{} {} funkos en el archivo NDJSON: {}", append ? "Añadiendo" : "Escribiendo", funkos.size(), ndjsonFile);
+                StandardOpenOption modo = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+                try (Writer writer = abrirWriter(ndjsonFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, modo)) {
+                    for (Funko funko : funkos) {
+                        gson.toJson(funko, Funko.class, writer);
+                        writer.write('\n');
+                    }
+                }
+            } catch (RutaInvalidaException | IOException e) {
+                logger.error("Error al escribir el archivo NDJSON");
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Importa en streaming todos los Funkos de un archivo NDJSON.
+     *
+     * @param file     La ruta del archivo NDJSON.
+     * @param consumer El consumidor que recibe cada Funko leído.
+     * @return Un CompletableFuture que representa la operación de importación (devuelve el número de Funkos leídos).
+     */
+    @Override
+    public CompletableFuture<Long> importNdjson(Path file, Consumer<Funko> consumer) {
+        return importNdjson(file, 0, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Importa en streaming los Funkos de un archivo NDJSON cuyas líneas empiezan dentro del rango de bytes [start, end).
+     *
+     * @param file     La ruta del archivo NDJSON.
+     * @param start    El byte desde el que se empieza a leer.
+     * @param end      El byte a partir del cual ya no empiezan líneas de este rango.
+     * @param consumer El consumidor que recibe cada Funko leído.
+     * @return Un CompletableFuture que representa la operación de importación (devuelve el número de Funkos leídos).
+     */
+    @Override
+    public CompletableFuture<Long> importNdjson(Path file, long start, long end, Consumer<Funko> consumer) {
+        if (start > 0 && CompressionCodec.forFile(file.toString()) != CompressionCodec.NONE) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Los archivos comprimidos no se pueden leer por rangos: " + file));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            logger.debug("Leyendo el archivo NDJSON {} desde el byte {} hasta el byte {}", file, start, end);
+            try {
+                return leerNdjson(file, start, end, consumer);
+            } catch (IOException e) {
+                logger.error("Error al leer el archivo NDJSON: {}", file);
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Importa un archivo NDJSON en paralelo dividiéndolo en varios rangos de bytes del mismo tamaño.
+     *
+     * @param file     La ruta del archivo NDJSON.
+     * @param parts    El número de rangos en los que se divide el archivo.
+     * @param consumer El consumidor que recibe cada Funko leído; se llama desde varios hilos a la vez.
+     * @return Un CompletableFuture que representa la operación de importación (devuelve el número de Funkos leídos).
+     */
+    @Override
+    public CompletableFuture<Long> importNdjsonParallel(Path file, int parts, Consumer<Funko> consumer) {
+        if (CompressionCodec.forFile(file.toString()) != CompressionCodec.NONE) {
+            logger.debug("El archivo {} esta comprimido, se lee de forma secuencial", file);
+            return importNdjson(file, consumer);
+        }
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            logger.error("Error al leer el archivo NDJSON: {}", file);
+            return CompletableFuture.failedFuture(e);
+        }
+        long tamanoRango = Math.max(1, (size + parts - 1) / parts);
+        List<CompletableFuture<Long>> rangos = new ArrayList<>();
+        for (long inicio = 0; inicio < size; inicio += tamanoRango) {
+            rangos.add(importNdjson(file, inicio, Math.min(inicio + tamanoRango, size), consumer));
+        }
+        return CompletableFuture.allOf(rangos.toArray(CompletableFuture[]::new))
+                .thenApply(v -> rangos.stream().mapToLong(CompletableFuture::join).sum());
+    }
+
+    /**
+     * Lee las líneas de un archivo NDJSON que empiezan dentro de [start, end) y entrega cada Funko al consumidor.
+     * Si start es mayor que 0 se resincroniza descartando bytes hasta el siguiente salto de línea, leyendo desde start - 1
+     * para no perder una línea que empiece justo en start. La última línea del rango se lee completa aunque termine despues de end.
+     *
+     * @param file     La ruta del archivo NDJSON.
+     * @param start    El byte desde el que se empieza a leer.
+     * @param end      El byte a partir del cual ya no empiezan líneas de este rango.
+     * @param consumer El consumidor que recibe cada Funko leído.
+     * @return El número de Funkos leídos.
+     * @throws IOException Si ocurre un error al leer el archivo.
+     */
+    private long leerNdjson(Path file, long start, long end, Consumer<Funko> consumer) throws IOException {
+        long leidos = 0;
+        // Los archivos comprimidos no admiten posicionarse, pero solo se leen completos (start = 0)
+        try (InputStream in = CompressionCodec.forFile(file.toString()) == CompressionCodec.NONE
+                ? Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ).position(Math.max(0, start - 1)))
+                : abrirInputStream(file)
+        ) {
+            byte[] buffer = new byte[NDJSON_BUFFER_SIZE];
+            ByteArrayOutputStream linea = new ByteArrayOutputStream(256);
+            long posicion = Math.max(0, start - 1);
+            boolean sincronizado = start == 0;
+            long inicioLinea = start == 0 ? 0 : -1;
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                int desde = 0;
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] != '\n') {
+                        continue;
+                    }
+                    if (sincronizado) {
+                        linea.write(buffer, desde, i - desde);
+                        leidos += entregarLinea(gson, linea, consumer);
+                    }
+                    sincronizado = true;
+                    inicioLinea = posicion + i + 1;
+                    desde = i + 1;
+                    if (inicioLinea >= end) {
+                        return leidos;
+                    }
+                }
+                if (sincronizado) {
+                    linea.write(buffer, desde, n - desde);
+                }
+                posicion += n;
+            }
+            if (sincronizado && inicioLinea < end) {
+                leidos += entregarLinea(gson, linea, consumer); // Ultima linea sin salto de linea final
+            }
+        }
+        return leidos;
+    }
+
+    /**
+     * Convierte una línea NDJSON en un Funko y se lo entrega al consumidor. Las líneas en blanco se ignoran.
+     *
+     * @param gson     El Gson configurado para deserializar objetos Funko.
+     * @param linea    Los bytes de la línea, que se vacían al terminar.
+     * @param consumer El consumidor que recibe el Funko.
+     * @return 1 si la línea contenía un Funko, 0 si estaba en blanco.
+     */
+    private int entregarLinea(Gson gson, ByteArrayOutputStream linea, Consumer<Funko> consumer) {
+        String json = linea.toString(StandardCharsets.UTF_8).trim();
+        linea.reset();
+        if (json.isEmpty()) {
+            return 0;
+        }
+        consumer.accept(gson.fromJson(json, Funko.class));
+        return 1;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,316 @@
+package develop.services.funkos;
+
+import develop.models.Funko;
+import develop.models.WriteBehindStats;
+import develop.repositories.funkos.FunkosRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * La clase FunkoWriteBehind es una cola de escritura diferida de actualizaciones de Funkos. Las actualizaciones se guardan
+ * por ID, de modo que si un Funko se actualiza varias veces antes de escribirse solo se escribe la última, y un hilo en segundo
+ * plano las escribe con FunkosRepository.updateAll en batches de como mucho {@code batchSize} Funkos. Se escribe en cuanto hay
+ * {@code batchSize} Funkos pendientes y, como muy tarde, cada {@code maxLag}, por lo que ninguna actualización espera más que eso
+ * (más lo que tarde la escritura). Al cerrar la cola se escribe lo pendiente.
+ * <p>
+ * La cola admite como mucho {@code capacidad} Funkos distintos pendientes: si está llena, enqueue espera a que se escriban.
+ * Si falla un batch, sus Funkos se reintentan de uno en uno para que un Funko que no se puede escribir no impida escribir
+ * los demás; los que vuelven a fallar no se reencolan, se avisan con {@code alRechazar}. Así la cola no crece sin límite
+ * ni reintenta para siempre lo que nunca se podrá escribir.
+ * <p>
+ * Cada Funko se escribe con la versión con la que se encoló. Si al escribir otro proceso lo ha modificado o borrado, no se escribe
+ * y se avisa con {@code alRechazar}; los que se escriben se avisan con {@code alEscribir} con su nueva versión.
+ * Dentro de la cola gana la última actualización: la cola recuerda la última versión que ha escrito de cada Funko, y si se
+ * encola un Funko con una versión anterior a esa (por ejemplo, el mismo objeto que se actualizó antes) se pasa a la versión
+ * escrita para que no se tome como un conflicto. Si otro proceso lo ha modificado después, la escritura sigue siendo un conflicto.
+ */
+public class FunkoWriteBehind implements Closeable {
+    private final Logger logger = LoggerFactory.getLogger(FunkoWriteBehind.class);
+    private final FunkosRepository repository;
+    private final int batchSize;
+    private final int capacidad;
+    private final Consumer<Funko> alEscribir;
+    private final Consumer<Funko> alRechazar;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushPedido = new AtomicBoolean(false);
+    private final Map<Long, Funko> pendientes = new LinkedHashMap<>();
+    private final Map<Long, Long> versionesEscritas = new HashMap<>(); // Ultima version escrita por la cola de cada funko
+    private long primeraPendiente = 0; // Instante en nanos en que se encolo el funko pendiente mas antiguo
+    private boolean cerrada = false;
+    private int maxQueueDepth = 0;
+    private long enqueued = 0;
+    private long coalesced = 0;
+    private long flushed = 0;
+    private long batches = 0;
+    private long conflicts = 0;
+    private long failures = 0;
+    private long blocked = 0;
+
+    /**
+     * Crea la cola y empieza a escribir periódicamente en un hilo en segundo plano.
+     *
+     * @param repository El repositorio donde se escriben los Funkos.
+     * @param batchSize  El número de Funkos pendientes a partir del que se escribe, y el tamaño máximo de cada batch.
+     * @param capacidad  El número máximo de Funkos pendientes; no puede ser menor que batchSize.
+     * @param maxLag     El tiempo máximo que espera una actualización antes de escribirse.
+     * @param alEscribir Acción que recibe cada Funko escrito, ya con su nueva versión. Se ejecuta en el hilo que escribe.
+     * @param alRechazar Acción que recibe cada Funko que no se ha escrito por no existir, tener otra versión o fallar al escribirlo.
+     */
+    public FunkoWriteBehind(FunkosRepository repository, int batchSize, int capacidad, Duration maxLag, Consumer<Funko> alEscribir, Consumer<Funko> alRechazar) {
+        if (batchSize <= 0 || maxLag.isNegative() || maxLag.isZero()) {
+            throw new IllegalArgumentException("El tamaño del batch y el retraso maximo deben ser positivos");
+        }
+        if (capacidad < batchSize) {
+            throw new IllegalArgumentException("La capacidad de la cola no puede ser menor que el tamaño del batch");
+        }
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.capacidad = capacidad;
+        this.alEscribir = alEscribir;
+        this.alRechazar = alRechazar;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "funko-write-behind");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long periodo = maxLag.toMillis();
+        this.flusher.scheduleAtFixedRate(this::flushSeguro, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Encola la actualización de un Funko, sustituyendo a la que hubiera pendiente del mismo Funko. Se encola una copia,
+     * así que modificar después el Funko no cambia lo que se escribe. Si la versión del Funko es anterior a la última que
+     * ha escrito la cola, se encola con la versión escrita. Si la cola está llena y el Funko no está ya pendiente,
+     * espera a que se escriba lo pendiente.
+     *
+     * @param funko El Funko con los datos nuevos y la versión que se leyó.
+     * @throws IllegalStateException Si la cola está cerrada.
+     * @throws InterruptedException  Si se interrumpe la espera con la cola llena.
+     */
+    public void enqueue(Funko funko) throws InterruptedException {
+        boolean lleno;
+        synchronized (pendientes) {
+            if (pendientes.size() >= capacidad && !pendientes.containsKey(funko.getId()) && !cerrada) {
+                blocked++;
+                pedirFlush();
+                while (pendientes.size() >= capacidad && !pendientes.containsKey(funko.getId()) && !cerrada) {
+                    pendientes.wait();
+                }
+            }
+            if (cerrada) {
+                throw new IllegalStateException("La cola de escritura diferida esta cerrada");
+            }
+            if (pendientes.isEmpty()) {
+                primeraPendiente = System.nanoTime();
+            }
+            Funko copia = funko.copy();
+            Long escrita = versionesEscritas.get(funko.getId());
+            if (escrita != null && copia.getVersion() < escrita) {
+                copia.setVersion(escrita);
+            }
+            if (pendientes.put(funko.getId(), copia) != null) {
+                coalesced++;
+            }
+            enqueued++;
+            maxQueueDepth = Math.max(maxQueueDepth, pendientes.size());
+            lleno = pendientes.size() >= batchSize;
+        }
+        if (lleno) {
+            pedirFlush();
+        }
+    }
+
+    /**
+     * Obtiene la actualización pendiente de un Funko, para que las lecturas vean lo que aún no se ha escrito.
+     *
+     * @param id El ID del Funko.
+     * @return Una copia del Funko pendiente de escribir, si lo hay.
+     */
+    public Optional<Funko> pending(long id) {
+        synchronized (pendientes) {
+            return Optional.ofNullable(pendientes.get(id)).map(Funko::copy);
+        }
+    }
+
+    /**
+     * Descarta la actualización pendiente de un Funko, por ejemplo porque se ha borrado.
+     *
+     * @param id El ID del Funko.
+     * @return true si había una actualización pendiente.
+     */
+    public boolean discard(long id) {
+        synchronized (pendientes) {
+            boolean descartada = pendientes.remove(id) != null;
+            versionesEscritas.remove(id);
+            pendientes.notifyAll();
+            return descartada;
+        }
+    }
+
+    /**
+     * Descarta todas las actualizaciones pendientes.
+     */
+    public void discardAll() {
+        synchronized (pendientes) {
+            pendientes.clear();
+            versionesEscritas.clear();
+            pendientes.notifyAll();
+        }
+    }
+
+    /**
+     * Escribe ahora todas las actualizaciones pendientes, en batches de como mucho {@code batchSize} Funkos.
+     * Si falla un batch, sus Funkos se reintentan de uno en uno y los que vuelven a fallar se rechazan.
+     *
+     * @return El número de Funkos escritos.
+     */
+    public synchronized int flush() {
+        List<Funko> lote;
+        synchronized (pendientes) {
+            if (pendientes.isEmpty()) {
+                return 0;
+            }
+            lote = new ArrayList<>(pendientes.values());
+            pendientes.clear();
+            pendientes.notifyAll();
+        }
+        logger.debug("Escribiendo {} funkos pendientes", lote.size());
+        int escritos = 0;
+        for (int desde = 0; desde < lote.size(); desde += batchSize) {
+            List<Funko> batch = lote.subList(desde, Math.min(desde + batchSize, lote.size()));
+            List<Funko> actualizados = new ArrayList<>(batch.size());
+            Set<Long> fallidos = new HashSet<>();
+            try {
+                actualizados.addAll(repository.updateAll(batch).join());
+            } catch (SQLException | CompletionException e) {
+                logger.error("Error al escribir un batch de {} funkos, se reintentan de uno en uno", batch.size(), e);
+                for (Funko funko : batch) {
+                    try {
+                        actualizados.addAll(repository.updateAll(List.of(funko)).join());
+                    } catch (SQLException | CompletionException ex) {
+                        logger.error("Error al escribir el funko con id: {}", funko.getId(), ex);
+                        fallidos.add(funko.getId());
+                    }
+                }
+            }
+            Set<Long> ids = new HashSet<>();
+            synchronized (pendientes) {
+                batches++;
+                flushed += actualizados.size();
+                failures += fallidos.size();
+                conflicts += batch.size() - actualizados.size() - fallidos.size();
+                for (Funko funko : actualizados) {
+                    ids.add(funko.getId());
+                    versionesEscritas.put(funko.getId(), funko.getVersion());
+                    Funko posterior = pendientes.get(funko.getId());
+                    if (posterior != null && posterior.getVersion() < funko.getVersion()) {
+                        posterior.setVersion(funko.getVersion());
+                    }
+                }
+                for (Funko funko : batch) {
+                    if (!ids.contains(funko.getId())) {
+                        versionesEscritas.remove(funko.getId());
+                    }
+                }
+            }
+            escritos += actualizados.size();
+            actualizados.forEach(alEscribir);
+            for (Funko funko : batch) {
+                if (!ids.contains(funko.getId())) {
+                    if (!fallidos.contains(funko.getId())) {
+                        logger.warn("Funko no escrito por no existir o haber sido modificado por otro proceso con id: {}", funko.getId());
+                    }
+                    alRechazar.accept(funko);
+                }
+            }
+        }
+        return escritos;
+    }
+
+    /**
+     * Obtiene las métricas de la cola.
+     *
+     * @return Las métricas en este momento.
+     */
+    public WriteBehindStats getStats() {
+        synchronized (pendientes) {
+            return WriteBehindStats.builder()
+                    .queueDepth(pendientes.size())
+                    .maxQueueDepth(maxQueueDepth)
+                    .oldestPendingMillis(pendientes.isEmpty() ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - primeraPendiente))
+                    .enqueued(enqueued)
+                    .coalesced(coalesced)
+                    .flushed(flushed)
+                    .batches(batches)
+                    .conflicts(conflicts)
+                    .failures(failures)
+                    .blocked(blocked)
+                    .build();
+        }
+    }
+
+    /**
+     * Deja de aceptar actualizaciones, para el hilo en segundo plano y escribe lo pendiente.
+     */
+    @Override
+    public void close() {
+        synchronized (pendientes) {
+            if (cerrada) {
+                return;
+            }
+            cerrada = true;
+            pendientes.notifyAll();
+        }
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("La escritura en segundo plano no ha terminado a tiempo");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        logger.debug("Cola de escritura diferida cerrada: {}", getStats());
+    }
+
+    /**
+     * Pide una escritura en el hilo en segundo plano, salvo que ya haya una pedida.
+     */
+    private void pedirFlush() {
+        if (flushPedido.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushPedido.set(false);
+                flushSeguro();
+            });
+        }
+    }
+
+    /**
+     * Escritura desde el hilo en segundo plano: un error no debe cancelar las siguientes escrituras programadas.
+     */
+    private void flushSeguro() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error en la escritura diferida de funkos", e);
+        }
+    }
+}
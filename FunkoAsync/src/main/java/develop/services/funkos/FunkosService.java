@@ -5,8 +5,10 @@ import develop.exceptions.funkos.FunkoNoEncotradoException;
 import develop.models.Funko;
 
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.SortedMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
@@ -94,4 +96,22 @@ public interface FunkosService {
      * @throws InterruptedException Si la ejecución se ve interrumpida.
      */
     CompletableFuture <Void> deleteAll() throws SQLException, ExecutionException, InterruptedException;
-}
\ No newline at end of file
+
+    /**
+     * Recupera los objetos Funko lanzados entre dos fechas, ordenados por fecha de lanzamiento.
+     *
+     * @param desde La primera fecha, incluida.
+     * @param hasta La última fecha, incluida.
+     * @return Un CompletableFuture que representa la operación de recuperación de los Funkos lanzados entre las fechas.
+     * @throws SQLException               Si ocurre un error de SQL.
+     */
+    CompletableFuture <List<Funko>> findByReleaseDateBetween(LocalDate desde, LocalDate hasta) throws SQLException;
+
+    /**
+     * Cuenta los objetos Funko lanzados cada año.
+     *
+     * @return Un CompletableFuture que representa la operación de recuento (un mapa ordenado del año al número de Funkos).
+     * @throws SQLException               Si ocurre un error de SQL.
+     */
+    CompletableFuture <SortedMap<Integer, Long>> countByReleaseYear() throws SQLException;
+}
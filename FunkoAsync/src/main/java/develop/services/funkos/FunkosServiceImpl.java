@@ -3,27 +3,59 @@ package develop.services.funkos;
 import develop.exceptions.funkos.FunkoNoAlmacenadoException;
 import develop.exceptions.funkos.FunkoNoEncotradoException;
 import develop.exceptions.storage.RutaInvalidaException;
+import develop.models.ExportMark;
 import develop.models.Funko;
+import develop.models.FunkoChange;
+import develop.models.FunkoCompact;
+import develop.models.FunkoDelta;
+import develop.models.FunkoQuery;
+import develop.models.FunkoSummary;
+import develop.models.ImportReport;
+import develop.models.Model;
+import develop.models.ShardInfo;
+import develop.models.ShardManifest;
+import develop.models.WriteBehindStats;
+import develop.repositories.funkos.FunkoProjection;
+import develop.repositories.funkos.FunkoTransaction;
 import develop.repositories.funkos.FunkosRepository;
+import develop.utils.CompressionCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.SortedMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 
 /**
  * La clase FunkosServiceImpl implementa la interfaz FunkosService para la gestión de objetos Funko.
  */
 public class FunkosServiceImpl implements FunkosService {
+    private static final int RESTORE_BATCH_SIZE = 500;
+    private static final int CHANGE_FEED_BATCH_SIZE = 500;
+    private static final int WRITE_BEHIND_CAPACITY_BATCHES = 4; // La cola admite como mucho este numero de batches pendientes
+    private static final String EXPORT_MARK_FILE = "funkos.mark.json";
     private static FunkosServiceImpl instance;
     private final FunkoCache cache;
     private final Logger logger = LoggerFactory.getLogger(FunkosServiceImpl.class);
     private final FunkosRepository funkosRepository;
     private final FunkoStorage funkoStorage;
+    private final List<FunkoChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile FunkoWriteBehind writeBehind;
+    private Thread writeBehindHook;
+    private volatile long exportedSeq = -1; // Secuencia de la marca de la exportacion incremental, -1 si no se ha leido
+    private volatile FunkoChangeFeed changeFeed;
 
     /**
      * Constructor privado de FunkosServiceImpl.
@@ -53,6 +85,137 @@ public class FunkosServiceImpl implements FunkosService {
         return instance;
     }
 
+    /**
+     * Registra un oyente que recibirá los cambios que este servicio confirme en la base de datos.
+     *
+     * @param listener El oyente a registrar.
+     */
+    public void addChangeListener(FunkoChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Elimina un oyente registrado con addChangeListener.
+     *
+     * @param listener El oyente a eliminar.
+     */
+    public void removeChangeListener(FunkoChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Activa la escritura diferida de las actualizaciones: update guarda el Funko en la caché al momento y lo encola, y un
+     * hilo en segundo plano escribe las actualizaciones en batches, quedándose solo con la última de cada Funko.
+     * Los oyentes se avisan cuando la actualización se escribe. Si al escribir el Funko ya no existe o lo ha modificado
+     * otro proceso, o si falla al escribirlo, la actualización se pierde y el Funko se quita de la caché. La cola admite
+     * como mucho cuatro batches de Funkos pendientes; con la cola llena, update espera a que se escriban. Lo pendiente se
+     * escribe también si la JVM se apaga sin llamar a disableWriteBehind.
+     * <p>
+     * findById ve las actualizaciones pendientes sin escribirlas. El resto de consultas, compareAndSet, inTransaction y las
+     * exportaciones escriben antes lo pendiente, así que no devuelven datos anteriores a un update ya devuelto; un update
+     * encolado mientras se ejecutan no se ve hasta la siguiente escritura.
+     *
+     * @param batchSize El número de actualizaciones pendientes a partir del que se escribe, y el tamaño máximo de cada batch.
+     * @param maxLag    El tiempo máximo que espera una actualización antes de escribirse.
+     */
+    public synchronized void enableWriteBehind(int batchSize, Duration maxLag) {
+        if (writeBehind != null) {
+            return;
+        }
+        logger.debug("Activando la escritura diferida con batches de {} y retraso maximo de {}", batchSize, maxLag);
+        writeBehind = new FunkoWriteBehind(funkosRepository, batchSize, batchSize * WRITE_BEHIND_CAPACITY_BATCHES, maxLag, this::alEscribirDiferido, funko -> cache.remove(funko.getId()));
+        writeBehindHook = new Thread(this::disableWriteBehind, "funko-write-behind-shutdown");
+        Runtime.getRuntime().addShutdownHook(writeBehindHook);
+    }
+
+    /**
+     * Desactiva la escritura diferida, escribiendo antes las actualizaciones pendientes. Se debe llamar al apagar la aplicación.
+     */
+    public synchronized void disableWriteBehind() {
+        if (writeBehind == null) {
+            return;
+        }
+        logger.debug("Desactivando la escritura diferida");
+        if (Thread.currentThread() != writeBehindHook) {
+            Runtime.getRuntime().removeShutdownHook(writeBehindHook);
+        }
+        writeBehind.close();
+        writeBehind = null;
+        writeBehindHook = null;
+    }
+
+    /**
+     * Obtiene las métricas de la escritura diferida.
+     *
+     * @return Las métricas, o vacío si la escritura diferida no está activada.
+     */
+    public Optional<WriteBehindStats> getWriteBehindStats() {
+        FunkoWriteBehind cola = writeBehind;
+        return cola == null ? Optional.empty() : Optional.of(cola.getStats());
+    }
+
+    /**
+     * Empieza a leer los cambios de la tabla funkos que registra el trigger, para invalidar la caché y avisar a los oyentes
+     * también de los cambios hechos fuera de este servicio. Solo se entregan los cambios posteriores a la activación.
+     * Las escrituras de este servicio que ya avisan a los oyentes no se les reenvían; los borrados y los cambios de
+     * restauraciones, cargas masivas y transacciones sí, así que los oyentes pueden recibirlos dos veces.
+     * Los cambios ya leídos se borran de funkos_cambios, salvo los que aún no ha recogido la exportación incremental.
+     *
+     * @param pollInterval El tiempo entre lecturas de los cambios.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public synchronized void enableChangeFeed(Duration pollInterval) throws SQLException {
+        if (changeFeed != null) {
+            return;
+        }
+        logger.debug("Activando la lectura de cambios cada {}", pollInterval);
+        changeFeed = FunkoChangeFeed.fromNow(funkosRepository, CHANGE_FEED_BATCH_SIZE);
+        changeFeed.subscribe(FunkoChangeFeed.invalidating(cache));
+        changeFeed.subscribe(FunkoChangeFeed.forwarding(funkosRepository, cache, listeners));
+        changeFeed.purgeDelivered(this::secuenciaExportada);
+        changeFeed.start(pollInterval);
+    }
+
+    /**
+     * Deja de leer los cambios de la tabla funkos.
+     */
+    public synchronized void disableChangeFeed() {
+        if (changeFeed == null) {
+            return;
+        }
+        logger.debug("Desactivando la lectura de cambios");
+        changeFeed.close();
+        changeFeed = null;
+    }
+
+    /**
+     * Actualiza la caché y los oyentes con un Funko escrito por la escritura diferida. Si mientras se escribía se encoló
+     * otra actualización del mismo Funko, la caché se queda con esa.
+     */
+    private void alEscribirDiferido(Funko funko) {
+        FunkoWriteBehind cola = writeBehind;
+        Funko vigente = cola == null ? funko : cola.pending(funko.getId()).orElse(funko);
+        cache.put(vigente.getId(), vigente);
+        notificarUpsert(funko);
+    }
+
+    /**
+     * Escribe las actualizaciones diferidas pendientes antes de una operación que lee o escribe en la base de datos sin
+     * pasar por la cola, para que vea las actualizaciones que update ya ha devuelto y no choque con sus versiones.
+     */
+    private void escribirPendientes() {
+        FunkoWriteBehind cola = writeBehind;
+        if (cola != null) {
+            cola.flush();
+        }
+    }
+
+    private void notificarUpsert(Funko funko) {
+        for (FunkoChangeListener listener : listeners) {
+            listener.onUpsert(funko);
+        }
+    }
+
     /**
      * Obtiene una lista de todos los Funkos.
      *
@@ -64,6 +227,7 @@ public class FunkosServiceImpl implements FunkosService {
     @Override
     public CompletableFuture <List<Funko>> findAll() throws SQLException, ExecutionException, InterruptedException {
         logger.debug("Obteniendo todos los funkos");
+        escribirPendientes();
         return funkosRepository.findAll();
     }
 
@@ -79,7 +243,8 @@ public class FunkosServiceImpl implements FunkosService {
      */
     @Override
     public CompletableFuture <List<Funko>> findAllByNombre(String nombre) throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException {
-           logger.debug("Obteniendo todos los funkos con nombre: " + nombre);
+           logger.debug("Obteniendo todos los funkos con nombre: {}", nombre);
+           escribirPendientes();
            return funkosRepository.findByNombre(nombre);
     }
 
@@ -95,7 +260,15 @@ public class FunkosServiceImpl implements FunkosService {
      */
     @Override
     public CompletableFuture <Optional<Funko>> findById(long id) throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException {
-            logger.debug("Obteniendo el funko con id: " + id);
+            logger.debug("Obteniendo el funko con id: {}", id);
+            FunkoWriteBehind cola = writeBehind;
+            if (cola != null) {
+                Optional<Funko> pendiente = cola.pending(id);
+                if (pendiente.isPresent()) {
+                    logger.debug("Funko pendiente de escribir");
+                    return CompletableFuture.completedFuture(pendiente);
+                }
+            }
             CompletableFuture<Optional<Funko>> funko = cache.get(id);
             if(funko.get().isPresent()) {
                 logger.debug("Funko encontrado en cache");
@@ -106,6 +279,71 @@ public class FunkosServiceImpl implements FunkosService {
             }
     }
 
+    /**
+     * Obtiene todos los Funkos en su representación compacta e inmutable, para análisis sobre muchos Funkos en memoria.
+     *
+     * @return Un CompletableFuture que representa la lista de FunkoCompact.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public CompletableFuture<List<FunkoCompact>> findAllCompact() throws SQLException {
+        logger.debug("Obteniendo todos los funkos en formato compacto");
+        escribirPendientes();
+        return funkosRepository.findAllCompact();
+    }
+
+    /**
+     * Obtiene los Funkos con un precio dentro de un rango, ordenados de menor a mayor precio.
+     *
+     * @param min El precio mínimo, incluido.
+     * @param max El precio máximo, incluido.
+     * @return Un CompletableFuture que representa la lista de Funkos del rango.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public CompletableFuture<List<Funko>> findByPriceRange(double min, double max) throws SQLException {
+        logger.debug("Obteniendo los funkos con precio entre {} y {}", min, max);
+        escribirPendientes();
+        return funkosRepository.findByPriceRange(min, max);
+    }
+
+    /**
+     * Obtiene los Funkos que cumplen todos los criterios de una consulta, filtrados en la base de datos.
+     *
+     * @param query Los criterios de la consulta.
+     * @return Un CompletableFuture que representa la lista de Funkos que cumplen los criterios.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public CompletableFuture<List<Funko>> find(FunkoQuery query) throws SQLException {
+        logger.debug("Obteniendo los funkos de la consulta: {}", query);
+        escribirPendientes();
+        return funkosRepository.find(query);
+    }
+
+    /**
+     * Obtiene el resumen (ID, nombre, precio y modelo) de los Funkos que cumplen una consulta, sin leer el resto de columnas.
+     *
+     * @param query Los criterios de la consulta.
+     * @return Un CompletableFuture que representa la lista de resúmenes.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public CompletableFuture<List<FunkoSummary>> findSummaries(FunkoQuery query) throws SQLException {
+        logger.debug("Obteniendo el resumen de los funkos de la consulta: {}", query);
+        escribirPendientes();
+        return funkosRepository.find(query, FunkoProjection.SUMMARY);
+    }
+
+    /**
+     * Obtiene los Funkos más caros, ordenados de mayor a menor precio.
+     *
+     * @param n El número máximo de Funkos a devolver.
+     * @return Un CompletableFuture que representa la lista de los n Funkos más caros.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public CompletableFuture<List<Funko>> findTopByPrice(int n) throws SQLException {
+        logger.debug("Obteniendo los {} funkos mas caros", n);
+        escribirPendientes();
+        return funkosRepository.findTopByPrice(n);
+    }
+
     /**
      * Guarda un Funko en la base de datos y en la caché.
      *
@@ -118,14 +356,18 @@ public class FunkosServiceImpl implements FunkosService {
      */
     @Override
     public CompletableFuture <Funko> save(Funko funko) throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException {
-            logger.debug("Guardando funko "+ funko);
+            logger.debug("Guardando funko {}", funko);
             CompletableFuture<Funko> funkoGuardado = funkosRepository.save(funko);
             cache.put(funkoGuardado.get().getId(), funkoGuardado.get());
+            notificarUpsert(funkoGuardado.get());
             return funkoGuardado;
     }
 
     /**
-     * Actualiza un Funko en la base de datos y en la caché.
+     * Actualiza un Funko en la base de datos y, una vez confirmado, en la caché. La actualización solo se aplica si la
+     * versión del Funko sigue siendo la de la base de datos; si no, el CompletableFuture termina con FunkoConflictoException.
+     * Con la escritura diferida activada se devuelve el mismo Funko, sin cambiar su versión: la cola recuerda la versión que
+     * escribe de cada Funko, así que se puede volver a actualizar el mismo objeto sin que se tome como un conflicto.
      *
      * @param funko El Funko a actualizar.
      * @return Un CompletableFuture que representa el Funko actualizado.
@@ -136,9 +378,39 @@ public class FunkosServiceImpl implements FunkosService {
      */
     @Override
     public CompletableFuture<Funko> update(Funko funko) throws SQLException, FunkoNoEncotradoException, ExecutionException, InterruptedException {
-            logger.debug("Actualizando funko: " + funko);
-            cache.put(funko.getId(), funko);
-            return funkosRepository.update(funko);
+            logger.debug("Actualizando funko: {}", funko);
+            FunkoWriteBehind cola = writeBehind;
+            if (cola != null) {
+                cola.enqueue(funko);
+                // La cola puede haber pasado el funko a la version que ya escribio; si ya se ha escrito, la cache esta al dia
+                cola.pending(funko.getId()).ifPresent(encolado -> cache.put(encolado.getId(), encolado));
+                return CompletableFuture.completedFuture(funko);
+            }
+            return funkosRepository.update(funko).thenApply(actualizado -> {
+                cache.put(actualizado.getId(), actualizado);
+                notificarUpsert(actualizado);
+                return actualizado;
+            });
+    }
+
+    /**
+     * Actualiza un Funko solo si su versión en la base de datos sigue siendo la del Funko (compare-and-set) y,
+     * si se actualiza, lo guarda en la caché con su nueva versión.
+     *
+     * @param funko El Funko con los datos nuevos y la versión que se leyó.
+     * @return Un CompletableFuture que indica si se actualizó el Funko.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public CompletableFuture<Boolean> compareAndSet(Funko funko) throws SQLException {
+        logger.debug("Actualizando funko si su version es {}: {}", funko.getVersion(), funko);
+        escribirPendientes();
+        return funkosRepository.compareAndSet(funko).thenApply(actualizado -> {
+            if (actualizado) {
+                cache.put(funko.getId(), funko);
+                notificarUpsert(funko);
+            }
+            return actualizado;
+        });
     }
 
     /**
@@ -153,10 +425,15 @@ public class FunkosServiceImpl implements FunkosService {
      */
     @Override
     public CompletableFuture<Boolean> deleteById(long id) throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException {
-            logger.debug("Borrando funko con id: " + id);
+            logger.debug("Borrando funko con id: {}", id);
+            FunkoWriteBehind cola = writeBehind;
+            if (cola != null) {
+                cola.discard(id);
+            }
             CompletableFuture <Boolean> deleted = funkosRepository.deleteById(id);
             if(deleted.get()) {
                 cache.remove(id);
+                listeners.forEach(listener -> listener.onDelete(id));
             }
             return deleted;
     }
@@ -172,8 +449,73 @@ public class FunkosServiceImpl implements FunkosService {
     @Override
     public CompletableFuture <Void> deleteAll() throws SQLException, ExecutionException, InterruptedException {
             logger.debug("Borrando todos los funkos");
+            FunkoWriteBehind cola = writeBehind;
+            if (cola != null) {
+                cola.discardAll();
+            }
             cache.clear();
-            return funkosRepository.deleteAll();
+            return funkosRepository.deleteAll().thenRun(() -> listeners.forEach(FunkoChangeListener::onDeleteAll));
+    }
+
+    /**
+     * Ejecuta un conjunto de operaciones en una única transacción. La caché y los oyentes solo se actualizan después
+     * del commit, invalidando los Funkos guardados, actualizados o borrados; si la transacción se deshace no se tocan.
+     *
+     * @param work El trabajo a ejecutar con la transacción.
+     * @param <R>  El tipo del resultado del trabajo.
+     * @return Un CompletableFuture que representa el resultado del trabajo tras el commit.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public <R> CompletableFuture<R> inTransaction(FunkoTransaction.Work<R> work) throws SQLException {
+        logger.debug("Ejecutando una unidad de trabajo");
+        escribirPendientes();
+        return funkosRepository.inTransaction(tx -> {
+            tx.afterCommit(() -> aplicarCambios(tx));
+            return work.run(tx);
+        });
+    }
+
+    /**
+     * Invalida en la caché y notifica a los oyentes los cambios confirmados de una transacción.
+     * Primero los guardados y actualizados y después los borrados, por si un Funko se guardó y se borró en la misma transacción.
+     */
+    private void aplicarCambios(FunkoTransaction tx) {
+        for (Funko funko : tx.getUpserted()) {
+            cache.remove(funko.getId()).join();
+            notificarUpsert(funko);
+        }
+        for (long id : tx.getDeleted()) {
+            cache.remove(id).join();
+            listeners.forEach(listener -> listener.onDelete(id));
+        }
+    }
+
+    /**
+     * Obtiene los Funkos lanzados entre dos fechas, ordenados por fecha de lanzamiento.
+     *
+     * @param desde La primera fecha, incluida.
+     * @param hasta La última fecha, incluida.
+     * @return Un CompletableFuture que representa la lista de Funkos lanzados entre las fechas.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    @Override
+    public CompletableFuture<List<Funko>> findByReleaseDateBetween(LocalDate desde, LocalDate hasta) throws SQLException {
+        logger.debug("Obteniendo los funkos lanzados entre {} y {}", desde, hasta);
+        escribirPendientes();
+        return funkosRepository.findByReleaseDateBetween(desde, hasta);
+    }
+
+    /**
+     * Cuenta los Funkos lanzados cada año. El recuento se calcula en la base de datos.
+     *
+     * @return Un CompletableFuture que representa un mapa ordenado del año al número de Funkos.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    @Override
+    public CompletableFuture<SortedMap<Integer, Long>> countByReleaseYear() throws SQLException {
+        logger.debug("Contando los funkos lanzados cada año");
+        escribirPendientes();
+        return funkosRepository.countByReleaseYear();
     }
 
     /**
@@ -210,4 +552,377 @@ public class FunkosServiceImpl implements FunkosService {
             logger.debug("Importando funkos de archivo CSV");
             return funkoStorage.importCsv();
     }
+
+    /**
+     * Importa un archivo CSV de Funkos con la carga masiva de la base de datos, sin pasar las filas por la JVM.
+     * Las filas inválidas se escriben en el archivo hermano {@code <archivo>.rejects.csv}. Al terminar, los Funkos cargados
+     * se leen por lotes de funkos_cambios para invalidar sus entradas en la caché y avisar a los oyentes; con la lectura de
+     * cambios activa no hace falta, porque ya los entrega ella.
+     *
+     * @param file La ruta del archivo CSV sin comprimir.
+     * @return Un CompletableFuture con el informe de filas leídas, cargadas y rechazadas.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public CompletableFuture<ImportReport> importFileFast(Path file) throws SQLException {
+        logger.debug("Importando funkos de archivo CSV con carga masiva: {}", file);
+        long desde = funkosRepository.lastChangeSeq().join();
+        return funkosRepository.bulkLoadCsv(file, archivoRechazos(file)).thenApply(report -> {
+            if (changeFeed == null) {
+                avisarCargados(desde);
+            }
+            return report;
+        });
+    }
+
+    /**
+     * Invalida en la caché y avisa a los oyentes de los Funkos con cambios registrados después de una secuencia,
+     * leyéndolos por lotes para no cargar toda la carga masiva en memoria.
+     *
+     * @param desde La secuencia del último cambio anterior a la carga.
+     */
+    private void avisarCargados(long desde) {
+        try {
+            long hasta = funkosRepository.lastChangeSeq().join();
+            for (long inicio = desde; inicio < hasta; inicio += RESTORE_BATCH_SIZE) {
+                for (Funko funko : funkosRepository.findChangedBetween(inicio, Math.min(inicio + RESTORE_BATCH_SIZE, hasta)).join()) {
+                    cache.remove(funko.getId());
+                    notificarUpsert(funko);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error al leer los funkos cargados masivamente");
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Crea una ingesta de la carpeta que guarda en el repositorio de este servicio y, tras confirmar cada lote, invalida en
+     * la caché y avisa a los oyentes de los Funkos guardados; con la lectura de cambios activa no hace falta, porque ya los entrega ella.
+     *
+     * @param directory La carpeta que se vigila.
+     * @return La ingesta, que se empieza con start y se debe cerrar al terminar.
+     * @throws IOException Si ocurre un error al leer el archivo de desplazamientos.
+     */
+    public FunkoIngestService ingestService(Path directory) throws IOException {
+        return new FunkoIngestService(funkosRepository, directory, desde -> {
+            if (changeFeed == null) {
+                avisarCargados(desde);
+            }
+        });
+    }
+
+    private static Path archivoRechazos(Path file) {
+        String nombre = CompressionCodec.forFile(file.getFileName().toString()).stripExtension(file.getFileName().toString());
+        return file.resolveSibling(nombre + ".rejects.csv");
+    }
+
+    /**
+     * Importa un archivo CSV de Funkos sin abortar ante filas erróneas: las filas que no se pueden parsear, validar o guardar,
+     * y los códigos repetidos, se escriben en el archivo hermano {@code <archivo>.rejects.csv} y la importación continúa.
+     * Como en importFileFast, al terminar se avisa a la caché y a los oyentes de los Funkos guardados, salvo con la lectura
+     * de cambios activa.
+     *
+     * @param file La ruta del archivo CSV, comprimido o no.
+     * @return Un CompletableFuture con el informe de filas leídas, guardadas y rechazadas por etapa.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    public CompletableFuture<ImportReport> importFilePipeline(Path file) throws SQLException {
+        logger.debug("Importando funkos de archivo CSV tolerando errores: {}", file);
+        long desde = funkosRepository.lastChangeSeq().join();
+        return FunkoImportPipeline.importCsv(funkosRepository, file, archivoRechazos(file), RESTORE_BATCH_SIZE).thenApply(report -> {
+            if (changeFeed == null) {
+                avisarCargados(desde);
+            }
+            return report;
+        });
+    }
+
+    /**
+     * Restaura en la base de datos los Funkos de una copia de seguridad en JSON, conservando su ID, su MyId y sus marcas de tiempo.
+     * El archivo se lee en streaming y los Funkos se guardan en lotes, por lo que la memoria usada no depende del tamaño del archivo.
+     *
+     * @param file La ruta del archivo JSON de origen.
+     * @return Un CompletableFuture que representa el número de Funkos restaurados.
+     * @throws IOException Si ocurre un error de E/S.
+     */
+    public CompletableFuture<Long> importJson(Path file) throws IOException {
+        logger.debug("Restaurando funkos del archivo JSON: {}", file);
+        List<Funko> lote = new ArrayList<>(RESTORE_BATCH_SIZE);
+        return funkoStorage.importJson(file, funko -> anadirALote(lote, funko)).thenApply(leidos -> {
+            restaurarLote(lote);
+            return leidos;
+        });
+    }
+
+    /**
+     * Restaura en la base de datos los Funkos de un archivo NDJSON, conservando su ID, su MyId y sus marcas de tiempo.
+     *
+     * @param file La ruta del archivo NDJSON de origen.
+     * @return Un CompletableFuture que representa el número de Funkos restaurados.
+     */
+    public CompletableFuture<Long> importNdjson(Path file) {
+        logger.debug("Restaurando funkos del archivo NDJSON: {}", file);
+        List<Funko> lote = new ArrayList<>(RESTORE_BATCH_SIZE);
+        return funkoStorage.importNdjson(file, funko -> anadirALote(lote, funko)).thenApply(leidos -> {
+            restaurarLote(lote);
+            return leidos;
+        });
+    }
+
+    /**
+     * Exporta todos los Funkos a un archivo NDJSON, con un Funko compacto por línea.
+     *
+     * @param file El nombre del archivo de salida, con extensión .ndjson o .jsonl.
+     * @return Un CompletableFuture que representa la operación de exportación.
+     */
+    public CompletableFuture<Void> exportNdjson(String file) {
+        logger.debug("Guardando funkos en archivo NDJSON");
+        return CompletableFuture.runAsync(() -> {
+            try {
+                funkoStorage.exportNdjson(this.findAll().get(), file, false).join();
+            } catch (SQLException | ExecutionException | InterruptedException | RutaInvalidaException e) {
+                logger.error("Error al guardar los funkos en archivo NDJSON");
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Añade un Funko al lote de restauración y, si el lote está lleno, lo guarda en el repositorio.
+     *
+     * @param lote  El lote de Funkos pendientes de restaurar.
+     * @param funko El Funko a añadir.
+     */
+    private void anadirALote(List<Funko> lote, Funko funko) {
+        lote.add(funko);
+        if (lote.size() >= RESTORE_BATCH_SIZE) {
+            restaurarLote(lote);
+        }
+    }
+
+    /**
+     * Guarda un lote de Funkos restaurados en el repositorio, invalida sus entradas en la caché y vacía el lote.
+     *
+     * @param lote El lote de Funkos a restaurar.
+     */
+    private void restaurarLote(List<Funko> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        try {
+            funkosRepository.restoreAll(lote).join();
+        } catch (SQLException e) {
+            logger.error("Error al restaurar el lote de funkos");
+            throw new CompletionException(e);
+        }
+        lote.forEach(funko -> {
+            cache.remove(funko.getId());
+            notificarUpsert(funko);
+        });
+        lote.clear();
+    }
+
+    /**
+     * Exporta a un archivo JSON solo los cambios producidos desde la última exportación incremental: el estado actual de los
+     * Funkos con algún cambio en funkos_cambios después de la marca guardada y los IDs de los Funkos borrados. Al terminar
+     * se guarda la nueva marca. La primera exportación incremental, sin marca previa, incluye todos los Funkos y sirve como
+     * copia completa.
+     * <p>
+     * La marca es la secuencia de funkos_cambios, que la base de datos asigna al registrar el cambio, y solo avanza hasta el
+     * primer hueco de secuencias reciente: una transacción que aún no ha confirmado deja un hueco y sus cambios entran en la
+     * siguiente exportación en lugar de perderse. Un hueco de más de dos segundos se da por una transacción deshecha.
+     *
+     * @param file El nombre del archivo JSON del delta.
+     * @return Un CompletableFuture que representa el delta exportado.
+     */
+    public CompletableFuture<FunkoDelta> exportIncremental(String file) {
+        logger.debug("Exportando los cambios de los funkos al archivo: {}", file);
+        escribirPendientes();
+        return funkoStorage.loadMark(EXPORT_MARK_FILE).thenApply(marca -> {
+            try {
+                FunkoDelta delta;
+                if (marca.isEmpty()) {
+                    // Copia completa: la marca se calcula antes de leer, asi lo confirmado hasta ella ya esta en la lectura
+                    List<FunkoChange> primero = funkosRepository.findChangesSince(0L, 1).join();
+                    long hasta = ultimaSecuenciaConfirmada(primero.isEmpty() ? 0L : primero.get(0).seq() - 1);
+                    delta = FunkoDelta.builder()
+                            .from(ExportMark.inicial())
+                            .to(ExportMark.builder().changeSeq(hasta).build())
+                            .upserts(funkosRepository.findAll().join())
+                            .deletes(List.of())
+                            .build();
+                } else {
+                    ExportMark desde = marca.get();
+                    long hasta = ultimaSecuenciaConfirmada(desde.getChangeSeq());
+                    delta = FunkoDelta.builder()
+                            .from(desde)
+                            .to(ExportMark.builder().changeSeq(hasta).build())
+                            .upserts(funkosRepository.findChangedBetween(desde.getChangeSeq(), hasta).join())
+                            .deletes(funkosRepository.findDeletedBetween(desde.getChangeSeq(), hasta).join())
+                            .build();
+                }
+                funkoStorage.exportDelta(delta, file).join();
+                // La marca solo avanza cuando el delta ya esta escrito, asi un fallo no pierde cambios
+                funkoStorage.saveMark(delta.getTo(), EXPORT_MARK_FILE).join();
+                exportedSeq = delta.getTo().getChangeSeq();
+                purgarCambiosExportados();
+                logger.debug("Delta exportado con {} funkos modificados y {} borrados", delta.getUpserts().size(), delta.getDeletes().size());
+                return delta;
+            } catch (SQLException | RutaInvalidaException e) {
+                logger.error("Error al exportar los cambios de los funkos");
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Obtiene la secuencia de la marca de la exportación incremental, leyéndola del archivo la primera vez. Sin marca
+     * la siguiente exportación es completa y no necesita ningún cambio, por lo que devuelve Long.MAX_VALUE.
+     */
+    private long secuenciaExportada() {
+        if (exportedSeq < 0) {
+            exportedSeq = funkoStorage.loadMark(EXPORT_MARK_FILE).join().map(ExportMark::getChangeSeq).orElse(Long.MAX_VALUE);
+        }
+        return exportedSeq;
+    }
+
+    /**
+     * Borra de funkos_cambios los cambios ya exportados que tampoco necesita la lectura de cambios, si está activa.
+     */
+    private void purgarCambiosExportados() throws SQLException {
+        FunkoChangeFeed feed = changeFeed;
+        long hasta = feed == null ? exportedSeq : Math.min(exportedSeq, feed.getLastSeq());
+        funkosRepository.purgeChanges(hasta).join();
+    }
+
+    /**
+     * Obtiene la secuencia hasta la que están confirmados todos los cambios posteriores a una dada: la del último cambio
+     * antes del primer hueco. Si el cambio que sigue al hueco es de hace más de dos segundos, el hueco se da por una
+     * transacción deshecha y se salta, como hace FunkoChangeFeed.
+     *
+     * @param desde La secuencia de partida.
+     * @return La secuencia del último cambio confirmado sin huecos pendientes delante.
+     * @throws SQLException Si ocurre un error de SQL.
+     */
+    private long ultimaSecuenciaConfirmada(long desde) throws SQLException {
+        LocalDateTime huecoCaducado = LocalDateTime.now().minus(Duration.ofMillis(FunkoChangeFeed.GAP_TIMEOUT_MS));
+        long hasta = desde;
+        while (true) {
+            List<FunkoChange> cambios = funkosRepository.findChangesSince(hasta, CHANGE_FEED_BATCH_SIZE).join();
+            for (FunkoChange cambio : cambios) {
+                if (cambio.seq() != hasta + 1 && cambio.changedAt().isAfter(huecoCaducado)) {
+                    return hasta;
+                }
+                hasta = cambio.seq();
+            }
+            if (cambios.size() < CHANGE_FEED_BATCH_SIZE) {
+                return hasta;
+            }
+        }
+    }
+
+    /**
+     * Aplica sobre la base de datos un delta exportado con exportIncremental: restaura los Funkos modificados
+     * conservando sus IDs y despues borra los Funkos borrados.
+     *
+     * @param file La ruta del archivo JSON del delta.
+     * @return Un CompletableFuture que representa el delta aplicado.
+     */
+    public CompletableFuture<FunkoDelta> applyDelta(Path file) {
+        logger.debug("Aplicando el delta del archivo: {}", file);
+        return funkoStorage.importDelta(file).thenApply(delta -> {
+            for (int i = 0; i < delta.getUpserts().size(); i += RESTORE_BATCH_SIZE) {
+                List<Funko> lote = new ArrayList<>(delta.getUpserts().subList(i, Math.min(i + RESTORE_BATCH_SIZE, delta.getUpserts().size())));
+                restaurarLote(lote);
+            }
+            try {
+                for (Long id : delta.getDeletes()) {
+                    if (funkosRepository.deleteById(id).join()) {
+                        listeners.forEach(listener -> listener.onDelete(id));
+                    }
+                    cache.remove(id);
+                }
+            } catch (SQLException | FunkoNoEncotradoException e) {
+                logger.error("Error al aplicar los borrados del delta");
+                throw new CompletionException(e);
+            }
+            return delta;
+        });
+    }
+
+    /**
+     * Exporta los Funkos particionados por modelo: cada modelo se escribe en paralelo en su propio archivo
+     * (por ejemplo funkos-marvel.json) leyendo de la base de datos con su propio cursor, y al terminar se escribe
+     * un manifiesto (funkos.manifest.json) con los fragmentos, su número de Funkos y su suma SHA-256.
+     * Los fragmentos y el manifiesto se encadenan como CompletableFuture sin esperar con join dentro de otra tarea,
+     * para no ocupar hilos del pool común esperando a tareas que necesitan ese mismo pool.
+     *
+     * @param file El nombre base de la exportación, con extensión .json.
+     * @return Un CompletableFuture que representa el manifiesto de la exportación.
+     */
+    public CompletableFuture<ShardManifest> exportSharded(String file) {
+        logger.debug("Exportando los funkos particionados por modelo en: {}", file);
+        escribirPendientes();
+        String base = file.toLowerCase().endsWith(".json") ? file.substring(0, file.length() - ".json".length()) : file;
+        List<CompletableFuture<ShardInfo>> fragmentos = Arrays.stream(Model.values())
+                .map(model -> exportarFragmento(model, base + "-" + model.toString().toLowerCase() + ".json"))
+                .toList();
+        return CompletableFuture.allOf(fragmentos.toArray(CompletableFuture[]::new)).thenCompose(v -> {
+            // Todos los fragmentos ya han terminado, join no espera
+            List<ShardInfo> shards = fragmentos.stream().map(CompletableFuture::join).toList();
+            ShardManifest manifest = ShardManifest.builder()
+                    .partitionedBy("MODEL")
+                    .createdAt(LocalDateTime.now())
+                    .totalRows(shards.stream().mapToLong(ShardInfo::getRows).sum())
+                    .shards(shards)
+                    .build();
+            try {
+                return funkoStorage.exportManifest(manifest, base + ".manifest.json").thenApply(escrito -> manifest);
+            } catch (RutaInvalidaException e) {
+                logger.error("Error al escribir el manifiesto de la exportacion");
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Escribe en un archivo todos los Funkos de un modelo, leyéndolos de la base de datos en streaming.
+     * El archivo se cierra cuando termina la lectura, tanto si termina bien como si falla.
+     *
+     * @param model El modelo de los Funkos del fragmento.
+     * @param file  El nombre del archivo del fragmento.
+     * @return Un CompletableFuture con la información del fragmento escrito.
+     */
+    private CompletableFuture<ShardInfo> exportarFragmento(Model model, String file) {
+        FunkoShardWriter writer;
+        try {
+            writer = funkoStorage.openShardWriter(file, model.toString());
+        } catch (RutaInvalidaException | IOException e) {
+            logger.error("Error al crear el fragmento del modelo {}", model);
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Long> lectura;
+        try {
+            lectura = funkosRepository.forEachByModel(model, writer::write);
+        } catch (SQLException e) {
+            lectura = CompletableFuture.failedFuture(e);
+        }
+        return lectura.handle((leidos, error) -> {
+            Throwable fallo = error;
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (fallo == null) {
+                    fallo = e;
+                } else {
+                    fallo.addSuppressed(e);
+                }
+            }
+            if (fallo != null) {
+                logger.error("Error al escribir el fragmento del modelo {}", model);
+                throw fallo instanceof CompletionException completion ? completion : new CompletionException(fallo);
+            }
+            return writer.getInfo();
+        });
+    }
 }
\ No newline at end of file
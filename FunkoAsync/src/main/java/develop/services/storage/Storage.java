@@ -4,11 +4,13 @@ package develop.services.storage;
 import develop.exceptions.storage.RutaInvalidaException;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
- * La interfaz Storage proporciona métodos para exportar datos a un archivo JSON y para importar datos desde un archivo CSV.
+ * La interfaz Storage proporciona métodos para exportar datos a un archivo JSON y para importar datos desde un archivo CSV o JSON.
  *
  * @param <T> El tipo de datos que se almacena y gestiona.
  */
@@ -32,4 +34,23 @@ public interface Storage<T> {
      * @throws IOException Si ocurre un error de E/S durante la operación de importación.
      */
     CompletableFuture <List<T>> importCsv() throws IOException;
+
+    /**
+     * Importa datos desde un archivo CSV concreto y los devuelve como una lista.
+     *
+     * @param file La ruta del archivo CSV de origen.
+     * @return Un CompletableFuture que representa la operación de importación desde CSV (devuelve una lista de datos).
+     * @throws IOException Si ocurre un error de E/S durante la operación de importación.
+     */
+    CompletableFuture <List<T>> importCsv(Path file) throws IOException;
+
+    /**
+     * Importa datos desde un archivo JSON leyéndolos uno a uno en streaming, sin cargar el archivo completo en memoria.
+     *
+     * @param file     La ruta del archivo JSON de origen (un array de datos).
+     * @param consumer El consumidor que recibe cada dato según se va leyendo.
+     * @return Un CompletableFuture que representa la operación de importación desde JSON (devuelve el número de datos leídos).
+     * @throws IOException Si ocurre un error de E/S durante la operación de importación.
+     */
+    CompletableFuture<Long> importJson(Path file, Consumer<T> consumer) throws IOException;
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package develop.utils;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * El enum CompressionCodec representa los algoritmos de compresión que se pueden usar en las copias de seguridad.
+ * El algoritmo se elige por la extensión del archivo (por ejemplo funkos.json.gz) y comprime o descomprime en streaming.
+ */
+public enum CompressionCodec {
+    NONE(""),
+    GZIP(".gz"),
+    DEFLATE(".deflate"),
+    LZ4(".lz4");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final String extension;
+
+    CompressionCodec(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Obtiene el algoritmo de compresión que corresponde a la extensión de un archivo.
+     *
+     * @param file El nombre o la ruta del archivo.
+     * @return El algoritmo de compresión, o NONE si el archivo no está comprimido.
+     */
+    public static CompressionCodec forFile(String file) {
+        String nombre = file.toLowerCase();
+        for (CompressionCodec codec : values()) {
+            if (codec != NONE && nombre.endsWith(codec.extension)) {
+                return codec;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Quita la extensión de compresión de un nombre de archivo, por ejemplo funkos.json.gz pasa a funkos.json.
+     *
+     * @param file El nombre del archivo.
+     * @return El nombre del archivo sin la extensión de compresión.
+     */
+    public String stripExtension(String file) {
+        return file.substring(0, file.length() - extension.length());
+    }
+
+    /**
+     * Indica si se pueden añadir datos al final de un archivo ya comprimido con este algoritmo.
+     * GZIP y LZ4 admiten varios bloques concatenados en el mismo archivo; DEFLATE no.
+     *
+     * @return true si el algoritmo admite añadir datos al final del archivo.
+     */
+    public boolean supportsAppend() {
+        return this != DEFLATE;
+    }
+
+    /**
+     * Envuelve un flujo de salida para comprimir lo que se escriba en él.
+     *
+     * @param out   El flujo de salida con los datos comprimidos.
+     * @param level El nivel de compresión de GZIP y DEFLATE, de 0 a 9 o Deflater.DEFAULT_COMPRESSION. LZ4 lo ignora.
+     * @return El flujo de salida que comprime los datos.
+     * @throws IOException Si ocurre un error al escribir la cabecera del formato.
+     */
+    public OutputStream wrap(OutputStream out, int level) throws IOException {
+        return switch (this) {
+            case NONE -> out;
+            case GZIP -> new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+            case DEFLATE -> new DeflaterOutputStream(out, new Deflater(level), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    def.end(); // El Deflater es nuestro, asi que liberamos su memoria nativa
+                }
+            };
+            case LZ4 -> new LZ4FrameOutputStream(out);
+        };
+    }
+
+    /**
+     * Envuelve un flujo de entrada para descomprimir lo que se lea de él.
+     *
+     * @param in El flujo de entrada con los datos comprimidos.
+     * @return El flujo de entrada que devuelve los datos descomprimidos.
+     * @throws IOException Si ocurre un error al leer la cabecera del formato.
+     */
+    public InputStream wrap(InputStream in) throws IOException {
+        return switch (this) {
+            case NONE -> in;
+            case GZIP -> new GZIPInputStream(in, BUFFER_SIZE);
+            case DEFLATE -> new InflaterInputStream(in);
+            case LZ4 -> new LZ4FrameInputStream(in);
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package develop.utils;
+
+/**
+ * Clase de utilidad para escribir campos en archivos CSV.
+ */
+public final class CsvUtils {
+
+    private CsvUtils() {}
+
+    /**
+     * Escapa un campo para escribirlo en una línea CSV: si contiene comas, comillas o saltos de línea se encierra entre
+     * comillas dobles y sus comillas se duplican. Un campo nulo se escribe vacío.
+     *
+     * @param campo El valor del campo.
+     * @return El campo listo para escribirlo en la línea.
+     */
+    public static String escape(String campo) {
+        if (campo == null) {
+            return "";
+        }
+        if (campo.indexOf(',') < 0 && campo.indexOf('"') < 0 && campo.indexOf('\n') < 0 && campo.indexOf('\r') < 0) {
+            return campo;
+        }
+        return "\"" + campo.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,119 @@
+package develop.utils;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import develop.models.Funko;
+import develop.models.Model;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Clase adaptadora para la serialización y deserialización de objetos Funko en formato JSON sin usar reflexión.
+ * Los campos se escriben siempre en el mismo orden y con los mismos nombres que usaba Gson por reflexión,
+ * y los campos nulos se omiten, por lo que los archivos JSON existentes siguen siendo compatibles.
+ */
+public class FunkoTypeAdapter extends TypeAdapter<Funko> {
+
+    /**
+     * Lee un objeto JSON y lo convierte en un objeto Funko. Los campos desconocidos se ignoran.
+     *
+     * @param jsonReader El lector JSON.
+     * @return El objeto Funko deserializado.
+     * @throws IOException Si ocurre un error durante la lectura del JSON.
+     */
+    @Override
+    public Funko read(final JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
+        long id = 0;
+        UUID cod = null;
+        long myId = 0;
+        String name = null;
+        Model model = null;
+        double price = 0;
+        LocalDate releaseData = null;
+        LocalDateTime createdAt = null;
+        LocalDateTime updatedAt = null;
+        long version = 0;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String campo = jsonReader.nextName();
+            if (jsonReader.peek() == JsonToken.NULL) {
+                jsonReader.nextNull();
+                continue;
+            }
+            switch (campo) {
+                case "id" -> id = jsonReader.nextLong();
+                case "COD" -> cod = UUID.fromString(jsonReader.nextString());
+                case "myId" -> myId = jsonReader.nextLong();
+                case "name" -> name = jsonReader.nextString();
+                case "model" -> model = Model.valueOf(jsonReader.nextString());
+                case "price" -> price = jsonReader.nextDouble();
+                case "releaseData" -> releaseData = LocalDate.parse(jsonReader.nextString());
+                case "createdAt" -> createdAt = LocalDateTime.parse(jsonReader.nextString());
+                case "updatedAt" -> updatedAt = LocalDateTime.parse(jsonReader.nextString());
+                case "version" -> version = jsonReader.nextLong();
+                default -> jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        return Funko.builder()
+                .id(id)
+                .COD(cod)
+                .myId(myId)
+                .name(name)
+                .model(model)
+                .price(price)
+                .releaseData(releaseData)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .version(version)
+                .build();
+    }
+
+    /**
+     * Escribe un objeto Funko en formato JSON.
+     *
+     * @param jsonWriter El escritor JSON.
+     * @param funko El objeto Funko a serializar.
+     * @throws IOException Si ocurre un error durante la escritura del JSON.
+     */
+    @Override
+    public void write(JsonWriter jsonWriter, Funko funko) throws IOException {
+        if (funko == null) {
+            jsonWriter.nullValue();
+            return;
+        }
+        jsonWriter.beginObject();
+        jsonWriter.name("id").value(funko.getId());
+        if (funko.getCOD() != null) {
+            jsonWriter.name("COD").value(funko.getCOD().toString());
+        }
+        jsonWriter.name("myId").value(funko.getMyId());
+        if (funko.getName() != null) {
+            jsonWriter.name("name").value(funko.getName());
+        }
+        if (funko.getModel() != null) {
+            jsonWriter.name("model").value(funko.getModel().name());
+        }
+        jsonWriter.name("price").value(funko.getPrice());
+        if (funko.getReleaseData() != null) {
+            jsonWriter.name("releaseData").value(funko.getReleaseData().toString());
+        }
+        if (funko.getCreatedAt() != null) {
+            jsonWriter.name("createdAt").value(funko.getCreatedAt().toString());
+        }
+        if (funko.getUpdatedAt() != null) {
+            jsonWriter.name("updatedAt").value(funko.getUpdatedAt().toString());
+        }
+        jsonWriter.name("version").value(funko.getVersion());
+        jsonWriter.endObject();
+    }
+}
@@ -0,0 +1,41 @@
+package develop.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Clase de utilidad para registrar la duración de cada operación como un evento estructurado (pares clave-valor)
+ * en el logger {@code develop.timing}. Mientras ese logger no tenga el nivel DEBUG activado no se mide nada:
+ * {@link #start()} devuelve 0 sin leer el reloj y {@link #record(String, long, long)} no hace nada.
+ */
+public final class TimingLogger {
+    private static final Logger logger = LoggerFactory.getLogger("develop.timing");
+
+    private TimingLogger() {}
+
+    /**
+     * Marca el inicio de una operación.
+     *
+     * @return El instante de inicio en nanosegundos, o 0 si la medición está desactivada.
+     */
+    public static long start() {
+        return logger.isDebugEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Registra la duración de una operación iniciada con {@link #start()}.
+     *
+     * @param operation El nombre de la operación.
+     * @param start     El valor devuelto por {@link #start()}.
+     * @param rows      El número de filas afectadas o devueltas por la operación.
+     */
+    public static void record(String operation, long start, long rows) {
+        if (start != 0 && logger.isDebugEnabled()) {
+            logger.atDebug()
+                    .addKeyValue("op", operation)
+                    .addKeyValue("micros", (System.nanoTime() - start) / 1_000)
+                    .addKeyValue("rows", rows)
+                    .log("timing");
+        }
+    }
+}
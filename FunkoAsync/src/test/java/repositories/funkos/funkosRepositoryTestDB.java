@@ -1,39 +1,64 @@
 package repositories.funkos;
 
+import develop.exceptions.funkos.FunkoConflictoException;
 import develop.exceptions.funkos.FunkoNoAlmacenadoException;
 import develop.exceptions.funkos.FunkoNoEncotradoException;
 import develop.models.Funko;
+import develop.models.FunkoCompact;
+import develop.models.FunkoQuery;
+import develop.models.FunkoSummary;
 import develop.models.IdGenerator;
+import develop.models.ImportReport;
+import develop.models.ImportStageReport;
 import develop.models.Model;
+import develop.repositories.funkos.FunkoProjection;
+import develop.repositories.funkos.FunkoRowMapper;
 import develop.repositories.funkos.FunkosRepository;
 import develop.repositories.funkos.FunkosRepositoryImpl;
 import develop.services.database.DatabaseManager;
+import develop.services.funkos.FunkoImportPipeline;
 import lombok.Builder;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 class funkosRepositoryTestDB {
+    private static final Path CSV = Paths.get(System.getProperty("user.dir"), "data", "funkos.csv");
+    private static final Path RECHAZOS = Paths.get(System.getProperty("java.io.tmpdir"), "funkos.rejects.csv");
     private FunkosRepository funkosRepository;
 
     @BeforeEach
     void setUp() throws SQLException {
         funkosRepository = FunkosRepositoryImpl.getInstance(DatabaseManager.getInstance(), IdGenerator.getInstance());
-        funkosRepository.deleteAll();
+        funkosRepository.deleteAll().join();
     }
 
     @AfterEach
     void tearDown() throws SQLException {
-        funkosRepository.deleteAll();
+        funkosRepository.deleteAll().join();
         IdGenerator.getInstance().resetId();
     }
 
@@ -287,4 +312,575 @@ class funkosRepositoryTestDB {
         // Asserts
         assertEquals(0, foundAlumnos.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void restoreAllFunkos() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException, FunkoNoEncotradoException {
+        // Arrange
+        Funko funko1 = Funko.builder()
+                .id(100L)
+                .COD(UUID.randomUUID())
+                .myId(50L)
+                .name("Test")
+                .model(Model.OTROS)
+                .price(9.99)
+                .releaseData(LocalDate.of(2020, 1, 1))
+                .createdAt(LocalDateTime.of(2023, 1, 1, 10, 0))
+                .updatedAt(LocalDateTime.of(2023, 2, 1, 10, 0))
+                .build();
+        Funko funko2 = Funko.builder()
+                .id(101L)
+                .COD(UUID.randomUUID())
+                .myId(51L)
+                .name("Test1")
+                .model(Model.MARVEL)
+                .price(19.99)
+                .releaseData(LocalDate.of(2021, 1, 1))
+                .build();
+
+        // Act
+        int restaurados = funkosRepository.restoreAll(List.of(funko1, funko2)).get();
+        funkosRepository.restoreAll(List.of(funko1, funko2)).get(); // Restaurar dos veces no duplica los funkos
+        Optional<Funko> foundFunko = funkosRepository.findById(100L).get();
+        Funko nuevo = funkosRepository.save(Funko.builder()
+                .COD(UUID.randomUUID())
+                .name("Nuevo")
+                .model(Model.DISNEY)
+                .price(5.0)
+                .releaseData(LocalDate.of(2022, 1, 1))
+                .build()).get();
+
+        // Asserts
+        assertAll(() -> assertEquals(2, restaurados),
+                () -> assertEquals(3, funkosRepository.findAll().get().size()),
+                () -> assertTrue(foundFunko.isPresent()),
+                () -> assertEquals(funko1.getMyId(), foundFunko.get().getMyId()),
+                () -> assertEquals(funko1.getCOD(), foundFunko.get().getCOD()),
+                () -> assertEquals(funko1.getCreatedAt(), foundFunko.get().getCreatedAt()),
+                () -> assertEquals(funko1.getUpdatedAt(), foundFunko.get().getUpdatedAt()),
+                () -> assertTrue(nuevo.getId() > 101L), // El autoincremental continua despues de los IDs restaurados
+                () -> assertTrue(nuevo.getMyId() > 51L) // El IdGenerator continua despues de los MyId restaurados
+        );
+    }
+
+    @Test
+    void idGeneratorConcurrenteSinRepetidos() throws InterruptedException {
+        // Arrange
+        IdGenerator idGenerator = IdGenerator.getInstance();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Act
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    ids.add(idGenerator.getIdAndIncrement());
+                }
+            });
+        }
+        long primeroReservado = idGenerator.reserve(100);
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        // Asserts
+        assertAll(() -> assertEquals(80_000, ids.size()), // Ningun identificador se repite entre hilos
+                () -> assertTrue(ids.stream().noneMatch(id -> id >= primeroReservado && id < primeroReservado + 100)) // El rango reservado no se reparte
+        );
+    }
+
+    @Test
+    void findChangedAndDeletedBetween() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException, FunkoNoEncotradoException {
+        // Arrange
+        long seqInicial = funkosRepository.lastChangeSeq().get();
+        Funko funko1 = funkosRepository.save(Funko.builder()
+                .COD(UUID.randomUUID())
+                .name("Test")
+                .model(Model.OTROS)
+                .price(9.99)
+                .releaseData(LocalDate.of(2020, 1, 1))
+                .build()).get();
+        Funko funko2 = funkosRepository.save(Funko.builder()
+                .COD(UUID.randomUUID())
+                .name("Test1")
+                .model(Model.MARVEL)
+                .price(19.99)
+                .releaseData(LocalDate.of(2021, 1, 1))
+                .build()).get();
+
+        // Act
+        long marca = funkosRepository.lastChangeSeq().get();
+        List<Funko> todos = funkosRepository.findChangedBetween(seqInicial, marca).get();
+        funko1.setPrice(29.99);
+        funkosRepository.update(funko1).get();
+        funkosRepository.deleteById(funko2.getId()).get();
+        long ultima = funkosRepository.lastChangeSeq().get();
+        List<Funko> sinCambios = funkosRepository.findChangedBetween(ultima, ultima).get();
+        List<Funko> conCambios = funkosRepository.findChangedBetween(marca, ultima).get();
+        List<Long> borrados = funkosRepository.findDeletedBetween(marca, ultima).get();
+
+        // Asserts
+        assertAll(() -> assertEquals(2, todos.size()),
+                () -> assertEquals(0, sinCambios.size()),
+                () -> assertEquals(1, conCambios.size()),
+                () -> assertEquals(funko1.getId(), conCambios.get(0).getId()),
+                () -> assertEquals(29.99, conCambios.get(0).getPrice()),
+                () -> assertEquals(List.of(funko2.getId()), borrados),
+                () -> assertTrue(funkosRepository.findDeletedBetween(seqInicial, marca).get().isEmpty())
+        );
+    }
+
+    @Test
+    void bulkLoadCsv() throws SQLException, ExecutionException, InterruptedException, IOException {
+        // Act
+        ImportReport report = funkosRepository.bulkLoadCsv(CSV, RECHAZOS).get();
+        List<Funko> funkos = funkosRepository.findAll().get();
+        long myIdsDistintos = funkos.stream().mapToLong(Funko::getMyId).distinct().count();
+        long siguienteMyId = IdGenerator.getInstance().getIdAndIncrement();
+        List<String> lineasRechazadas = Files.readAllLines(RECHAZOS);
+
+        // Asserts: el archivo tiene 7 codigos que no son UUID completos
+        assertAll(() -> assertEquals(90, report.getRead()),
+                () -> assertEquals(83, report.getSaved()),
+                () -> assertEquals(7, report.getRejected()),
+                () -> assertEquals(83, funkos.size()),
+                () -> assertEquals(83, myIdsDistintos), // Cada funko tiene su propio MyId
+                () -> assertTrue(funkos.stream().allMatch(f -> f.getMyId() < siguienteMyId)), // El IdGenerator continua despues del rango reservado
+                () -> assertEquals(8, lineasRechazadas.size()),
+                () -> assertEquals("3,validate,Codigo invalido: f8f7ae42-5b01-4d3b-82ab-2d1a2d6e4434a,\"f8f7ae42-5b01-4d3b-82ab-2d1a2d6e4434a,Stitch Hula,DISNEY,25.99,2023-01-01\"",
+                        lineasRechazadas.get(1)), // Los codigos no se recortan
+                () -> assertTrue(funkos.stream().noneMatch(f -> f.getName().equals("Stitch Hula")))
+        );
+        Files.deleteIfExists(RECHAZOS);
+    }
+
+    @Test
+    void bulkLoadCsvRechazaFilasInvalidas() throws IOException, SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        Path csv = Files.createTempFile("funkos_bulk", ".csv");
+        Path rechazos = Files.createTempFile("funkos_bulk", ".rejects.csv");
+        UUID bueno = UUID.randomUUID();
+        Files.writeString(csv, String.join("\n",
+                "COD,NOMBRE,MODELO,PRECIO,FECHA_LANZAMIENTO",
+                bueno + ",Bueno,MARVEL,10.5,2020-01-01",
+                UUID.randomUUID() + ",Malo,DESCONOCIDO,10.5,2020-01-01",
+                UUID.randomUUID() + ",Malo,MARVEL,diez,2020-01-01",
+                UUID.randomUUID() + ",Malo,MARVEL,-1,2020-01-01",
+                UUID.randomUUID() + ",Malo,MARVEL,10.5,2023-02-30",
+                UUID.randomUUID() + ",Malo,MARVEL,10.5,01/01/2020",
+                UUID.randomUUID() + ",,MARVEL,10.5,2020-01-01",
+                UUID.randomUUID() + ",Bueno,DISNEY,5,2021-02-03"));
+
+        try {
+            // Act: una fila mala ya no hace fallar toda la carga
+            ImportReport report = funkosRepository.bulkLoadCsv(csv, rechazos).get();
+            List<String> lineasRechazadas = Files.readAllLines(rechazos);
+
+            // Asserts
+            assertAll(() -> assertEquals(8, report.getRead()),
+                    () -> assertEquals(2, report.getSaved()),
+                    () -> assertEquals(6, report.getRejected()),
+                    () -> assertEquals(List.of(bueno), funkosRepository.findAll().get().stream().map(Funko::getCOD).filter(bueno::equals).toList()),
+                    () -> assertEquals(2, funkosRepository.findAll().get().size()),
+                    () -> assertEquals(7, lineasRechazadas.size()), // Cabecera y una linea por rechazo
+                    () -> assertTrue(lineasRechazadas.get(1).startsWith("3,validate,Modelo invalido")), // Se conserva el numero de linea del archivo
+                    () -> assertTrue(lineasRechazadas.get(2).startsWith("4,validate,Precio invalido")),
+                    () -> assertTrue(lineasRechazadas.get(4).startsWith("6,validate,Fecha de lanzamiento invalida")),
+                    () -> assertTrue(lineasRechazadas.get(6).startsWith("8,validate,Nombre invalido"))
+            );
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(rechazos);
+        }
+    }
+
+    @Test
+    void saveAllFunkos() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        List<Funko> lote = List.of(
+                Funko.builder().COD(UUID.randomUUID()).name("Lote-1").model(Model.MARVEL).price(10.0).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().COD(UUID.randomUUID()).name("Lote-2").model(Model.DISNEY).price(20.0).releaseData(LocalDate.of(2021, 1, 1)).build()
+        );
+
+        // Act
+        List<Funko> guardados = funkosRepository.saveAll(lote).get();
+        List<Funko> funkos = funkosRepository.findAll().get();
+
+        // Asserts
+        assertAll(() -> assertEquals(2, guardados.size()),
+                () -> assertEquals(2, funkos.size()),
+                () -> assertNotEquals(guardados.get(0).getId(), guardados.get(1).getId()),
+                () -> assertEquals(guardados.get(0).getMyId() + 1, guardados.get(1).getMyId()),
+                () -> assertEquals("Lote-2", funkosRepository.findById(guardados.get(1).getId()).get().get().getName())
+        );
+    }
+
+    @Test
+    void importPipelineConRechazos() throws IOException {
+        // Arrange
+        UUID repetido = UUID.randomUUID();
+        Path csv = Files.createTempFile("funkos_pipeline", ".csv");
+        Path rechazos = Files.createTempFile("funkos_pipeline", ".rejects.csv");
+        Files.writeString(csv, String.join("\n",
+                "COD,NOMBRE,MODELO,PRECIO,FECHA_LANZAMIENTO",
+                repetido + ",Bueno,MARVEL,10.5,2020-01-01",
+                "no-es-un-uuid,Malo,MARVEL,10.5,2020-01-01",
+                UUID.randomUUID() + ",Malo,DESCONOCIDO,10.5,2020-01-01",
+                UUID.randomUUID() + ",Malo,MARVEL,-1,2020-01-01",
+                UUID.randomUUID() + ",Malo,MARVEL,10.5,01/01/2020",
+                "faltan,campos",
+                repetido + ",Repetido,MARVEL,10.5,2020-01-01",
+                UUID.randomUUID() + ",Bueno,DISNEY,5,2021-02-03"));
+
+        try {
+            // Act
+            ImportReport report = FunkoImportPipeline.importCsv(funkosRepository, csv, rechazos, 2).join();
+            List<String> lineasRechazadas = Files.readAllLines(rechazos);
+
+            // Asserts
+            assertAll(() -> assertEquals(8, report.getRead()),
+                    () -> assertEquals(2, report.getSaved()),
+                    () -> assertEquals(6, report.getRejected()),
+                    () -> assertEquals(2, funkosRepository.findAll().get().size()),
+                    () -> assertEquals(7, lineasRechazadas.size()), // Cabecera y una linea por rechazo
+                    () -> assertTrue(lineasRechazadas.get(1).startsWith("3,validate,")), // Se conserva el numero de linea del archivo
+                    () -> assertEquals("7,parse,Se esperaban 5 campos y hay 2,\"faltan,campos\"", lineasRechazadas.get(5)), // La linea original se escapa como un campo
+                    () -> assertTrue(lineasRechazadas.get(6).startsWith("8,dedupe,")),
+                    () -> assertEquals(List.of(8L, 7L, 3L, 2L), report.getStages().stream().map(ImportStageReport::getIn).toList())
+            );
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(rechazos);
+        }
+    }
+
+    @Test
+    void findAllCompact() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        funkosRepository.bulkLoadCsv(CSV, RECHAZOS).get();
+
+        // Act
+        List<Funko> funkos = funkosRepository.findAll().get();
+        List<FunkoCompact> compactos = funkosRepository.findAllCompact().get();
+
+        // Asserts
+        assertAll(() -> assertEquals(funkos.size(), compactos.size()),
+                () -> assertEquals(funkos, compactos.stream().map(FunkoCompact::toFunko).toList()) // Se convierte sin perder informacion
+        );
+    }
+
+    @Test
+    void findByPriceRangeYTopByPrice() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        funkosRepository.bulkLoadCsv(CSV, RECHAZOS).get();
+        List<Funko> funkos = funkosRepository.findAll().get();
+
+        // Act
+        List<Funko> rango = funkosRepository.findByPriceRange(15, 20).get();
+        List<Funko> top = funkosRepository.findTopByPrice(10).get();
+
+        // Asserts
+        assertAll(() -> assertEquals(funkos.stream().filter(f -> f.getPrice() >= 15 && f.getPrice() <= 20)
+                        .sorted(Comparator.comparingDouble(Funko::getPrice).thenComparing(Funko::getId)).toList(), rango),
+                () -> assertEquals(funkos.stream().sorted(Comparator.comparingDouble(Funko::getPrice).reversed()
+                        .thenComparing(Funko::getId)).limit(10).toList(), top),
+                () -> assertTrue(funkosRepository.findByPriceRange(20, 15).get().isEmpty()),
+                () -> assertTrue(funkosRepository.findTopByPrice(0).get().isEmpty())
+        );
+    }
+
+    @Test
+    void findTopByPriceLeeElIndiceEnOrden() throws SQLException {
+        // Act: el mismo orden que findTopByPrice
+        String plan;
+        try (var connection = DatabaseManager.getInstance().getConnection();
+             var stmt = connection.prepareStatement("EXPLAIN SELECT * FROM funkos ORDER BY precio DESC, ID LIMIT 10");
+             var rs = stmt.executeQuery()
+        ) {
+            rs.next();
+            plan = rs.getString(1);
+        }
+
+        // Asserts: no hace falta ordenar, se leen las primeras filas del indice descendente
+        assertAll(() -> assertTrue(plan.contains("IDX_FUNKOS_PRECIO_DESC"), plan),
+                () -> assertTrue(plan.contains("index sorted"), plan)
+        );
+    }
+
+    @Test
+    void findByReleaseDateBetweenYCountByReleaseYear() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        funkosRepository.bulkLoadCsv(CSV, RECHAZOS).get();
+        List<Funko> funkos = funkosRepository.findAll().get();
+
+        // Act
+        List<Funko> funkos2023 = funkosRepository.findByReleaseDateBetween(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31)).get();
+        SortedMap<Integer, Long> porAno = funkosRepository.countByReleaseYear().get();
+
+        // Asserts
+        assertAll(() -> assertEquals(funkos.stream().filter(f -> f.getReleaseData().getYear() == 2023)
+                        .sorted(Comparator.comparing(Funko::getReleaseData).thenComparing(Funko::getId)).toList(), funkos2023),
+                () -> assertEquals(funkos.stream().collect(Collectors.groupingBy(f -> f.getReleaseData().getYear(), TreeMap::new, Collectors.counting())), porAno),
+                () -> assertEquals(porAno.getOrDefault(2023, 0L), funkos2023.size())
+        );
+    }
+
+    @Test
+    void findConCriteriosYCursor() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        funkosRepository.bulkLoadCsv(CSV, RECHAZOS).get();
+        List<Funko> funkos = funkosRepository.findAll().get();
+        FunkoQuery consulta = FunkoQuery.builder()
+                .model(Model.DISNEY)
+                .priceBetween(10, 60)
+                .releasedBetween(LocalDate.of(2020, 1, 1), LocalDate.of(2024, 12, 31))
+                .sort(FunkoQuery.Sort.PRICE_DESC)
+                .build();
+        List<Funko> esperados = funkos.stream()
+                .filter(f -> f.getModel() == Model.DISNEY && f.getPrice() >= 10 && f.getPrice() <= 60)
+                .filter(f -> !f.getReleaseData().isBefore(LocalDate.of(2020, 1, 1)) && !f.getReleaseData().isAfter(LocalDate.of(2024, 12, 31)))
+                .sorted(Comparator.comparingDouble(Funko::getPrice).reversed().thenComparing(Funko::getId))
+                .toList();
+
+        // Act: todos de una vez y por paginas de 3 con el cursor
+        List<Funko> todos = funkosRepository.find(consulta).get();
+        List<Funko> paginados = new ArrayList<>();
+        FunkoQuery pagina = consulta.toBuilder().limit(3).build();
+        List<Funko> actual;
+        while (!(actual = funkosRepository.find(pagina).get()).isEmpty()) {
+            paginados.addAll(actual);
+            pagina = pagina.after(actual.get(actual.size() - 1));
+        }
+
+        // Asserts
+        assertAll(() -> assertFalse(esperados.isEmpty()),
+                () -> assertEquals(esperados, todos),
+                () -> assertEquals(esperados, paginados),
+                () -> assertEquals(consulta.shape(), consulta.toBuilder().priceBetween(0, 1).build().shape()), // Mismos criterios con otros valores
+                () -> assertNotEquals(consulta.shape(), consulta.toBuilder().limit(3).build().shape()),
+                () -> assertEquals(funkos.stream().filter(f -> f.getName().startsWith("Stitch")).count(),
+                        funkosRepository.find(FunkoQuery.builder().namePrefix("Stitch").build()).get().size()),
+                () -> assertTrue(funkosRepository.find(FunkoQuery.builder().nameContains("%").build()).get().isEmpty()) // Los comodines se buscan literalmente
+        );
+    }
+
+    @Test
+    void findConProyeccion() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        funkosRepository.bulkLoadCsv(CSV, RECHAZOS).get();
+        FunkoQuery consulta = FunkoQuery.builder().model(Model.MARVEL).sort(FunkoQuery.Sort.PRICE_ASC).build();
+        List<Funko> completos = funkosRepository.find(consulta).get();
+
+        // Act
+        List<FunkoSummary> resumenes = funkosRepository.find(consulta, FunkoProjection.SUMMARY).get();
+        List<Long> ids = funkosRepository.find(consulta, FunkoProjection.IDS).get();
+
+        // Asserts
+        assertAll(() -> assertEquals(completos.stream().map(f -> new FunkoSummary(f.getId(), f.getName(), f.getPrice(), f.getModel())).toList(), resumenes),
+                () -> assertEquals(completos.stream().map(Funko::getId).toList(), ids),
+                () -> assertThrows(IllegalArgumentException.class, () -> FunkoProjection.of(List.of("ID; DROP TABLE funkos"), rs -> rs.getLong(1)))
+        );
+    }
+
+    @Test
+    void funkoRowMapperResuelveColumnasPorMetadatos() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        funkosRepository.bulkLoadCsv(CSV, RECHAZOS).get();
+        List<Funko> esperados = funkosRepository.find(FunkoQuery.builder().build()).get();
+        List<Funko> leidos = new ArrayList<>();
+
+        // Act: las columnas llegan en otro orden que el de la tabla
+        try (var connection = DatabaseManager.getInstance().getConnection();
+             var stmt = connection.prepareStatement("SELECT precio, version, updated_at, ID, modelo, cod, MyId, nombre, fecha_lanzamiento, created_at FROM funkos ORDER BY ID");
+             var rs = stmt.executeQuery()
+        ) {
+            var mapper = new FunkoRowMapper();
+            while (rs.next()) {
+                leidos.add(mapper.mapRow(rs));
+            }
+        }
+
+        // Asserts
+        assertAll(() -> assertEquals(esperados, leidos),
+                () -> assertEquals(Model.ANIME, FunkoRowMapper.toModel("ANIME")),
+                () -> assertThrows(IllegalArgumentException.class, () -> FunkoRowMapper.toModel("DESCONOCIDO"))
+        );
+    }
+
+    @Test
+    void inTransactionConfirmaTodoJunto() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException {
+        // Arrange
+        Funko existente = funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name("Existente").model(Model.MARVEL).price(10.0).releaseData(LocalDate.of(2020, 1, 1)).build()).get();
+        Funko aBorrar = funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name("Borrar").model(Model.DISNEY).price(5.0).releaseData(LocalDate.of(2020, 1, 1)).build()).get();
+        List<String> trasCommit = new ArrayList<>();
+
+        // Act
+        int cambios = funkosRepository.inTransaction(tx -> {
+            for (int i = 0; i < 5; i++) {
+                tx.save(Funko.builder().COD(UUID.randomUUID()).name("Nuevo-" + i).model(Model.ANIME).price(i).releaseData(LocalDate.of(2023, 1, 1)).build());
+            }
+            Funko funko = tx.findById(existente.getId()).orElseThrow();
+            funko.setPrice(99.0);
+            tx.update(funko);
+            tx.deleteById(aBorrar.getId());
+            tx.afterCommit(() -> trasCommit.add("commit"));
+            return tx.getUpserted().size() + tx.getDeleted().size();
+        }).get();
+
+        // Asserts
+        List<Funko> funkos = funkosRepository.findAll().get();
+        assertAll(() -> assertEquals(7, cambios),
+                () -> assertEquals(6, funkos.size()),
+                () -> assertEquals(99.0, funkosRepository.findById(existente.getId()).get().orElseThrow().getPrice()),
+                () -> assertTrue(funkosRepository.findById(aBorrar.getId()).get().isEmpty()),
+                () -> assertEquals(List.of("commit"), trasCommit)
+        );
+    }
+
+    @Test
+    void inTransactionDeshaceTodoSiFalla() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException {
+        // Arrange
+        Funko existente = funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name("Existente").model(Model.MARVEL).price(10.0).releaseData(LocalDate.of(2020, 1, 1)).build()).get();
+        List<String> trasCommit = new ArrayList<>();
+
+        // Act
+        var resultado = funkosRepository.inTransaction(tx -> {
+            tx.save(Funko.builder().COD(UUID.randomUUID()).name("Nuevo").model(Model.ANIME).price(1.0).releaseData(LocalDate.of(2023, 1, 1)).build());
+            tx.deleteById(existente.getId());
+            tx.afterCommit(() -> trasCommit.add("commit"));
+            return tx.update(Funko.builder().id(-1L).name("No existe").model(Model.OTROS).price(1.0).build());
+        });
+
+        // Asserts
+        var error = assertThrows(ExecutionException.class, resultado::get);
+        assertAll(() -> assertInstanceOf(FunkoNoEncotradoException.class, error.getCause()),
+                () -> assertEquals(List.of(existente.getId()), funkosRepository.findAll().get().stream().map(Funko::getId).toList()),
+                () -> assertTrue(trasCommit.isEmpty())
+        );
+    }
+
+    @Test
+    void inTransactionDeshaceTodoConUnError() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException {
+        // Arrange
+        Funko existente = funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name("Existente").model(Model.MARVEL).price(10.0).releaseData(LocalDate.of(2020, 1, 1)).build()).get();
+
+        // Act: un Error no es una excepcion comprobada ni una RuntimeException
+        var resultado = funkosRepository.inTransaction(tx -> {
+            tx.save(Funko.builder().COD(UUID.randomUUID()).name("Nuevo").model(Model.ANIME).price(1.0).releaseData(LocalDate.of(2023, 1, 1)).build());
+            tx.deleteById(existente.getId());
+            throw new AssertionError("Fallo en el trabajo");
+        });
+
+        // Asserts
+        var error = assertThrows(ExecutionException.class, resultado::get);
+        assertAll(() -> assertInstanceOf(AssertionError.class, error.getCause()),
+                () -> assertEquals(List.of(existente.getId()), funkosRepository.findAll().get().stream().map(Funko::getId).toList())
+        );
+    }
+
+    @Test
+    void inTransactionEjecutaCadaAccionTrasElCommit() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        List<String> trasCommit = new ArrayList<>();
+
+        // Act: la primera accion falla, pero el commit ya esta hecho y la segunda se ejecuta igual
+        Funko guardado = funkosRepository.inTransaction(tx -> {
+            tx.afterCommit(() -> {
+                throw new IllegalStateException("Fallo tras el commit");
+            });
+            tx.afterCommit(() -> trasCommit.add("segunda"));
+            return tx.save(Funko.builder().COD(UUID.randomUUID()).name("Nuevo").model(Model.ANIME).price(1.0).releaseData(LocalDate.of(2023, 1, 1)).build());
+        }).get();
+
+        // Asserts
+        assertAll(() -> assertEquals(List.of("segunda"), trasCommit),
+                () -> assertTrue(funkosRepository.findById(guardado.getId()).get().isPresent())
+        );
+    }
+
+    @Test
+    void updateConVersionObsoletaFalla() throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
+        // Arrange: dos copias del mismo funko leidas con la misma version
+        Funko guardado = funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name("Original").model(Model.MARVEL).price(10.0).releaseData(LocalDate.of(2020, 1, 1)).build()).get();
+        Funko copiaA = funkosRepository.findById(guardado.getId()).get().orElseThrow();
+        Funko copiaB = funkosRepository.findById(guardado.getId()).get().orElseThrow();
+
+        // Act
+        copiaA.setName("Primero");
+        funkosRepository.update(copiaA).get();
+        copiaB.setName("Segundo");
+        var error = assertThrows(ExecutionException.class, () -> funkosRepository.update(copiaB).get());
+
+        // Asserts
+        Funko enBaseDeDatos = funkosRepository.findById(guardado.getId()).get().orElseThrow();
+        assertAll(() -> assertEquals(0, guardado.getVersion()),
+                () -> assertInstanceOf(FunkoConflictoException.class, error.getCause()),
+                () -> assertEquals(1, copiaA.getVersion()),
+                () -> assertEquals(0, copiaB.getVersion()),
+                () -> assertEquals("Primero", enBaseDeDatos.getName()),
+                () -> assertEquals(1, enBaseDeDatos.getVersion())
+        );
+    }
+
+    @Test
+    void restoreAllNoRetrocedeLaVersion() throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
+        // Arrange: la copia de seguridad se hizo con la version 0 y despues el funko se actualizo dos veces
+        Funko guardado = funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name("Copia").model(Model.DISNEY).price(10.0).releaseData(LocalDate.of(2020, 1, 1)).build()).get();
+        Funko copia = funkosRepository.findById(guardado.getId()).get().orElseThrow();
+        Funko actual = funkosRepository.findById(guardado.getId()).get().orElseThrow();
+        funkosRepository.update(actual).get();
+        funkosRepository.update(actual).get();
+
+        // Act
+        funkosRepository.restoreAll(List.of(copia)).get();
+
+        // Asserts: la version sigue avanzando y un compare-and-set con la version de la copia no se aplica
+        Funko enBaseDeDatos = funkosRepository.findById(guardado.getId()).get().orElseThrow();
+        assertAll(() -> assertEquals(3, enBaseDeDatos.getVersion()),
+                () -> assertEquals("Copia", enBaseDeDatos.getName()),
+                () -> assertFalse(funkosRepository.compareAndSet(copia).get())
+        );
+    }
+
+    @Test
+    void compareAndSetSoloConLaVersionActual() throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
+        // Arrange
+        Funko guardado = funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name("Original").model(Model.ANIME).price(10.0).releaseData(LocalDate.of(2020, 1, 1)).build()).get();
+        Funko obsoleto = funkosRepository.findById(guardado.getId()).get().orElseThrow();
+
+        // Act
+        guardado.setPrice(20.0);
+        boolean primero = funkosRepository.compareAndSet(guardado).get();
+        obsoleto.setPrice(30.0);
+        boolean segundo = funkosRepository.compareAndSet(obsoleto).get();
+        boolean noExiste = funkosRepository.compareAndSet(Funko.builder().id(-1L).name("No existe").model(Model.OTROS).price(1.0).build()).get();
+
+        // Asserts
+        Funko enBaseDeDatos = funkosRepository.findById(guardado.getId()).get().orElseThrow();
+        assertAll(() -> assertTrue(primero),
+                () -> assertFalse(segundo),
+                () -> assertFalse(noExiste),
+                () -> assertEquals(20.0, enBaseDeDatos.getPrice()),
+                () -> assertEquals(1, enBaseDeDatos.getVersion()),
+                () -> assertEquals(0, obsoleto.getVersion())
+        );
+    }
+
+    @Test
+    void inTransactionSaveEmpiezaEnLaVersionCero() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException, FunkoNoEncotradoException {
+        // Arrange: una copia de un funko ya actualizado conserva su version
+        Funko original = funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name("Original").model(Model.MARVEL).price(10.0).releaseData(LocalDate.of(2020, 1, 1)).build()).get();
+        funkosRepository.update(original).get();
+        Funko copia = original.copy();
+        copia.setCOD(UUID.randomUUID());
+
+        // Act
+        Funko guardado = funkosRepository.inTransaction(tx -> tx.save(copia)).get();
+        guardado.setPrice(20.0);
+        boolean actualizado = funkosRepository.compareAndSet(guardado).get();
+
+        // Asserts
+        assertAll(() -> assertEquals(1, guardado.getVersion()),
+                () -> assertTrue(actualizado),
+                () -> assertEquals(20.0, funkosRepository.findById(guardado.getId()).get().orElseThrow().getPrice())
+        );
+    }
+}
@@ -2,6 +2,7 @@ package services.funkos;
 
 import develop.exceptions.funkos.FunkoNoEncotradoException;
 import develop.models.Funko;
+import develop.models.FunkoCompact;
 import develop.models.IdGenerator;
 import develop.models.Model;
 import develop.repositories.funkos.FunkosRepository;
@@ -86,6 +87,63 @@ public class FunkoCacheTest {
     }
 
 
+    @Test
+    void getFunkoDevuelveCopia() throws ExecutionException, InterruptedException {
+        Funko funko = Funko.builder()
+                .id(2L)
+                .COD(UUID.randomUUID())
+                .name("Test")
+                .model(Model.ANIME)
+                .price(9.99)
+                .releaseData(LocalDate.of(2020, 1, 1))
+                .build();
+
+        funkoCache.put(funko.getId(), funko).get();
+        funko.setName("Modificado"); // Modificar el funko original no cambia la copia guardada
+        Funko primero = funkoCache.get(2L).get().get();
+        primero.setPrice(0); // Ni modificar un funko obtenido de la cache
+        Funko segundo = funkoCache.get(2L).get().get();
+
+        assertAll(() -> assertEquals("Test", segundo.getName()),
+                () -> assertEquals(9.99, segundo.getPrice()),
+                () -> assertEquals(FunkoCompact.of(segundo), FunkoCompact.of(FunkoCompact.of(segundo).toFunko()))
+        );
+    }
+
+    @Test
+    void putFunkoVersionAnteriorSeDescarta() throws ExecutionException, InterruptedException {
+        UUID cod = UUID.randomUUID();
+        Funko funko = Funko.builder().id(3L).COD(cod).name("Version-2").model(Model.DISNEY).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).version(2).build();
+        Funko obsoleto = Funko.builder().id(3L).COD(cod).name("Version-1").model(Model.DISNEY).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).version(1).build();
+        Funko reciente = Funko.builder().id(3L).COD(cod).name("Version-3").model(Model.DISNEY).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).version(3).build();
+
+        funkoCache.put(funko.getId(), funko).get();
+        funkoCache.put(obsoleto.getId(), obsoleto).get(); // Llega tarde una escritura anterior: se descarta
+        String trasObsoleto = funkoCache.get(3L).get().get().getName();
+        funkoCache.put(reciente.getId(), reciente).get();
+        Funko guardado = funkoCache.get(3L).get().get();
+        funkoCache.remove(3L).get();
+
+        assertAll(() -> assertEquals("Version-2", trasObsoleto),
+                () -> assertEquals("Version-3", guardado.getName()),
+                () -> assertEquals(3, guardado.getVersion())
+        );
+    }
+
+    @Test
+    void putFunkoSinFechaDeActualizacionNoCaduca() throws ExecutionException, InterruptedException {
+        Funko funko = Funko.builder().id(4L).COD(UUID.randomUUID()).name("Sin-Fecha").model(Model.MARVEL).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).updatedAt(null).build();
+
+        funkoCache.put(funko.getId(), funko).get();
+        funkoCache.clear().get(); // La caducidad se cuenta desde que se añadio, asi que aun no ha caducado
+        Optional<Funko> funkoFound = funkoCache.get(4L).get();
+        funkoCache.remove(4L).get();
+
+        assertAll(() -> assertTrue(funkoFound.isPresent()),
+                () -> assertNull(funkoFound.get().getUpdatedAt())
+        );
+    }
+
     @Test
     void getFunkoNoExiste() throws ExecutionException, InterruptedException {
         Optional<Funko> funkoFound = funkoCache.get(99L).get();   // Intentamos recuperar un elemento que no se encuentra guardado en la cache
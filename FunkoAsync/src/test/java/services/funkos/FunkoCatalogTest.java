@@ -0,0 +1,153 @@
+package services.funkos;
+
+import develop.exceptions.funkos.FunkoNoAlmacenadoException;
+import develop.models.Funko;
+import develop.models.FunkoCompact;
+import develop.models.IdGenerator;
+import develop.models.Model;
+import develop.repositories.funkos.FunkosRepository;
+import develop.repositories.funkos.FunkosRepositoryImpl;
+import develop.services.database.DatabaseManager;
+import develop.services.funkos.FunkoCatalog;
+import develop.services.funkos.FunkoModelAggregates;
+import develop.services.funkos.FunkoPriceIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FunkoCatalogTest {
+    private static final Path CSV = Paths.get(System.getProperty("user.dir"), "data", "funkos.csv");
+    private static final Path RECHAZOS = Paths.get(System.getProperty("java.io.tmpdir"), "funkos.rejects.csv");
+    private FunkosRepository funkosRepository;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        funkosRepository = FunkosRepositoryImpl.getInstance(DatabaseManager.getInstance(), IdGenerator.getInstance());
+        funkosRepository.deleteAll().join();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        funkosRepository.deleteAll().join();
+        IdGenerator.getInstance().resetId();
+    }
+
+    private static long[] ordenados(List<Funko> funkos) {
+        return funkos.stream().mapToLong(Funko::getId).sorted().toArray();
+    }
+
+    private static long[] ordenados(long[] ids) {
+        long[] copia = ids.clone();
+        Arrays.sort(copia);
+        return copia;
+    }
+
+    @Test
+    void loadYConsultasIgualQueConStreams() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        funkosRepository.bulkLoadCsv(CSV, RECHAZOS).get();
+        List<Funko> funkos = funkosRepository.findAll().get();
+
+        // Act
+        FunkoCatalog catalogo = FunkoCatalog.load(funkosRepository).get();
+
+        // Asserts: cada operador da el mismo resultado que el mismo calculo con streams sobre List<Funko>
+        double maxPrecio = funkos.stream().mapToDouble(Funko::getPrice).max().getAsDouble();
+        Map<Model, Long> porModelo = funkos.stream().collect(Collectors.groupingBy(Funko::getModel, Collectors.counting()));
+        assertAll(() -> assertEquals(funkos.size(), catalogo.size()),
+                () -> assertEquals(maxPrecio, catalogo.maxPrice().getAsDouble()),
+                () -> assertEquals(maxPrecio, funkos.stream().filter(f -> f.getId() == catalogo.idOfMaxPrice().getAsLong()).findFirst().get().getPrice()),
+                () -> assertEquals(funkos.stream().mapToDouble(Funko::getPrice).average().getAsDouble(), catalogo.averagePrice(), 1e-9),
+                () -> assertEquals(porModelo, catalogo.countByModel()),
+                () -> assertArrayEquals(ordenados(funkos.stream().filter(f -> f.getModel() == Model.DISNEY).toList()), ordenados(catalogo.idsByModel().get(Model.DISNEY))),
+                () -> assertArrayEquals(ordenados(funkos.stream().filter(f -> f.getReleaseData().getYear() == 2023).toList()), ordenados(catalogo.idsReleasedInYear(2023))),
+                () -> assertEquals(funkos.stream().filter(f -> f.getReleaseData().getYear() == 2023).count(), catalogo.countReleasedInYear(2023)),
+                () -> assertArrayEquals(ordenados(funkos.stream().filter(f -> f.getName().contains("Stitch")).toList()), ordenados(catalogo.idsWithNameContaining("Stitch")))
+        );
+    }
+
+    @Test
+    void upsertYRemove() {
+        // Arrange
+        FunkoCatalog catalogo = new FunkoCatalog();
+        for (int i = 1; i <= 2000; i++) { // Mas filas que la capacidad inicial para que crezcan las columnas
+            catalogo.upsert(FunkoCompact.of(Funko.builder().id(i).COD(UUID.randomUUID()).name("Funko-" + (i % 10))
+                    .model(Model.values()[i % 4]).price(i).releaseData(LocalDate.of(2020, 1, 1)).build()));
+        }
+
+        // Act
+        catalogo.onUpsert(Funko.builder().id(5).COD(UUID.randomUUID()).name("Nuevo").model(Model.ANIME).price(5000).releaseData(LocalDate.of(2023, 3, 1)).build());
+        catalogo.onDelete(2000);
+        catalogo.onDelete(1);
+
+        // Asserts
+        assertAll(() -> assertEquals(1998, catalogo.size()),
+                () -> assertEquals(5L, catalogo.idOfMaxPrice().getAsLong()),
+                () -> assertArrayEquals(new long[]{5}, catalogo.idsReleasedInYear(2023)),
+                () -> assertArrayEquals(new long[]{5}, catalogo.idsWithNameContaining("Nuevo")),
+                () -> assertEquals(1998, catalogo.countByModel().values().stream().mapToLong(Long::longValue).sum())
+        );
+        catalogo.onDeleteAll();
+        assertEquals(0, catalogo.size());
+    }
+
+    @Test
+    void funkosSinModelo() {
+        // Arrange: la columna modelo de la base de datos admite nulos
+        FunkoCatalog catalogo = new FunkoCatalog();
+        catalogo.onUpsert(Funko.builder().id(1).COD(UUID.randomUUID()).name("Sin modelo").price(10).releaseData(LocalDate.of(2020, 1, 1)).build());
+        catalogo.onUpsert(Funko.builder().id(2).COD(UUID.randomUUID()).name("Marvel").model(Model.MARVEL).price(20).releaseData(LocalDate.of(2020, 1, 1)).build());
+
+        // Act
+        Map<Model, Long> porModelo = catalogo.countByModel();
+        Map<Model, long[]> idsPorModelo = catalogo.idsByModel();
+
+        // Asserts: se cuentan en el catalogo pero no en ningun modelo
+        assertAll(() -> assertEquals(2, catalogo.size()),
+                () -> assertEquals(Map.of(Model.MARVEL, 1L), porModelo),
+                () -> assertEquals(Set.of(Model.MARVEL), idsPorModelo.keySet()),
+                () -> assertArrayEquals(new long[]{2}, idsPorModelo.get(Model.MARVEL))
+        );
+    }
+
+    @Test
+    void loadConFunkoSinModelo() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException {
+        // Arrange: el repositorio no guarda funkos sin modelo, asi que la fila se inserta directamente
+        Funko marvel = funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name("Marvel").model(Model.MARVEL).price(20).releaseData(LocalDate.of(2020, 1, 1)).build()).join();
+        try (Connection connection = DatabaseManager.getInstance().getConnection();
+             PreparedStatement stmt = connection.prepareStatement("INSERT INTO funkos (cod, MyId, nombre, modelo, precio) VALUES (?, 0, 'Sin modelo', NULL, 10)")) {
+            stmt.setObject(1, UUID.randomUUID());
+            stmt.executeUpdate();
+        }
+
+        // Act
+        FunkoCatalog catalogo = FunkoCatalog.load(funkosRepository).get();
+        FunkoPriceIndex indice = FunkoPriceIndex.load(funkosRepository).get();
+        FunkoModelAggregates aggregates = FunkoModelAggregates.load(funkosRepository).get();
+
+        // Asserts
+        assertAll(() -> assertEquals(2, catalogo.size()),
+                () -> assertEquals(Map.of(Model.MARVEL, 1L), catalogo.countByModel()),
+                () -> assertEquals(2, indice.size()),
+                () -> assertEquals(1, aggregates.stats(Model.MARVEL).count()),
+                () -> assertEquals(Set.of(Model.MARVEL), aggregates.statsByModel().keySet()),
+                () -> assertTrue(funkosRepository.findAll().get().stream().anyMatch(f -> f.getModel() == null && f.getId() != marvel.getId()))
+        );
+    }
+}
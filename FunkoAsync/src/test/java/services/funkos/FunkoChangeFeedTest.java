@@ -0,0 +1,242 @@
+package services.funkos;
+
+import develop.exceptions.funkos.FunkoNoAlmacenadoException;
+import develop.exceptions.funkos.FunkoNoEncotradoException;
+import develop.models.Funko;
+import develop.models.FunkoChange;
+import develop.models.IdGenerator;
+import develop.models.Model;
+import develop.repositories.funkos.FunkosRepository;
+import develop.repositories.funkos.FunkosRepositoryImpl;
+import develop.services.database.DatabaseManager;
+import develop.services.funkos.FunkoCacheImpl;
+import develop.services.funkos.FunkoCatalog;
+import develop.services.funkos.FunkoChangeFeed;
+import develop.services.funkos.FunkoChangeListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FunkoChangeFeedTest {
+    private FunkosRepository funkosRepository;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        funkosRepository = FunkosRepositoryImpl.getInstance(DatabaseManager.getInstance(), IdGenerator.getInstance());
+        funkosRepository.deleteAll().join();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        funkosRepository.deleteAll().join();
+        IdGenerator.getInstance().resetId();
+    }
+
+    private Funko guardar(String name) throws SQLException, FunkoNoAlmacenadoException {
+        return funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name(name).model(Model.DISNEY).price(10.0)
+                .releaseData(LocalDate.of(2020, 1, 1)).build()).join();
+    }
+
+    /**
+     * Actualiza un funko con SQL directo, sin pasar por el repositorio ni el servicio.
+     */
+    private static void actualizarConSql(long id, double precio) throws SQLException {
+        try (var connection = DatabaseManager.getInstance().getConnection();
+             var stmt = connection.prepareStatement("UPDATE funkos SET precio = ?, version = version + 1 WHERE ID = ?")
+        ) {
+            stmt.setDouble(1, precio);
+            stmt.setLong(2, id);
+            stmt.executeUpdate();
+        }
+    }
+
+    @Test
+    void registraCambiosHechosFueraDelServicio() throws SQLException, FunkoNoAlmacenadoException, FunkoNoEncotradoException {
+        // Arrange
+        FunkoChangeFeed feed = FunkoChangeFeed.fromNow(funkosRepository, 2); // Lotes pequeños para leer en varias consultas
+        List<FunkoChange> recibidos = new CopyOnWriteArrayList<>();
+        feed.subscribe(recibidos::add);
+        long desde = feed.getLastSeq();
+
+        // Act
+        Funko funko = guardar("Externo");
+        actualizarConSql(funko.getId(), 20.0);
+        funkosRepository.deleteById(funko.getId()).join();
+        int entregados = feed.poll();
+
+        // Asserts
+        assertAll(() -> assertEquals(3, entregados),
+                () -> assertEquals(List.of(FunkoChange.Operation.INSERT, FunkoChange.Operation.UPDATE, FunkoChange.Operation.DELETE),
+                        recibidos.stream().map(FunkoChange::operation).toList()),
+                () -> assertTrue(recibidos.stream().allMatch(c -> c.funkoId() == funko.getId())),
+                () -> assertEquals(0L, recibidos.get(0).version()),
+                () -> assertEquals(1L, recibidos.get(1).version()),
+                () -> assertNull(recibidos.get(2).version()),
+                () -> assertEquals(desde + 3, feed.getLastSeq()),
+                () -> assertEquals(0, feed.poll())
+        );
+    }
+
+    @Test
+    void transaccionDeshechaNoRegistraCambios() throws SQLException, FunkoNoAlmacenadoException, FunkoNoEncotradoException {
+        // Arrange
+        Funko funko = guardar("Intacto");
+        FunkoChangeFeed feed = FunkoChangeFeed.fromNow(funkosRepository, 100);
+
+        // Act
+        var resultado = funkosRepository.inTransaction(tx -> {
+            tx.deleteById(funko.getId());
+            throw new IllegalStateException("Fallo dentro de la transaccion");
+        });
+
+        // Asserts
+        assertAll(() -> assertThrows(ExecutionException.class, resultado::get),
+                () -> assertEquals(0, feed.poll()),
+                () -> assertTrue(funkosRepository.findChangesSince(feed.getLastSeq(), 100).join().isEmpty())
+        );
+    }
+
+    @Test
+    void invalidaLaCacheSoloConVersionAnterior() throws SQLException, FunkoNoAlmacenadoException, FunkoNoEncotradoException {
+        // Arrange
+        FunkoCacheImpl cache = FunkoCacheImpl.getInstance(10);
+        FunkoChangeFeed feed = FunkoChangeFeed.fromNow(funkosRepository, 100);
+        feed.subscribe(FunkoChangeFeed.invalidating(cache));
+        Funko externo = guardar("Externo");
+        Funko propio = guardar("Propio");
+        cache.put(externo.getId(), externo).join();
+
+        // Act: uno cambia por SQL directo y el otro se actualiza y se guarda en la cache con su nueva version
+        actualizarConSql(externo.getId(), 50.0);
+        funkosRepository.update(propio).join();
+        cache.put(propio.getId(), propio).join();
+        feed.poll();
+
+        // Asserts
+        boolean externoEnCache = cache.get(externo.getId()).join().isPresent();
+        boolean propioEnCache = cache.get(propio.getId()).join().isPresent();
+        cache.remove(propio.getId()).join();
+        assertAll(() -> assertFalse(externoEnCache),
+                () -> assertTrue(propioEnCache)
+        );
+    }
+
+    @Test
+    void sqlQueNoIncrementaLaVersionTambienInvalidaLaCache() throws SQLException, FunkoNoAlmacenadoException, FunkoNoEncotradoException {
+        // Arrange
+        FunkoCacheImpl cache = FunkoCacheImpl.getInstance(10);
+        FunkoChangeFeed feed = FunkoChangeFeed.fromNow(funkosRepository, 100);
+        feed.subscribe(FunkoChangeFeed.invalidating(cache));
+        Funko funko = guardar("SinVersion");
+        cache.put(funko.getId(), funko).join();
+
+        // Act: el UPDATE no toca la version, pero el trigger la incrementa igualmente
+        try (var connection = DatabaseManager.getInstance().getConnection();
+             var stmt = connection.prepareStatement("UPDATE funkos SET precio = ? WHERE ID = ?")
+        ) {
+            stmt.setDouble(1, 60.0);
+            stmt.setLong(2, funko.getId());
+            stmt.executeUpdate();
+        }
+        feed.poll();
+
+        // Asserts
+        Funko enBaseDeDatos = funkosRepository.findById(funko.getId()).join().orElseThrow();
+        assertAll(() -> assertFalse(cache.get(funko.getId()).join().isPresent()),
+                () -> assertEquals(1, enBaseDeDatos.getVersion()),
+                () -> assertEquals(60.0, enBaseDeDatos.getPrice())
+        );
+    }
+
+    @Test
+    void borraLosCambiosEntregadosQueNoNecesitaOtroLector() throws SQLException, FunkoNoAlmacenadoException {
+        // Arrange: otro lector solo ha procesado el primero de los cambios nuevos
+        FunkoChangeFeed feed = FunkoChangeFeed.fromNow(funkosRepository, 100);
+        long desde = feed.getLastSeq();
+        feed.purgeDelivered(() -> desde + 1);
+
+        // Act
+        guardar("Uno");
+        guardar("Dos");
+        int entregados = feed.poll();
+
+        // Asserts
+        List<FunkoChange> restantes = funkosRepository.findChangesSince(0L, 100).join();
+        assertAll(() -> assertEquals(2, entregados),
+                () -> assertEquals(List.of(desde + 2), restantes.stream().map(FunkoChange::seq).toList())
+        );
+    }
+
+    @Test
+    void noReenviaLasEscriturasQueYaEstanEnLaCache() throws SQLException, FunkoNoAlmacenadoException, FunkoNoEncotradoException {
+        // Arrange
+        FunkoCacheImpl cache = FunkoCacheImpl.getInstance(10);
+        List<Long> reenviados = new CopyOnWriteArrayList<>();
+        FunkoChangeListener oyente = new FunkoChangeListener() {
+            @Override
+            public void onUpsert(Funko funko) {
+                reenviados.add(funko.getId());
+            }
+
+            @Override
+            public void onDelete(long id) {
+                reenviados.add(-id);
+            }
+
+            @Override
+            public void onDeleteAll() {
+            }
+        };
+        FunkoChangeFeed feed = FunkoChangeFeed.fromNow(funkosRepository, 100);
+        feed.subscribe(FunkoChangeFeed.invalidating(cache));
+        feed.subscribe(FunkoChangeFeed.forwarding(funkosRepository, cache, List.of(oyente)));
+
+        // Act: uno lo escribe el servicio, que lo guarda en la cache y ya avisa a los oyentes; el otro llega por SQL directo
+        Funko propio = guardar("Propio");
+        cache.put(propio.getId(), propio).join();
+        Funko externo = guardar("Externo");
+        actualizarConSql(externo.getId(), 30.0);
+        feed.poll();
+
+        // Asserts
+        cache.remove(propio.getId()).join();
+        assertEquals(List.of(externo.getId(), externo.getId()), reenviados);
+    }
+
+    @Test
+    void reenviaLosCambiosALosOyentes() throws SQLException, FunkoNoAlmacenadoException, FunkoNoEncotradoException, InterruptedException {
+        // Arrange
+        FunkoCatalog catalogo = new FunkoCatalog();
+        Funko borrado = guardar("Borrado");
+        catalogo.onUpsert(borrado);
+
+        try (FunkoChangeFeed feed = FunkoChangeFeed.fromNow(funkosRepository, 100)) {
+            feed.subscribe(FunkoChangeFeed.forwarding(funkosRepository, List.of(catalogo)));
+            feed.start(Duration.ofMillis(50));
+
+            // Act
+            Funko nuevo = guardar("Nuevo");
+            actualizarConSql(nuevo.getId(), 75.0);
+            funkosRepository.deleteById(borrado.getId()).join();
+            for (int i = 0; i < 100 && feed.getLastSeq() < funkosRepository.lastChangeSeq().join(); i++) {
+                Thread.sleep(50);
+            }
+
+            // Asserts
+            assertAll(() -> assertEquals(1, catalogo.size()),
+                    () -> assertEquals(75.0, catalogo.maxPrice().orElseThrow()),
+                    () -> assertEquals(nuevo.getId(), catalogo.idOfMaxPrice().orElseThrow())
+            );
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package services.funkos;
+
+import develop.models.IdGenerator;
+import develop.repositories.funkos.FunkosRepository;
+import develop.repositories.funkos.FunkosRepositoryImpl;
+import develop.services.database.DatabaseManager;
+import develop.services.funkos.FunkoIngestService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FunkoIngestServiceTest {
+    private static final String CABECERA = "COD,NOMBRE,MODELO,PRECIO,FECHA_LANZAMIENTO\n";
+    private FunkosRepository funkosRepository;
+
+    @TempDir
+    Path carpeta;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        funkosRepository = FunkosRepositoryImpl.getInstance(DatabaseManager.getInstance(), IdGenerator.getInstance());
+        funkosRepository.deleteAll().join();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        funkosRepository.deleteAll().join();
+        IdGenerator.getInstance().resetId();
+    }
+
+    private static String fila(String nombre) {
+        return UUID.randomUUID() + "," + nombre + ",MARVEL,10.5,2020-01-01\n";
+    }
+
+    private static void anadir(Path file, String texto) throws IOException {
+        Files.writeString(file, texto, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    void ingestSoloLineasNuevasYCompletas() throws IOException, SQLException, ExecutionException, InterruptedException {
+        Path csv = carpeta.resolve("proveedor.csv");
+        anadir(csv, CABECERA + fila("Uno") + fila("Dos") + "incompleta");
+
+        try (FunkoIngestService ingesta = new FunkoIngestService(funkosRepository, carpeta)) {
+            assertEquals(2, ingesta.ingest(csv)); // La linea a medio escribir no se consume
+            assertEquals(0, ingesta.ingest(csv)); // Sin cambios no se vuelve a leer nada
+        }
+
+        // Se completa la linea y se añade otra con un servicio nuevo, como tras un reinicio
+        Files.writeString(csv, Files.readString(csv).replace("incompleta", "") + fila("Tres") + "roto,MARVEL\n");
+        try (FunkoIngestService ingesta = new FunkoIngestService(funkosRepository, carpeta)) {
+            long guardados = ingesta.ingest(csv);
+            assertAll(() -> assertEquals(1, guardados),
+                    () -> assertEquals(Files.size(csv), ingesta.getOffset(csv)),
+                    () -> assertEquals(3, funkosRepository.findAll().get().size()),
+                    () -> assertEquals(2, Files.readAllLines(carpeta.resolve("proveedor.rejects.csv")).size()) // Cabecera y la linea rota
+            );
+        }
+    }
+
+    @Test
+    void cadaLecturaUsaUnPipelineNuevo() throws IOException, SQLException, ExecutionException, InterruptedException {
+        Path csv = carpeta.resolve("lotes.csv");
+        String repetida = fila("Repetido");
+        anadir(csv, CABECERA + repetida + repetida);
+
+        try (FunkoIngestService ingesta = new FunkoIngestService(funkosRepository, carpeta)) {
+            long primera = ingesta.ingest(csv); // El duplicado dentro de la misma lectura se rechaza
+            Path rechazos = carpeta.resolve("lotes.rejects.csv");
+            long rechazosPrimera = Files.readAllLines(rechazos).size();
+
+            // La segunda lectura no recuerda los codigos de la primera, y sus rechazos se escriben al terminar
+            Files.delete(rechazos);
+            anadir(csv, fila("Otro") + "roto\n");
+            long segunda = ingesta.ingest(csv);
+            assertAll(() -> assertEquals(1, primera),
+                    () -> assertEquals(2, rechazosPrimera), // Cabecera y el duplicado
+                    () -> assertEquals(1, segunda),
+                    () -> assertEquals(2, funkosRepository.findAll().get().size()),
+                    () -> assertEquals(2, Files.readAllLines(rechazos).size()) // Cabecera nueva y la linea rota
+            );
+        }
+    }
+
+    @Test
+    void ingestAlVigilarLaCarpeta() throws IOException, SQLException, ExecutionException, InterruptedException {
+        anadir(carpeta.resolve("previo.csv"), CABECERA + fila("Previo"));
+
+        try (FunkoIngestService ingesta = new FunkoIngestService(funkosRepository, carpeta)) {
+            ingesta.start();
+            assertEquals(1, funkosRepository.findAll().get().size()); // Lo que ya habia se importa al arrancar
+
+            Path nuevo = carpeta.resolve("nuevo.csv");
+            anadir(nuevo, CABECERA + fila("Nuevo-1") + fila("Nuevo-2"));
+            long limite = System.currentTimeMillis() + 30_000;
+            while (funkosRepository.findAll().get().size() < 3 && System.currentTimeMillis() < limite) {
+                Thread.sleep(100);
+            }
+            assertEquals(3, funkosRepository.findAll().get().size());
+        }
+    }
+}
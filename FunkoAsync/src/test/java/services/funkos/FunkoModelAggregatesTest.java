@@ -0,0 +1,128 @@
+package services.funkos;
+
+import develop.models.Funko;
+import develop.models.IdGenerator;
+import develop.models.Model;
+import develop.models.ModelStats;
+import develop.repositories.funkos.FunkosRepository;
+import develop.repositories.funkos.FunkosRepositoryImpl;
+import develop.services.database.DatabaseManager;
+import develop.services.funkos.FunkoModelAggregates;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FunkoModelAggregatesTest {
+    private static final Path CSV = Paths.get(System.getProperty("user.dir"), "data", "funkos.csv");
+    private static final Path RECHAZOS = Paths.get(System.getProperty("java.io.tmpdir"), "funkos.rejects.csv");
+    private FunkosRepository funkosRepository;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        funkosRepository = FunkosRepositoryImpl.getInstance(DatabaseManager.getInstance(), IdGenerator.getInstance());
+        funkosRepository.deleteAll().join();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        funkosRepository.deleteAll().join();
+        IdGenerator.getInstance().resetId();
+    }
+
+    private static Funko funko(long id, Model model, double price) {
+        return Funko.builder().id(id).COD(UUID.randomUUID()).name("Funko-" + id).model(model).price(price)
+                .releaseData(LocalDate.of(2023, 1, 1)).build();
+    }
+
+    @Test
+    void loadIgualQueConStreams() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        funkosRepository.bulkLoadCsv(CSV, RECHAZOS).get();
+        List<Funko> funkos = funkosRepository.findAll().get();
+        Map<Model, DoubleSummaryStatistics> esperado = funkos.stream()
+                .collect(Collectors.groupingBy(Funko::getModel, Collectors.summarizingDouble(Funko::getPrice)));
+
+        // Act
+        FunkoModelAggregates aggregates = FunkoModelAggregates.load(funkosRepository).get();
+
+        // Asserts
+        Map<Model, ModelStats> stats = aggregates.statsByModel();
+        assertEquals(esperado.keySet(), stats.keySet());
+        esperado.forEach((model, e) -> assertAll(
+                () -> assertEquals(e.getCount(), stats.get(model).count()),
+                () -> assertEquals(e.getSum(), stats.get(model).sumPrice(), 1e-6),
+                () -> assertEquals(e.getMin(), stats.get(model).minPrice()),
+                () -> assertEquals(e.getMax(), stats.get(model).maxPrice()),
+                () -> assertEquals(e.getAverage(), stats.get(model).averagePrice(), 1e-9)
+        ));
+    }
+
+    @Test
+    void retiradaDeMinimoYMaximo() {
+        // Arrange
+        FunkoModelAggregates aggregates = new FunkoModelAggregates();
+        aggregates.onUpsert(funko(1, Model.MARVEL, 10));
+        aggregates.onUpsert(funko(2, Model.MARVEL, 50));
+        aggregates.onUpsert(funko(3, Model.MARVEL, 50));
+        aggregates.onUpsert(funko(4, Model.MARVEL, 30));
+
+        // Act: se borra uno de los dos maximos, se borra el minimo y otro cambia de modelo
+        aggregates.onDelete(2);
+        aggregates.onDelete(1);
+        aggregates.onUpsert(funko(4, Model.ANIME, 30));
+
+        // Asserts
+        ModelStats marvel = aggregates.stats(Model.MARVEL);
+        assertAll(() -> assertEquals(1, marvel.count()),
+                () -> assertEquals(50.0, marvel.sumPrice()),
+                () -> assertEquals(50.0, marvel.minPrice()),
+                () -> assertEquals(50.0, marvel.maxPrice()),
+                () -> assertEquals(new ModelStats(Model.ANIME, 1, 30.0, 30.0, 30.0), aggregates.stats(Model.ANIME)),
+                () -> assertFalse(aggregates.remove(99))
+        );
+        aggregates.onDeleteAll();
+        assertAll(() -> assertTrue(aggregates.statsByModel().isEmpty()),
+                () -> assertEquals(new ModelStats(Model.MARVEL, 0, 0.0, 0.0, 0.0), aggregates.stats(Model.MARVEL))
+        );
+    }
+
+    @Test
+    void fotoConsistenteConEscriturasConcurrentes() throws InterruptedException {
+        // Arrange: un unico funko que cambia de precio sin parar en otro hilo
+        FunkoModelAggregates aggregates = new FunkoModelAggregates();
+        aggregates.onUpsert(funko(1, Model.MARVEL, 10));
+        Thread escritor = new Thread(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                aggregates.onUpsert(funko(1, Model.MARVEL, i % 2 == 0 ? 20 : 10));
+            }
+        });
+
+        // Act
+        List<ModelStats> inconsistentes = new ArrayList<>();
+        escritor.start();
+        while (escritor.isAlive()) {
+            ModelStats foto = aggregates.stats(Model.MARVEL);
+            if (foto.count() != 0 && (foto.count() != 1 || foto.sumPrice() != foto.minPrice() || foto.minPrice() != foto.maxPrice())) {
+                inconsistentes.add(foto);
+            }
+        }
+        escritor.join();
+
+        // Asserts: cada foto ve el funko con un precio, nunca la suma de uno y el multiconjunto de otro
+        assertTrue(inconsistentes.isEmpty(), () -> "Fotos inconsistentes: " + inconsistentes.subList(0, Math.min(5, inconsistentes.size())));
+    }
+}
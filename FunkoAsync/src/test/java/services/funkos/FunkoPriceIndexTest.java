@@ -0,0 +1,81 @@
+package services.funkos;
+
+import develop.models.Funko;
+import develop.models.IdGenerator;
+import develop.models.Model;
+import develop.repositories.funkos.FunkosRepository;
+import develop.repositories.funkos.FunkosRepositoryImpl;
+import develop.services.database.DatabaseManager;
+import develop.services.funkos.FunkoPriceIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FunkoPriceIndexTest {
+    private static final Path CSV = Paths.get(System.getProperty("user.dir"), "data", "funkos.csv");
+    private static final Path RECHAZOS = Paths.get(System.getProperty("java.io.tmpdir"), "funkos.rejects.csv");
+    private FunkosRepository funkosRepository;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        funkosRepository = FunkosRepositoryImpl.getInstance(DatabaseManager.getInstance(), IdGenerator.getInstance());
+        funkosRepository.deleteAll().join();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        funkosRepository.deleteAll().join();
+        IdGenerator.getInstance().resetId();
+    }
+
+    @Test
+    void loadIgualQueElRepositorio() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        funkosRepository.bulkLoadCsv(CSV, RECHAZOS).get();
+
+        // Act
+        FunkoPriceIndex indice = FunkoPriceIndex.load(funkosRepository).get();
+
+        // Asserts
+        assertAll(() -> assertEquals(83, indice.size()), // Se rechazan los 7 codigos del archivo que no son UUID completos
+                () -> assertArrayEquals(funkosRepository.findByPriceRange(15, 20).get().stream().mapToLong(Funko::getId).toArray(), indice.idsByPriceRange(15, 20)),
+                () -> assertArrayEquals(funkosRepository.findTopByPrice(10).get().stream().mapToLong(Funko::getId).toArray(), indice.topIdsByPrice(10)),
+                () -> assertArrayEquals(funkosRepository.findTopByPrice(1000).get().stream().mapToLong(Funko::getId).toArray(), indice.topIdsByPrice(1000))
+        );
+    }
+
+    @Test
+    void cambiosMantienenElOrden() {
+        // Arrange
+        FunkoPriceIndex indice = new FunkoPriceIndex();
+        for (int i = 1; i <= 2000; i++) { // Mas filas que la capacidad inicial para que crezcan los arrays
+            indice.upsert(i, i % 100);
+        }
+
+        // Act
+        indice.onUpsert(Funko.builder().id(7).COD(UUID.randomUUID()).name("Caro").model(Model.ANIME).price(500).releaseData(LocalDate.of(2023, 1, 1)).build());
+        indice.onUpsert(Funko.builder().id(8).COD(UUID.randomUUID()).name("Caro").model(Model.ANIME).price(500).releaseData(LocalDate.of(2023, 1, 1)).build());
+        indice.onDelete(99);
+        indice.onDelete(12345);
+
+        // Asserts
+        assertAll(() -> assertEquals(1999, indice.size()),
+                () -> assertArrayEquals(new long[]{7, 8, 199, 299}, indice.topIdsByPrice(4)),
+                () -> assertEquals(20, indice.idsByPriceRange(50, 50).length),
+                () -> assertEquals(19, indice.idsByPriceRange(99, 99).length),
+                () -> assertEquals(0, indice.idsByPriceRange(1000, 2000).length),
+                () -> assertEquals(0, indice.topIdsByPrice(-1).length)
+        );
+        indice.onDeleteAll();
+        assertEquals(0, indice.topIdsByPrice(5).length);
+    }
+}
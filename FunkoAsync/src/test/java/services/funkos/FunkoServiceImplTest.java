@@ -7,6 +7,7 @@ import develop.models.Funko;
 import develop.models.Model;
 import develop.repositories.funkos.FunkosRepository;
 import develop.services.funkos.FunkoCache;
+import develop.services.funkos.FunkoCatalog;
 import develop.services.funkos.FunkoStorage;
 import develop.services.funkos.FunkosServiceImpl;
 import org.junit.jupiter.api.Test;
@@ -17,9 +18,13 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -378,5 +383,87 @@ class FunkoServiceImplTest {
         // Comprobamos que se ha llamado al metodo
         verify(storage, times(1)).importCsv();
     }
-}
 
+    @Test
+    void changeListenerRecibeCambios() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException, FunkoNoEncotradoException {
+        // Arrange
+        var funko = Funko.builder().id(1L).COD(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        FunkoCatalog catalogo = new FunkoCatalog();
+        service.addChangeListener(catalogo);
+        when(repository.save(funko)).thenReturn(CompletableFuture.completedFuture(funko));
+        when(repository.deleteById(1L)).thenReturn(CompletableFuture.completedFuture(true));
+
+        // Act
+        service.save(funko);
+        int despuesDeGuardar = catalogo.size();
+        service.deleteById(1L);
+
+        // Assert
+        assertAll(() -> assertEquals(1, despuesDeGuardar),
+                () -> assertEquals(0, catalogo.size())
+        );
+    }
+
+    @Test
+    void countByReleaseYear() throws SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        SortedMap<Integer, Long> porAno = new TreeMap<>(Map.of(2020, 2L, 2023, 1L));
+        when(repository.countByReleaseYear()).thenReturn(CompletableFuture.completedFuture(porAno));
+
+        // Act
+        var result = service.countByReleaseYear().get();
+
+        // Assert
+        assertEquals(porAno, result, "El recuento por año no es el esperado");
+        verify(repository, times(1)).countByReleaseYear();
+    }
+
+    @Test
+    void updateConEscrituraDiferida() throws SQLException, FunkoNoEncotradoException, ExecutionException, InterruptedException {
+        // Arrange
+        var funko = Funko.builder().id(1L).COD(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        when(repository.updateAll(List.of(funko))).thenReturn(CompletableFuture.completedFuture(List.of(funko)));
+        service.enableWriteBehind(100, Duration.ofHours(1));
+
+        // Act
+        var result = service.update(funko).get();
+        var leido = service.findById(1L).get();
+        int pendientes = service.getWriteBehindStats().orElseThrow().getQueueDepth();
+        service.disableWriteBehind();
+
+        // Assert
+        assertAll(() -> assertSame(funko, result),
+                () -> assertEquals(Optional.of(funko), leido, "La lectura no ve la actualizacion pendiente"),
+                () -> assertEquals(1, pendientes),
+                () -> assertTrue(service.getWriteBehindStats().isEmpty())
+        );
+
+        // La actualizacion se escribe en batch al desactivar la escritura diferida, nunca de una en una
+        verify(repository, never()).update(funko);
+        verify(repository, times(1)).updateAll(List.of(funko));
+        verify(cache, never()).get(1L);
+    }
+
+    @Test
+    void findAllEscribeAntesLasActualizacionesPendientes() throws SQLException, FunkoNoEncotradoException, ExecutionException, InterruptedException {
+        // Arrange
+        var funko = Funko.builder().id(1L).COD(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        when(repository.updateAll(List.of(funko))).thenReturn(CompletableFuture.completedFuture(List.of(funko)));
+        when(repository.findAll()).thenReturn(CompletableFuture.completedFuture(List.of(funko)));
+        service.enableWriteBehind(100, Duration.ofHours(1));
+
+        // Act
+        service.update(funko).get();
+        var result = service.findAll().get();
+        int pendientes = service.getWriteBehindStats().orElseThrow().getQueueDepth();
+        service.disableWriteBehind();
+
+        // Assert
+        assertAll(() -> assertEquals(List.of(funko), result),
+                () -> assertEquals(0, pendientes)
+        );
+        var orden = inOrder(repository);
+        orden.verify(repository).updateAll(List.of(funko));
+        orden.verify(repository).findAll();
+    }
+}
@@ -0,0 +1,316 @@
+package services.funkos;
+
+import develop.exceptions.funkos.FunkoNoAlmacenadoException;
+import develop.exceptions.funkos.FunkoNoEncotradoException;
+import develop.models.Funko;
+import develop.models.FunkoDelta;
+import develop.models.IdGenerator;
+import develop.models.ImportReport;
+import develop.models.Model;
+import develop.models.ShardInfo;
+import develop.models.ShardManifest;
+import develop.repositories.funkos.FunkosRepository;
+import develop.repositories.funkos.FunkosRepositoryImpl;
+import develop.services.database.DatabaseManager;
+import develop.services.funkos.FunkoCacheImpl;
+import develop.services.funkos.FunkoChangeListener;
+import develop.services.funkos.FunkoIngestService;
+import develop.services.funkos.FunkoStorageImpl;
+import develop.services.funkos.FunkosServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FunkoServiceTestDB {
+    private static final String DATA = System.getProperty("user.dir") + File.separator + "data" + File.separator;
+    private static final List<String> ARCHIVOS = Stream.concat(
+            Stream.of("funkos.mark.json", "funkos_delta_1.json", "funkos_delta_2.json", "funkos_delta_3.json", "funkos_shards.manifest.json"),
+            Arrays.stream(Model.values()).map(model -> "funkos_shards-" + model.toString().toLowerCase() + ".json")).toList();
+    private FunkosRepository funkosRepository;
+    private FunkosServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        funkosRepository = FunkosRepositoryImpl.getInstance(DatabaseManager.getInstance(), IdGenerator.getInstance());
+        service = FunkosServiceImpl.getInstance(funkosRepository, FunkoCacheImpl.getInstance(10), FunkoStorageImpl.getInstance());
+        funkosRepository.deleteAll().join();
+        // Se parte de un registro de cambios vacio, sin huecos que hayan dejado otras pruebas con transacciones deshechas
+        funkosRepository.purgeChanges(funkosRepository.lastChangeSeq().join()).join();
+        ARCHIVOS.forEach(archivo -> new File(DATA + archivo).delete());
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        funkosRepository.deleteAll().join();
+        IdGenerator.getInstance().resetId();
+        ARCHIVOS.forEach(archivo -> new File(DATA + archivo).delete());
+    }
+
+    private Funko guardar(String name, Model model) throws SQLException, FunkoNoAlmacenadoException {
+        return funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name(name).model(model).price(10.0)
+                .releaseData(LocalDate.of(2020, 1, 1)).build()).join();
+    }
+
+    private List<Funko> todosPorId() throws SQLException, ExecutionException, InterruptedException {
+        return funkosRepository.findAll().get().stream().sorted(Comparator.comparingLong(Funko::getId)).toList();
+    }
+
+    @Test
+    void exportIncrementalYApplyDeltaReconstruyenElEstado() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException, FunkoNoEncotradoException {
+        // Arrange
+        Funko a = guardar("A", Model.MARVEL);
+        Funko b = guardar("B", Model.DISNEY);
+        FunkoDelta completo = service.exportIncremental("funkos_delta_1.json").get();
+
+        // Act: cambios despues de la primera exportacion
+        a.setPrice(99.0);
+        funkosRepository.update(a).get();
+        funkosRepository.deleteById(b.getId()).get();
+        Funko c = guardar("C", Model.ANIME);
+        FunkoDelta incremental = service.exportIncremental("funkos_delta_2.json").get();
+        FunkoDelta vacio = service.exportIncremental("funkos_delta_3.json").get();
+        List<Funko> esperado = todosPorId();
+
+        funkosRepository.deleteAll().get();
+        service.applyDelta(new File(DATA + "funkos_delta_1.json").toPath()).get();
+        service.applyDelta(new File(DATA + "funkos_delta_2.json").toPath()).get();
+        List<Funko> reconstruido = todosPorId();
+
+        // Asserts
+        assertAll(() -> assertEquals(2, completo.getUpserts().size()),
+                () -> assertEquals(List.of(a.getId(), c.getId()), incremental.getUpserts().stream().map(Funko::getId).toList()),
+                () -> assertEquals(99.0, incremental.getUpserts().get(0).getPrice()),
+                () -> assertEquals(List.of(b.getId()), incremental.getDeletes()),
+                () -> assertEquals(completo.getTo(), incremental.getFrom()),
+                () -> assertTrue(vacio.getUpserts().isEmpty() && vacio.getDeletes().isEmpty()),
+                () -> assertEquals(esperado.stream().map(Funko::getId).toList(), reconstruido.stream().map(Funko::getId).toList()),
+                () -> assertEquals(esperado.stream().map(Funko::getPrice).toList(), reconstruido.stream().map(Funko::getPrice).toList())
+        );
+    }
+
+    @Test
+    void importFileFastAvisaALosOyentes() throws IOException, SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        Path csv = Files.createTempFile("funkos_fast", ".csv");
+        Files.writeString(csv, String.join("\n",
+                "COD,NOMBRE,MODELO,PRECIO,FECHA_LANZAMIENTO",
+                UUID.randomUUID() + ",Uno,MARVEL,10.5,2020-01-01",
+                UUID.randomUUID() + ",Malo,MARVEL,diez,2020-01-01",
+                UUID.randomUUID() + ",Dos,DISNEY,5,2021-02-03"));
+        Path rechazos = csv.resolveSibling(csv.getFileName() + ".rejects.csv");
+        List<Long> avisados = new CopyOnWriteArrayList<>();
+        FunkoChangeListener oyente = new FunkoChangeListener() {
+            @Override
+            public void onUpsert(Funko funko) {
+                avisados.add(funko.getId());
+            }
+
+            @Override
+            public void onDelete(long id) {
+            }
+
+            @Override
+            public void onDeleteAll() {
+            }
+        };
+        service.addChangeListener(oyente);
+
+        try {
+            // Act
+            ImportReport report = service.importFileFast(csv).get();
+
+            // Asserts
+            assertAll(() -> assertEquals(2, report.getSaved()),
+                    () -> assertEquals(1, report.getRejected()),
+                    () -> assertEquals(2, Files.readAllLines(rechazos).size()),
+                    () -> assertEquals(todosPorId().stream().map(Funko::getId).toList(), avisados.stream().sorted().toList())
+            );
+        } finally {
+            service.removeChangeListener(oyente);
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(rechazos);
+        }
+    }
+
+    @Test
+    void inTransactionInvalidaLaCacheTrasElCommit() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException {
+        // Arrange: save deja el funko en la cache
+        Funko guardado = service.save(Funko.builder().COD(UUID.randomUUID()).name("Cacheado").model(Model.MARVEL).price(10.0)
+                .releaseData(LocalDate.of(2020, 1, 1)).build()).get();
+        boolean enCacheAntes = FunkoCacheImpl.getInstance(10).get(guardado.getId()).get().isPresent();
+
+        // Act
+        service.inTransaction(tx -> {
+            Funko funko = tx.findById(guardado.getId()).orElseThrow();
+            funko.setPrice(50.0);
+            return tx.update(funko);
+        }).get();
+
+        // Asserts
+        assertAll(() -> assertTrue(enCacheAntes),
+                () -> assertTrue(FunkoCacheImpl.getInstance(10).get(guardado.getId()).get().isEmpty()),
+                () -> assertEquals(50.0, service.findById(guardado.getId()).get().orElseThrow().getPrice())
+        );
+    }
+
+    @Test
+    void exportShardedEscribeUnFragmentoPorModeloYSuManifiesto() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException, IOException, NoSuchAlgorithmException {
+        // Arrange
+        guardar("A", Model.MARVEL);
+        guardar("B", Model.MARVEL);
+        guardar("C", Model.DISNEY);
+
+        // Act
+        ShardManifest manifest = service.exportSharded("funkos_shards.json").get();
+
+        // Asserts
+        List<ShardInfo> shards = manifest.getShards();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (ShardInfo shard : shards) {
+            byte[] contenido = Files.readAllBytes(Path.of(DATA + shard.getFile()));
+            assertAll(() -> assertEquals(contenido.length, shard.getBytes()),
+                    () -> assertEquals(HexFormat.of().formatHex(digest.digest(contenido)), shard.getSha256())
+            );
+        }
+        assertAll(() -> assertEquals("MODEL", manifest.getPartitionedBy()),
+                () -> assertEquals(3, manifest.getTotalRows()),
+                () -> assertEquals(Arrays.stream(Model.values()).map(Model::toString).toList(), shards.stream().map(ShardInfo::getPartition).toList()),
+                () -> assertEquals(2, shards.get(Model.MARVEL.ordinal()).getRows()),
+                () -> assertEquals(1, shards.get(Model.DISNEY.ordinal()).getRows()),
+                () -> assertEquals(0, shards.get(Model.ANIME.ordinal()).getRows()),
+                () -> assertTrue(Files.readString(Path.of(DATA + "funkos_shards.manifest.json")).contains(shards.get(Model.MARVEL.ordinal()).getSha256()))
+        );
+    }
+
+    @Test
+    void updateDiferidoDosVecesDelMismoFunko() throws SQLException, ExecutionException, InterruptedException, FunkoNoAlmacenadoException, FunkoNoEncotradoException {
+        // Arrange
+        Funko funko = guardar("Diferido", Model.MARVEL);
+        service.enableWriteBehind(100, Duration.ofHours(1));
+
+        try {
+            // Act: findAll escribe lo pendiente entre las dos actualizaciones del mismo objeto
+            funko.setPrice(20.0);
+            Funko primero = service.update(funko).get();
+            service.findAll().get();
+            primero.setPrice(30.0);
+            service.update(primero).get();
+        } finally {
+            service.disableWriteBehind();
+        }
+
+        // Asserts
+        Funko enBaseDeDatos = funkosRepository.findById(funko.getId()).get().orElseThrow();
+        assertAll(() -> assertEquals(30.0, enBaseDeDatos.getPrice()),
+                () -> assertEquals(2, enBaseDeDatos.getVersion())
+        );
+    }
+
+    @Test
+    void importFilePipelineAvisaALosOyentes() throws IOException, SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        Path csv = Files.createTempFile("funkos_pipeline", ".csv");
+        Files.writeString(csv, String.join("\n",
+                "COD,NOMBRE,MODELO,PRECIO,FECHA_LANZAMIENTO",
+                UUID.randomUUID() + ",Uno,MARVEL,10.5,2020-01-01",
+                UUID.randomUUID() + ",Malo,MARVEL,diez,2020-01-01",
+                UUID.randomUUID() + ",Dos,DISNEY,5,2021-02-03"));
+        Path rechazos = csv.resolveSibling(csv.getFileName() + ".rejects.csv");
+        List<Long> avisados = new CopyOnWriteArrayList<>();
+        FunkoChangeListener oyente = new FunkoChangeListener() {
+            @Override
+            public void onUpsert(Funko funko) {
+                avisados.add(funko.getId());
+            }
+
+            @Override
+            public void onDelete(long id) {
+            }
+
+            @Override
+            public void onDeleteAll() {
+            }
+        };
+        service.addChangeListener(oyente);
+
+        try {
+            // Act
+            ImportReport report = service.importFilePipeline(csv).get();
+
+            // Asserts
+            assertAll(() -> assertEquals(2, report.getSaved()),
+                    () -> assertEquals(1, report.getRejected()),
+                    () -> assertEquals(todosPorId().stream().map(Funko::getId).toList(), avisados.stream().sorted().toList())
+            );
+        } finally {
+            service.removeChangeListener(oyente);
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(rechazos);
+        }
+    }
+
+    @Test
+    void ingestServiceAvisaALosOyentes() throws IOException, SQLException, ExecutionException, InterruptedException {
+        // Arrange
+        Path carpeta = Files.createTempDirectory("funkos_ingesta");
+        Path csv = carpeta.resolve("proveedor.csv");
+        Files.writeString(csv, String.join("\n",
+                "COD,NOMBRE,MODELO,PRECIO,FECHA_LANZAMIENTO",
+                UUID.randomUUID() + ",Uno,MARVEL,10.5,2020-01-01",
+                UUID.randomUUID() + ",Dos,DISNEY,5,2021-02-03", ""));
+        List<Long> avisados = new CopyOnWriteArrayList<>();
+        FunkoChangeListener oyente = new FunkoChangeListener() {
+            @Override
+            public void onUpsert(Funko funko) {
+                avisados.add(funko.getId());
+            }
+
+            @Override
+            public void onDelete(long id) {
+            }
+
+            @Override
+            public void onDeleteAll() {
+            }
+        };
+        service.addChangeListener(oyente);
+
+        try (FunkoIngestService ingesta = service.ingestService(carpeta)) {
+            // Act
+            long guardados = ingesta.ingest(csv);
+
+            // Asserts
+            assertAll(() -> assertEquals(2, guardados),
+                    () -> assertEquals(todosPorId().stream().map(Funko::getId).toList(), avisados.stream().sorted().toList())
+            );
+        } finally {
+            service.removeChangeListener(oyente);
+            try (Stream<Path> archivos = Files.list(carpeta)) {
+                for (Path archivo : archivos.toList()) {
+                    Files.delete(archivo);
+                }
+            }
+            Files.delete(carpeta);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package services.funkos;
+
+import develop.models.Funko;
+import develop.models.FunkoStatisticsReport;
+import develop.models.Model;
+import develop.services.funkos.FunkoStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FunkoStatisticsTest {
+
+    private static List<Funko> crearFunkos(int n) {
+        Model[] modelos = Model.values();
+        List<Funko> funkos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            funkos.add(Funko.builder()
+                    .id(i)
+                    .COD(UUID.randomUUID())
+                    .name(i % 7 == 0 ? "Stitch " + i : "Funko " + i)
+                    .model(modelos[i % modelos.length])
+                    .price((i * 37) % 101 + 0.5)
+                    .releaseData(LocalDate.of(2020 + i % 5, 1 + i % 12, 1))
+                    .build());
+        }
+        return funkos;
+    }
+
+    @Test
+    void computeIgualQueConStreams() {
+        // Arrange
+        List<Funko> funkos = crearFunkos(FunkoStatistics.PARALLEL_THRESHOLD * 3);
+        double maxPrecio = funkos.stream().mapToDouble(Funko::getPrice).max().getAsDouble();
+        Funko masCaro = funkos.stream().filter(f -> f.getPrice() == maxPrecio).findFirst().get();
+        Map<Model, List<Funko>> porModelo = funkos.stream().collect(Collectors.groupingBy(Funko::getModel));
+        Map<Model, Long> numeroPorModelo = funkos.stream().collect(Collectors.groupingBy(Funko::getModel, Collectors.counting()));
+
+        // Act
+        FunkoStatisticsReport paralelo = FunkoStatistics.compute(funkos, "Stitch");
+        FunkoStatisticsReport secuencial = funkos.stream().collect(FunkoStatistics.collector("Stitch"));
+
+        // Assert
+        for (FunkoStatisticsReport report : List.of(paralelo, secuencial)) {
+            assertAll(
+                    () -> assertEquals(funkos.size(), report.count()),
+                    () -> assertEquals(maxPrecio, report.maxPrice()),
+                    () -> assertSame(masCaro, report.mostExpensive().get()),
+                    () -> assertEquals(funkos.stream().mapToDouble(Funko::getPrice).average().getAsDouble(), report.averagePrice(), 1e-9),
+                    () -> assertEquals(porModelo, report.byModel()),
+                    () -> assertEquals(numeroPorModelo, report.countByModel()),
+                    () -> assertEquals(funkos.stream().filter(f -> f.getName().contains("Stitch")).toList(), report.nameMatches())
+            );
+        }
+    }
+
+    @Test
+    void computeListaVaciaEInmutable() {
+        // Act
+        FunkoStatisticsReport report = FunkoStatistics.compute(List.of(), "Stitch");
+
+        // Assert
+        assertAll(
+                () -> assertEquals(0, report.count()),
+                () -> assertEquals(0.0, report.maxPrice()),
+                () -> assertTrue(report.mostExpensive().isEmpty()),
+                () -> assertEquals(0.0, report.averagePrice()),
+                () -> assertTrue(report.byModel().isEmpty()),
+                () -> assertThrows(UnsupportedOperationException.class, () -> report.nameMatches().add(null)),
+                () -> assertThrows(UnsupportedOperationException.class, () -> report.countByModel().put(Model.DISNEY, 1L))
+        );
+    }
+}
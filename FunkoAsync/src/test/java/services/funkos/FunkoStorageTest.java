@@ -7,21 +7,35 @@ import develop.models.Model;
 import develop.repositories.funkos.FunkosRepository;
 import develop.repositories.funkos.FunkosRepositoryImpl;
 import develop.services.database.DatabaseManager;
+import develop.models.ShardInfo;
+import develop.services.funkos.FunkoShardWriter;
 import develop.services.funkos.FunkoStorage;
 import develop.services.funkos.FunkoStorageImpl;
+import develop.utils.FunkoTypeAdapter;
+import develop.utils.LocalDateAdapter;
+import develop.utils.LocalDateTimeAdapter;
+import develop.utils.UuidAdapter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Collections;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -113,4 +127,157 @@ public class FunkoStorageTest {
         String expectedMessage = "Ruta de fichero invalida: "+ rutaInvalida;
         assertTrue(exception.getMessage().contains(expectedMessage));
     }
+
+    @Test
+    void importFunkosJson() throws IOException, RutaInvalidaException, ExecutionException, InterruptedException {
+        String archivo = "funkos_test_import.json";
+        File f = new File(System.getProperty("user.dir") + File.separator + "data" + File.separator + archivo);
+
+        List<Funko> funkos = new ArrayList<>(); // Creamos la lista de funkos
+        funkos.add(Funko.builder()
+                .id(1L)
+                .COD(UUID.randomUUID())
+                .myId(7L)
+                .name("Test-1")
+                .model(Model.OTROS)
+                .price(19.99)
+                .releaseData(LocalDate.of(2020, 1, 1))
+                .updatedAt(LocalDateTime.of(2023, 10, 1, 12, 0))
+                .createdAt(LocalDateTime.of(2023, 9, 1, 12, 0))
+                .build());
+        funkos.add(Funko.builder()
+                .id(2L)
+                .COD(UUID.randomUUID())
+                .myId(8L)
+                .name("Test-2")
+                .model(Model.ANIME)
+                .price(99.99)
+                .releaseData(LocalDate.of(2020, 4, 1))
+                .updatedAt(LocalDateTime.now())
+                .createdAt(LocalDateTime.now())
+                .build());
+        funkosStorage.exportJson(funkos, archivo).get(); // Exportamos los funkos para despues volver a leerlos
+
+        List<Funko> leidos = new ArrayList<>();
+        long total = funkosStorage.importJson(f.toPath(), leidos::add).get(); // Leemos el archivo en streaming
+        f.delete(); // Eliminamos el archivo json
+
+        assertAll(() -> assertEquals(2, total), // Se han leido los dos funkos
+                () -> assertEquals(funkos, leidos) // Se conservan todos los campos, incluidos id, myId y fechas
+        );
+    }
+
+    @Test
+    void exportShard() throws IOException, RutaInvalidaException, ExecutionException, InterruptedException, NoSuchAlgorithmException {
+        String archivo = "funkos_test-otros.json";
+        File f = new File(System.getProperty("user.dir") + File.separator + "data" + File.separator + archivo);
+
+        FunkoShardWriter writer = funkosStorage.openShardWriter(archivo, Model.OTROS.toString());
+        try (writer) {
+            writer.write(Funko.builder().id(1L).COD(UUID.randomUUID()).myId(1L).name("Test-1").model(Model.OTROS).price(19.99).releaseData(LocalDate.of(2020, 1, 1)).build());
+            writer.write(Funko.builder().id(2L).COD(UUID.randomUUID()).myId(2L).name("Test-2").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2021, 1, 1)).build());
+        }
+        ShardInfo info = writer.getInfo();
+        String shaEsperado = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(f.toPath())));
+
+        List<Funko> leidos = new ArrayList<>();
+        funkosStorage.importJson(f.toPath(), leidos::add).get(); // El fragmento es un JSON valido que se puede volver a importar
+        f.delete();
+
+        assertAll(() -> assertEquals(2, info.getRows()),
+                () -> assertEquals(archivo, info.getFile()),
+                () -> assertEquals(shaEsperado, info.getSha256()),
+                () -> assertEquals(2, leidos.size())
+        );
+    }
+
+    @Test
+    void exportImportFunkosNdjson() throws IOException, RutaInvalidaException, ExecutionException, InterruptedException {
+        String archivo = "funkos_test.ndjson";
+        File f = new File(System.getProperty("user.dir") + File.separator + "data" + File.separator + archivo);
+
+        List<Funko> funkos = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            funkos.add(Funko.builder().id(i).COD(UUID.randomUUID()).myId(i).name("Test-" + i).model(Model.OTROS).price(i).releaseData(LocalDate.of(2020, 1, 1)).build());
+        }
+        funkosStorage.exportNdjson(funkos.subList(0, 40), archivo, false).get(); // Escribimos los 40 primeros
+        funkosStorage.exportNdjson(funkos.subList(40, 50), archivo, true).get(); // Añadimos el resto al final del archivo
+
+        List<Funko> leidos = new ArrayList<>();
+        long total = funkosStorage.importNdjson(f.toPath(), leidos::add).get();
+        List<Funko> leidosParalelo = Collections.synchronizedList(new ArrayList<>());
+        long totalParalelo = funkosStorage.importNdjsonParallel(f.toPath(), 7, leidosParalelo::add).get(); // Rangos que cortan lineas por la mitad
+        long lineas = Files.readAllLines(f.toPath()).size();
+        f.delete();
+
+        assertAll(() -> assertEquals(50, total),
+                () -> assertEquals(50, lineas), // Un funko por linea
+                () -> assertEquals(funkos, leidos),
+                () -> assertEquals(50, totalParalelo), // Cada linea se lee exactamente una vez
+                () -> assertEquals(50, leidosParalelo.stream().map(Funko::getId).distinct().count())
+        );
+    }
+
+    @Test
+    void exportImportFunkosComprimidos() throws IOException, RutaInvalidaException, ExecutionException, InterruptedException {
+        List<Funko> funkos = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            funkos.add(Funko.builder().id(i).COD(UUID.randomUUID()).myId(i).name("Test-" + i).model(Model.MARVEL).price(i).releaseData(LocalDate.of(2020, 1, 1)).build());
+        }
+
+        for (String archivo : List.of("funkos_test.json.gz", "funkos_test.json.deflate", "funkos_test.json.lz4")) {
+            File f = new File(System.getProperty("user.dir") + File.separator + "data" + File.separator + archivo);
+            funkosStorage.exportJson(funkos, archivo).get(); // El algoritmo de compresion se elige por la extension
+            List<Funko> leidos = new ArrayList<>();
+            funkosStorage.importJson(f.toPath(), leidos::add).get();
+            byte[] cabecera = Files.readAllBytes(f.toPath());
+            f.delete();
+            assertAll(() -> assertEquals(funkos, leidos, "No se han recuperado los funkos de " + archivo),
+                    () -> assertNotEquals('[', cabecera[0], "El archivo " + archivo + " no esta comprimido"));
+        }
+
+        String ndjson = "funkos_test.ndjson.gz";
+        File f = new File(System.getProperty("user.dir") + File.separator + "data" + File.separator + ndjson);
+        funkosStorage.exportNdjson(funkos.subList(0, 10), ndjson, false).get();
+        funkosStorage.exportNdjson(funkos.subList(10, 20), ndjson, true).get(); // GZIP admite añadir un nuevo bloque al final
+        List<Funko> leidos = Collections.synchronizedList(new ArrayList<>());
+        funkosStorage.importNdjsonParallel(f.toPath(), 4, leidos::add).get(); // Comprimido: se lee de forma secuencial
+        f.delete();
+        assertEquals(funkos, leidos);
+    }
+
+    @Test
+    void importFunkosCsvComprimido() throws IOException, ExecutionException, InterruptedException {
+        File original = new File(System.getProperty("user.dir") + File.separator + "data" + File.separator + "funkos.csv");
+        File comprimido = new File(System.getProperty("user.dir") + File.separator + "data" + File.separator + "funkos_test.csv.gz");
+        try (var out = new GZIPOutputStream(Files.newOutputStream(comprimido.toPath()))) {
+            Files.copy(original.toPath(), out);
+        }
+
+        List<Funko> funkos = funkosStorage.importCsv(comprimido.toPath()).get();
+        comprimido.delete();
+
+        assertEquals(90, funkos.size());
+    }
+
+    @Test
+    void funkoTypeAdapterCompatibleConReflexion() {
+        Gson reflexion = new GsonBuilder()
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapter(UUID.class, new UuidAdapter())
+                .create();
+        Gson adaptador = new GsonBuilder().registerTypeAdapter(Funko.class, new FunkoTypeAdapter()).create();
+        Funko funko = Funko.builder().id(7).COD(UUID.randomUUID()).myId(3).name("Test \"comillas\"").model(Model.ANIME)
+                .price(12.5).releaseData(LocalDate.of(2021, 6, 1)).build();
+        Funko sinNombre = Funko.builder().id(8).model(Model.OTROS).build();
+
+        String json = adaptador.toJson(funko);
+        assertAll(() -> assertEquals(reflexion.toJson(funko), json), // Mismo orden y nombres de campos que por reflexion
+                () -> assertFalse(adaptador.toJson(sinNombre).contains("COD")), // Los campos nulos se omiten
+                () -> assertEquals(sinNombre, adaptador.fromJson(adaptador.toJson(sinNombre), Funko.class)),
+                () -> assertEquals(funko, adaptador.fromJson(json, Funko.class)),
+                () -> assertEquals(funko, adaptador.fromJson(reflexion.toJson(funko), Funko.class))
+        );
+    }
 }
@@ -0,0 +1,277 @@
+package services.funkos;
+
+import develop.exceptions.funkos.FunkoNoAlmacenadoException;
+import develop.exceptions.funkos.FunkoNoEncotradoException;
+import develop.models.Funko;
+import develop.models.IdGenerator;
+import develop.models.Model;
+import develop.models.WriteBehindStats;
+import develop.repositories.funkos.FunkosRepository;
+import develop.repositories.funkos.FunkosRepositoryImpl;
+import develop.services.database.DatabaseManager;
+import develop.services.funkos.FunkoWriteBehind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FunkoWriteBehindTest {
+    private FunkosRepository funkosRepository;
+    private final List<Funko> escritos = new CopyOnWriteArrayList<>();
+    private final List<Funko> rechazados = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        funkosRepository = FunkosRepositoryImpl.getInstance(DatabaseManager.getInstance(), IdGenerator.getInstance());
+        funkosRepository.deleteAll().join();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        funkosRepository.deleteAll().join();
+        IdGenerator.getInstance().resetId();
+    }
+
+    private Funko guardar(String name) throws SQLException, FunkoNoAlmacenadoException {
+        return funkosRepository.save(Funko.builder().COD(UUID.randomUUID()).name(name).model(Model.MARVEL).price(10.0)
+                .releaseData(LocalDate.of(2020, 1, 1)).build()).join();
+    }
+
+    private static Funko conPrecio(Funko funko, double price) {
+        return Funko.builder().id(funko.getId()).COD(funko.getCOD()).myId(funko.getMyId()).name(funko.getName()).model(funko.getModel())
+                .price(price).releaseData(funko.getReleaseData()).version(funko.getVersion()).build();
+    }
+
+    private FunkoWriteBehind cola(int batchSize, Duration maxLag) {
+        return new FunkoWriteBehind(funkosRepository, batchSize, batchSize, maxLag, escritos::add, rechazados::add);
+    }
+
+    @Test
+    void soloSeEscribeLaUltimaActualizacion() throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
+        // Arrange
+        Funko funko = guardar("Caliente");
+        Funko otro = guardar("Otro");
+
+        try (FunkoWriteBehind cola = cola(100, Duration.ofHours(1))) {
+            // Act
+            for (int i = 1; i <= 5; i++) {
+                cola.enqueue(conPrecio(funko, i));
+            }
+            cola.enqueue(conPrecio(otro, 50));
+            WriteBehindStats antes = cola.getStats();
+            int escritosFlush = cola.flush();
+
+            // Asserts
+            Funko enBaseDeDatos = funkosRepository.findById(funko.getId()).get().orElseThrow();
+            WriteBehindStats despues = cola.getStats();
+            assertAll(() -> assertEquals(2, antes.getQueueDepth()),
+                    () -> assertEquals(6, antes.getEnqueued()),
+                    () -> assertEquals(4, antes.getCoalesced()),
+                    () -> assertEquals(2, escritosFlush),
+                    () -> assertEquals(5.0, enBaseDeDatos.getPrice()),
+                    () -> assertEquals(1, enBaseDeDatos.getVersion()),
+                    () -> assertEquals(0, despues.getQueueDepth()),
+                    () -> assertEquals(0, despues.getOldestPendingMillis()),
+                    () -> assertEquals(2, despues.getFlushed()),
+                    () -> assertEquals(1, despues.getBatches()),
+                    () -> assertEquals(2, escritos.size()),
+                    () -> assertTrue(rechazados.isEmpty())
+            );
+        }
+    }
+
+    @Test
+    void escribePorTamanoYAlCerrar() throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
+        // Arrange
+        Funko a = guardar("A");
+        Funko b = guardar("B");
+        Funko c = guardar("C");
+        FunkoWriteBehind cola = cola(2, Duration.ofHours(1));
+
+        // Act: al llegar a dos pendientes se escribe sin esperar al retraso maximo
+        cola.enqueue(conPrecio(a, 1));
+        cola.enqueue(conPrecio(b, 2));
+        for (int i = 0; i < 100 && cola.getStats().getFlushed() < 2; i++) {
+            Thread.sleep(50);
+        }
+        long escritosPorTamano = cola.getStats().getFlushed();
+        cola.enqueue(conPrecio(c, 3));
+        cola.close();
+
+        // Asserts
+        assertAll(() -> assertEquals(2, escritosPorTamano),
+                () -> assertEquals(3.0, funkosRepository.findById(c.getId()).get().orElseThrow().getPrice()),
+                () -> assertEquals(3, cola.getStats().getFlushed()),
+                () -> assertThrows(IllegalStateException.class, () -> cola.enqueue(conPrecio(a, 4)))
+        );
+    }
+
+    @Test
+    void escribePorTiempo() throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
+        // Arrange
+        Funko funko = guardar("Lento");
+
+        try (FunkoWriteBehind cola = cola(100, Duration.ofMillis(100))) {
+            // Act
+            cola.enqueue(conPrecio(funko, 7));
+            for (int i = 0; i < 100 && cola.getStats().getFlushed() < 1; i++) {
+                Thread.sleep(50);
+            }
+
+            // Asserts
+            assertAll(() -> assertEquals(1, cola.getStats().getFlushed()),
+                    () -> assertEquals(7.0, funkosRepository.findById(funko.getId()).get().orElseThrow().getPrice())
+            );
+        }
+    }
+
+    @Test
+    void encolaUnaCopiaSinModificarElOriginal() throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
+        // Arrange
+        Funko funko = guardar("Copiado");
+        Funko actualizado = conPrecio(funko, 5);
+
+        try (FunkoWriteBehind cola = cola(100, Duration.ofHours(1))) {
+            // Act: el llamante sigue modificando su Funko despues de encolarlo
+            cola.enqueue(actualizado);
+            actualizado.setPrice(99);
+            cola.pending(funko.getId()).orElseThrow().setPrice(77);
+            double pendiente = cola.pending(funko.getId()).orElseThrow().getPrice();
+            cola.flush();
+
+            // Asserts
+            assertAll(() -> assertEquals(5.0, pendiente),
+                    () -> assertEquals(5.0, funkosRepository.findById(funko.getId()).get().orElseThrow().getPrice()),
+                    () -> assertEquals(0, actualizado.getVersion()),
+                    () -> assertEquals(1, escritos.get(0).getVersion())
+            );
+        }
+    }
+
+    @Test
+    void batchFallidoSeReintentaDeUnoEnUno() throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
+        // Arrange: un funko sin modelo hace fallar el batch entero
+        Funko bueno = guardar("Bueno");
+        Funko malo = conPrecio(guardar("Malo"), 40);
+        malo.setModel(null);
+
+        try (FunkoWriteBehind cola = cola(100, Duration.ofHours(1))) {
+            // Act
+            cola.enqueue(conPrecio(bueno, 30));
+            cola.enqueue(malo);
+            int escritosFlush = cola.flush();
+
+            // Asserts
+            WriteBehindStats stats = cola.getStats();
+            assertAll(() -> assertEquals(1, escritosFlush),
+                    () -> assertEquals(30.0, funkosRepository.findById(bueno.getId()).get().orElseThrow().getPrice()),
+                    () -> assertEquals(10.0, funkosRepository.findById(malo.getId()).get().orElseThrow().getPrice()),
+                    () -> assertEquals(1, stats.getFailures()),
+                    () -> assertEquals(0, stats.getConflicts()),
+                    () -> assertEquals(0, stats.getQueueDepth()),
+                    () -> assertEquals(List.of(malo.getId()), rechazados.stream().map(Funko::getId).toList()),
+                    () -> assertEquals(0, cola.flush())
+            );
+        }
+    }
+
+    @Test
+    void colaLlenaEsperaAQueSeEscriba() throws SQLException, InterruptedException, FunkoNoAlmacenadoException {
+        // Arrange
+        Funko a = guardar("A");
+        Funko b = guardar("B");
+        Funko c = guardar("C");
+
+        try (FunkoWriteBehind cola = new FunkoWriteBehind(funkosRepository, 1, 2, Duration.ofHours(1), escritos::add, rechazados::add)) {
+            // Act: cada encolado pide una escritura, y con dos pendientes el siguiente espera
+            cola.enqueue(conPrecio(a, 1));
+            cola.enqueue(conPrecio(b, 2));
+            cola.enqueue(conPrecio(c, 3));
+            cola.flush();
+
+            // Asserts
+            WriteBehindStats stats = cola.getStats();
+            assertAll(() -> assertTrue(stats.getMaxQueueDepth() <= 2),
+                    () -> assertEquals(3, stats.getFlushed()),
+                    () -> assertEquals(3, escritos.size())
+            );
+        }
+    }
+
+    @Test
+    void versionObsoletaSeRechaza() throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
+        // Arrange: otro proceso actualiza el funko despues de leerlo
+        Funko funko = guardar("Disputado");
+        Funko leido = conPrecio(funko, 20);
+        funkosRepository.update(conPrecio(funko, 30)).join();
+
+        try (FunkoWriteBehind cola = cola(100, Duration.ofHours(1))) {
+            // Act
+            cola.enqueue(leido);
+            cola.flush();
+
+            // Asserts
+            assertAll(() -> assertEquals(30.0, funkosRepository.findById(funko.getId()).get().orElseThrow().getPrice()),
+                    () -> assertEquals(1, cola.getStats().getConflicts()),
+                    () -> assertEquals(List.of(leido), rechazados),
+                    () -> assertTrue(escritos.isEmpty())
+            );
+        }
+    }
+
+    @Test
+    void actualizarDosVecesElMismoFunkoTrasEscribirlo() throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
+        // Arrange: el llamante conserva su Funko con la version que leyo
+        Funko funko = guardar("Reutilizado");
+
+        try (FunkoWriteBehind cola = cola(100, Duration.ofHours(1))) {
+            // Act
+            funko.setPrice(20);
+            cola.enqueue(funko);
+            cola.flush();
+            funko.setPrice(30);
+            cola.enqueue(funko);
+            int escritosFlush = cola.flush();
+
+            // Asserts
+            Funko enBaseDeDatos = funkosRepository.findById(funko.getId()).get().orElseThrow();
+            assertAll(() -> assertEquals(1, escritosFlush),
+                    () -> assertEquals(30.0, enBaseDeDatos.getPrice()),
+                    () -> assertEquals(2, enBaseDeDatos.getVersion()),
+                    () -> assertEquals(0, cola.getStats().getConflicts()),
+                    () -> assertTrue(rechazados.isEmpty())
+            );
+        }
+    }
+
+    @Test
+    void versionObsoletaTrasEscribirSigueSiendoConflicto() throws SQLException, ExecutionException, InterruptedException, FunkoNoEncotradoException, FunkoNoAlmacenadoException {
+        // Arrange: la cola escribe el funko y despues otro proceso lo modifica
+        Funko funko = guardar("Compartido");
+
+        try (FunkoWriteBehind cola = cola(100, Duration.ofHours(1))) {
+            cola.enqueue(conPrecio(funko, 20));
+            cola.flush();
+            funkosRepository.update(funkosRepository.findById(funko.getId()).get().orElseThrow()).join();
+
+            // Act
+            cola.enqueue(conPrecio(funko, 40));
+            cola.flush();
+
+            // Asserts
+            assertAll(() -> assertEquals(20.0, funkosRepository.findById(funko.getId()).get().orElseThrow().getPrice()),
+                    () -> assertEquals(1, cola.getStats().getConflicts()),
+                    () -> assertEquals(1, rechazados.size())
+            );
+        }
+    }
+}
@@ -1,3 +1,4 @@
+DROP TABLE IF EXISTS funkos_cambios;
 DROP TABLE IF EXISTS funkos;
 CREATE TABLE IF NOT EXISTS funkos (
                                        ID BIGINT PRIMARY KEY AUTO_INCREMENT,
@@ -8,5 +9,18 @@ CREATE TABLE IF NOT EXISTS funkos (
     precio DOUBLE NOT NULL DEFAULT 0,
     fecha_lanzamiento DATE NOT NULL DEFAULT CURRENT_DATE,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0
     );
+CREATE INDEX IF NOT EXISTS idx_funkos_precio ON funkos (precio, ID);
+CREATE INDEX IF NOT EXISTS idx_funkos_precio_desc ON funkos (precio DESC, ID);
+CREATE INDEX IF NOT EXISTS idx_funkos_fecha_lanzamiento ON funkos (fecha_lanzamiento, ID);
+CREATE TABLE IF NOT EXISTS funkos_cambios (
+                                       seq BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                       funko_id BIGINT NOT NULL,
+                                       operacion VARCHAR(6) NOT NULL CHECK (operacion IN ('INSERT', 'UPDATE', 'DELETE')),
+    version BIGINT,
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+    );
+CREATE TRIGGER IF NOT EXISTS trg_funkos_version BEFORE UPDATE ON funkos FOR EACH ROW CALL 'develop.repositories.funkos.FunkoChangeTrigger';
+CREATE TRIGGER IF NOT EXISTS trg_funkos_cambios AFTER INSERT, UPDATE, DELETE ON funkos FOR EACH ROW CALL 'develop.repositories.funkos.FunkoChangeTrigger';